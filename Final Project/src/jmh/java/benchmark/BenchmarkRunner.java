@@ -0,0 +1,52 @@
+package benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * BenchmarkRunner is the entry point of benchmarks.jar. It accepts the usual JMH command line and
+ * adds two defaults: the GC profiler, so every result reports the allocation rate next to ops/s,
+ * and headless AWT in the forked JVMs, so the benchmarks run on machines without a display.
+ * Examples:
+ * java -jar target/benchmarks.jar FilterBenchmark -p megapixels=12
+ * java -jar target/benchmarks.jar -rf json -rff results.json
+ */
+public final class BenchmarkRunner {
+
+    // JVM option enabling headless AWT in the benchmark forks
+    private static final String HEADLESS = "-Djava.awt.headless=true";
+
+    // Private constructor to prevent instantiation
+    private BenchmarkRunner() {
+        throw new UnsupportedOperationException("BenchmarkRunner is a utility class and cannot be instantiated.");
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        System.setProperty("java.awt.headless", "true");
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().stream().noneMatch(p -> p.getKlass().equals(GCProfiler.class.getName())
+                || p.getKlass().equals("gc"))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        // Prepended arguments leave room for the jvmArgsAppend of the @Fork annotations
+        if (!commandLine.getJvmArgsPrepend().hasValue()) {
+            options.jvmArgsPrepend(HEADLESS);
+        }
+        new Runner(options.build()).run();
+    }
+}
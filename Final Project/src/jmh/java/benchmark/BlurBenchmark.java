@@ -0,0 +1,78 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.BoxBlur;
+import util.EdgeMode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlurBenchmark shows that BoxBlur costs the same per pixel whatever the radius, from the 3x3
+ * blur up to background-blur radii of thousands of pixels.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar BlurBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlurBenchmark {
+
+    // Image edge lengths
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    // Box radius, or Gaussian sigma, in pixels
+    @Param({"1", "10", "100", "1000"})
+    public int radius;
+
+    private BufferedImage image;
+
+    /**
+     * Creates a random ARGB image.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() | 0xff000000;
+        }
+    }
+
+    /**
+     * A single box pass.
+     *
+     * @return The filtered image.
+     */
+    @Benchmark
+    public BufferedImage box() {
+        return BoxBlur.box(image, radius, EdgeMode.CLAMP);
+    }
+
+    /**
+     * Three box passes approximating a Gaussian.
+     *
+     * @return The filtered image.
+     */
+    @Benchmark
+    public BufferedImage gaussian() {
+        return BoxBlur.gaussian(image, radius, EdgeMode.CLAMP);
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ImageConverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConversionBenchmark measures ImageConverter converting a PNG file of the corpus to every format
+ * in its SUPPORTED_FORMATS, including decoding the source and writing the result to disk.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar ConversionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ConversionBenchmark {
+
+    @Param({"1", "12", "100"})
+    public int megapixels;
+
+    @Param({ImageCorpus.RGB, ImageCorpus.ARGB, ImageCorpus.BGR, ImageCorpus.GRAY})
+    public String colorType;
+
+    // Target format, one of ImageConverter's supported formats
+    @Param({"png", "jpeg", "jpg", "bmp", "gif"})
+    public String format;
+
+    private final ImageConverter converter = new ImageConverter();
+    private File source;
+    private File target;
+
+    /**
+     * Writes the source image as PNG.
+     *
+     * @throws IOException if the corpus image cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = ImageCorpus.write(ImageCorpus.create(megapixels, colorType), "png");
+        target = ImageCorpus.tempFile(format);
+    }
+
+    @Benchmark
+    public File convert() throws IOException {
+        converter.process(source, target, format);
+        return target;
+    }
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ConvolutionEngine;
+import util.EdgeMode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Kernel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConvolutionBenchmark compares the single-threaded java.awt.image.ConvolveOp with the tile-parallel
+ * ConvolutionEngine. The engine is run on dedicated pools of increasing parallelism to show how it
+ * scales with the number of cores.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar ConvolutionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvolutionBenchmark {
+
+    // Image edge lengths: 4000 x 3000 is a 12 MP photo
+    @Param({"4000x3000"})
+    public String size;
+
+    // Square kernel edge length
+    @Param({"3", "5"})
+    public int kernelSize;
+
+    // Parallelism of the pool running the engine
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private BufferedImage image;
+    private float[] kernel;
+    private ConvolveOp convolveOp;
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a random ARGB image, a box kernel, and the pool for this trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() | 0xff000000;
+        }
+
+        kernel = new float[kernelSize * kernelSize];
+        Arrays.fill(kernel, 1f / kernel.length);
+        convolveOp = new ConvolveOp(new Kernel(kernelSize, kernelSize, kernel), ConvolveOp.EDGE_NO_OP, null);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shuts down the pool created for this trial.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * The previous path: a single-threaded ConvolveOp. Independent of the threads parameter.
+     *
+     * @return The filtered image.
+     */
+    @Benchmark
+    public BufferedImage convolveOp() {
+        return convolveOp.filter(image, null);
+    }
+
+    /**
+     * The tile-parallel engine on a pool of the given parallelism.
+     *
+     * @return The filtered image.
+     */
+    @Benchmark
+    public BufferedImage engine() {
+        return ConvolutionEngine.convolve(image, kernel, kernelSize, kernelSize, EdgeMode.CLAMP, pool);
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.FilterChain;
+import util.ImageFilter;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FilterBenchmark measures every public filter of ImageFilter, and the chain the filter dialog
+ * builds, over the generated corpus of sizes and color types.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar FilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FilterBenchmark {
+
+    // A 3x3 sharpening kernel for the custom filter
+    private static final float[] SHARPEN = {
+            0, -1, 0,
+            -1, 5, -1,
+            0, -1, 0,
+    };
+
+    // Radius of the box blur and sigma of the Gaussian blur, in pixels
+    private static final int BLUR_RADIUS = 10;
+
+    @Param({"1", "12", "100"})
+    public int megapixels;
+
+    @Param({ImageCorpus.RGB, ImageCorpus.ARGB, ImageCorpus.BGR, ImageCorpus.GRAY})
+    public String colorType;
+
+    private BufferedImage image;
+    private FilterChain chain;
+
+    /**
+     * Generates the source image.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = ImageCorpus.create(megapixels, colorType);
+        chain = new FilterChain().grayscale().sepia().blur();
+    }
+
+    @Benchmark
+    public BufferedImage grayscale() {
+        return ImageFilter.applyGrayscale(image);
+    }
+
+    @Benchmark
+    public BufferedImage sepia() {
+        return ImageFilter.applySepia(image);
+    }
+
+    @Benchmark
+    public BufferedImage blur() {
+        return ImageFilter.applyBlur(image);
+    }
+
+    @Benchmark
+    public BufferedImage boxBlur() {
+        return ImageFilter.applyBoxBlur(image, BLUR_RADIUS);
+    }
+
+    @Benchmark
+    public BufferedImage gaussianBlur() {
+        return ImageFilter.applyGaussianBlur(image, BLUR_RADIUS);
+    }
+
+    @Benchmark
+    public BufferedImage customFilter() {
+        return ImageFilter.applyCustomFilter(image, SHARPEN);
+    }
+
+    /**
+     * Grayscale, sepia and blur applied together, as with all filter checkboxes selected.
+     *
+     * @return The filtered image.
+     */
+    @Benchmark
+    public BufferedImage chain() {
+        return chain.apply(image);
+    }
+}
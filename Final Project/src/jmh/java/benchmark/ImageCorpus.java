@@ -0,0 +1,125 @@
+package benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * ImageCorpus generates the benchmark images: 4:3 images of a given number of megapixels in one
+ * of several color types, written to temporary files when a benchmark reads from disk.
+ * The content mixes smooth gradients with noise so that encoders see photo-like data rather than
+ * flat areas that compress to nothing.
+ * This class is non-instantiable and provides static methods.
+ */
+final class ImageCorpus {
+
+    // Color types accepted by create, as used in the colorType benchmark parameters
+    static final String RGB = "RGB";
+    static final String ARGB = "ARGB";
+    static final String BGR = "BGR";
+    static final String GRAY = "GRAY";
+
+    // Amplitude of the noise added to the gradients
+    private static final int NOISE = 32;
+
+    // Private constructor to prevent instantiation
+    private ImageCorpus() {
+        throw new UnsupportedOperationException("ImageCorpus is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Creates a 4:3 image of about the given number of megapixels.
+     *
+     * @param megapixels The number of megapixels.
+     * @param colorType  One of RGB, ARGB, BGR (3 bytes per pixel) or GRAY.
+     * @return The generated image.
+     * @throws IllegalArgumentException if the color type is unknown.
+     */
+    static BufferedImage create(int megapixels, String colorType) {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000.0 * 4 / 3));
+        int height = (int) (megapixels * 1_000_000L / width);
+        BufferedImage image = new BufferedImage(width, height, imageType(colorType));
+
+        Random random = new Random(42);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            int green = y * 255 / height;
+            for (int x = 0; x < width; x++) {
+                int red = x * 255 / width;
+                int blue = (red + green) / 2;
+                int noise = random.nextInt(NOISE) - NOISE / 2;
+                int alpha = 128 + (x + y) % 128;
+                row[x] = alpha << 24 | clamp(red + noise) << 16 | clamp(green + noise) << 8 | clamp(blue - noise);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Writes an image to a temporary file that is deleted when the JVM exits. Images with alpha
+     * are flattened onto white for formats without transparency, as ImageConverter does.
+     *
+     * @param image  The image.
+     * @param format The ImageIO format name.
+     * @return The written file.
+     * @throws IOException if the image cannot be written.
+     */
+    static File write(BufferedImage image, String format) throws IOException {
+        BufferedImage output = image;
+        if (image.getColorModel().hasAlpha() && (format.equals("jpeg") || format.equals("jpg") || format.equals("bmp"))) {
+            output = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = output.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.Src);
+                g2d.setColor(Color.WHITE);
+                g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+                g2d.drawImage(image, 0, 0, null);
+            } finally {
+                g2d.dispose();
+            }
+        }
+        File file = tempFile(format);
+        if (!ImageIO.write(output, format, file)) {
+            throw new IOException("No writer available for format: " + format);
+        }
+        return file;
+    }
+
+    /**
+     * Creates an empty temporary file that is deleted when the JVM exits.
+     *
+     * @param extension The file extension.
+     * @return The file.
+     * @throws IOException if the file cannot be created.
+     */
+    static File tempFile(String extension) throws IOException {
+        File file = File.createTempFile("corpus", "." + extension);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static int imageType(String colorType) {
+        switch (colorType) {
+            case RGB:
+                return BufferedImage.TYPE_INT_RGB;
+            case ARGB:
+                return BufferedImage.TYPE_INT_ARGB;
+            case BGR:
+                return BufferedImage.TYPE_3BYTE_BGR;
+            case GRAY:
+                return BufferedImage.TYPE_BYTE_GRAY;
+            default:
+                throw new IllegalArgumentException("Unknown color type: " + colorType);
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ImageConverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MultiFormatConversionBenchmark compares converting an image to four formats with one
+ * ImageConverter.process call per format, which decodes the source every time, against a single
+ * ImageConverter.convert call, which decodes it once and encodes the formats concurrently.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar MultiFormatConversionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class MultiFormatConversionBenchmark {
+
+    // The formats offered by the conversion checkboxes
+    private static final String[] FORMATS = {"png", "jpeg", "bmp", "gif"};
+
+    @Param({"1", "12"})
+    public int megapixels;
+
+    @Param({ImageCorpus.RGB, ImageCorpus.ARGB})
+    public String colorType;
+
+    private final ImageConverter converter = new ImageConverter();
+    private File source;
+    private final Map<String, File> targets = new LinkedHashMap<>();
+
+    /**
+     * Writes the source image as PNG.
+     *
+     * @throws IOException if the corpus image cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = ImageCorpus.write(ImageCorpus.create(megapixels, colorType), "png");
+        for (String format : FORMATS) {
+            targets.put(format, ImageCorpus.tempFile(format));
+        }
+    }
+
+    @Benchmark
+    public Map<String, File> perFormat() throws IOException {
+        for (Map.Entry<String, File> target : targets.entrySet()) {
+            converter.process(source, target.getValue(), target.getKey());
+        }
+        return targets;
+    }
+
+    @Benchmark
+    public Map<String, File> decodeOnce() throws IOException {
+        converter.convert(source, targets);
+        return targets;
+    }
+}
@@ -0,0 +1,114 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ImageFilter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimdBenchmark compares the scalar pixel kernels with the Vector API kernels on the public
+ * filters. Each variant runs in its own JVM: scalar forks disable the vector kernels through the
+ * imageapp.vector.enabled property, vector forks add the jdk.incubator.vector module. On AVX2-class
+ * hardware the vector kernels process 8 pixels per instruction, 16 with AVX-512.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar SimdBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SimdBenchmark {
+
+    // JVM options of the scalar and vector forks
+    private static final String SCALAR = "-Dimageapp.vector.enabled=false";
+    private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+
+    // Image edge lengths: 4000 x 3000 is a 12 MP photo
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    // A 5x5 kernel that is not separable, so it runs through the full 2D inner loop
+    private static final float[] KERNEL = {
+            0, 0, -1, 0, 0,
+            0, -1, -2, -1, 0,
+            -1, -2, 17, -2, -1,
+            0, -1, -2, -1, 0,
+            0, 0, -1, 0, 0,
+    };
+
+    private BufferedImage image;
+
+    /**
+     * Creates a random ARGB image.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public BufferedImage grayscaleScalar() {
+        return ImageFilter.applyGrayscale(image);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public BufferedImage grayscaleVector() {
+        return ImageFilter.applyGrayscale(image);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public BufferedImage sepiaScalar() {
+        return ImageFilter.applySepia(image);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public BufferedImage sepiaVector() {
+        return ImageFilter.applySepia(image);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public BufferedImage convolveScalar() {
+        return ImageFilter.applyCustomFilter(image, KERNEL);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public BufferedImage convolveVector() {
+        return ImageFilter.applyCustomFilter(image, KERNEL);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    public BufferedImage blurScalar() {
+        return ImageFilter.applyBlur(image);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    public BufferedImage blurVector() {
+        return ImageFilter.applyBlur(image);
+    }
+}
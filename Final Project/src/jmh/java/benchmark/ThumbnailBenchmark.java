@@ -0,0 +1,70 @@
+package benchmark;
+
+import model.ImageProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ThumbnailGenerator;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThumbnailBenchmark measures what loading an image into the gallery costs: creating its
+ * thumbnail and probing its ImageProperties from the file, for JPEG and PNG files of the corpus.
+ * Run with: mvn -P benchmark package && java -jar target/benchmarks.jar ThumbnailBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ThumbnailBenchmark {
+
+    // Bounds of the gallery thumbnails
+    private static final int THUMBNAIL_SIZE = 100;
+
+    @Param({"1", "12", "100"})
+    public int megapixels;
+
+    @Param({ImageCorpus.RGB, ImageCorpus.ARGB, ImageCorpus.BGR, ImageCorpus.GRAY})
+    public String colorType;
+
+    // Format of the source file
+    @Param({"jpeg", "png"})
+    public String sourceFormat;
+
+    private File source;
+
+    /**
+     * Writes the source image file.
+     *
+     * @throws IOException if the corpus image cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = ImageCorpus.write(ImageCorpus.create(megapixels, colorType), sourceFormat);
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail() throws IOException {
+        return ThumbnailGenerator.createThumbnail(source, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+    }
+
+    @Benchmark
+    public ImageProperties properties() throws IOException {
+        return ImageProperties.probe(source);
+    }
+}
@@ -0,0 +1,755 @@
+import engine.BatchHandle;
+import engine.BatchListener;
+import engine.BatchResult;
+import engine.HotFolderWatcher;
+import engine.ImagePipeline;
+import engine.IngestMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.EdgeMode;
+import util.FilterChain;
+import util.ImageConverter;
+import util.StreamingImageProcessor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ImageCli is the headless entry point of the application for batch processing on servers.
+ * It converts and filters the images matching one or more globs into an output directory through
+ * an ImagePipeline, overlapping file I/O with decoding and encoding on every processor, and never
+ * initializes the JavaFX toolkit or a display. The directories below the fixed part of each glob are
+ * mirrored under the output directory, so that in/a/IMG_1.png and in/b/IMG_1.png matched by a
+ * recursive glob under in/ are written to a/IMG_1.png and b/IMG_1.png; inputs that would still write
+ * the same output (such as x.png and x.jpg converted to PNG) are reported as failures.
+ * Every written file (or failure) is reported as one JSON object per line, followed by a summary
+ * line; the process exits with status 1 if any image failed and 2 on invalid arguments.
+ * With --watch, the single directory argument is watched as a hot folder instead (see
+ * HotFolderWatcher) until the process is terminated, with queue metrics reported periodically;
+ * files being processed at the same time that would write the same output are reported as failures.
+ * Usage: java -cp &lt;classpath&gt; ImageCli [options] &lt;glob&gt;...
+ * Run with --help for the list of options.
+ */
+public final class ImageCli {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageCli.class);
+
+    // Exit statuses
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_FAILURES = 1;
+    private static final int EXIT_USAGE = 2;
+
+    // Concurrent file reads and writes in batch mode; they block on I/O, so more than the processors
+    private static final int DEFAULT_IO_THREADS = 8;
+
+    // Files queued for the workers in watch mode
+    private static final int DEFAULT_WATCH_QUEUE = 1000;
+
+    // Interval between metrics lines in watch mode
+    private static final long METRICS_INTERVAL_MILLIS = 10_000;
+
+    // Characters that make a path segment a glob pattern
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: ImageCli [options] <glob>...",
+            "Converts and filters every image matching the globs (e.g. 'photos/**/*.jpg').",
+            "",
+            "Options:",
+            "  -o, --output <dir>        Output directory (required).",
+            "  -f, --format <list>       Comma-separated target formats: png, jpeg, jpg, bmp, gif.",
+            "                            Defaults to the format of each source file.",
+            "      --filter <list>       Comma-separated filters applied in order: grayscale, sepia,",
+            "                            blur, box:<radius>, gaussian:<sigma>.",
+            "      --edge-mode <mode>    How filters read beyond the edges: clamp, reflect, wrap.",
+            "      --report <file>       Write the JSON lines report to a file instead of standard output.",
+            "  -j, --threads <n>         Number of threads decoding, filtering and encoding.",
+            "                            Defaults to the number of processors.",
+            "      --io-threads <n>      Number of concurrent file reads and writes (default 8).",
+            "      --watch               Watch the single directory argument and process files dropped",
+            "                            into it, moving them to its processed/ or failed/ subdirectory.",
+            "      --settle <millis>     Time a watched file must stay unchanged to be complete (default 2000).",
+            "      --queue <n>           Number of files buffered between stages (default twice --threads),",
+            "                            or of watched files queued for the workers (default 1000).",
+            "  -h, --help                Print this help.");
+
+    // Private constructor to prevent instantiation
+    private ImageCli() {
+        throw new UnsupportedOperationException("ImageCli is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Runs the command line and exits with its status.
+     *
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        // ImageIO and Java2D must never try to reach a display
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args));
+    }
+
+    /**
+     * Parses the arguments, processes the matching images and reports the results.
+     *
+     * @param args Command line arguments.
+     * @return The exit status.
+     */
+    static int run(String[] args) {
+        Options options;
+        Map<Path, Path> inputs;
+        try {
+            options = Options.parse(args);
+            if (options.help) {
+                System.out.println(USAGE);
+                return EXIT_OK;
+            }
+            if (options.watch) {
+                return watch(options);
+            }
+            inputs = expand(options.patterns);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("ImageCli: " + e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("ImageCli: no files match " + options.patterns);
+            return EXIT_FAILURES;
+        }
+        if (!options.output.isDirectory() && !options.output.mkdirs()) {
+            System.err.println("ImageCli: cannot create output directory: " + options.output);
+            return EXIT_USAGE;
+        }
+
+        long start = System.nanoTime();
+        int queueCapacity = options.queueCapacity != null ? options.queueCapacity : 2 * options.threads;
+        ImageConverter converter = new ImageConverter();
+        try (PrintStream report = openReport(options.report);
+             ImagePipeline pipeline = new ImagePipeline(options.chain.isEmpty() ? null : options.chain::apply,
+                     converter::encode, options.threads, options.ioThreads, queueCapacity)) {
+            Report writer = new Report(report);
+
+            // Images too large to buffer whole are processed one at a time, streamed where possible
+            List<ImagePipeline.Job> jobs = new ArrayList<>();
+            Map<Path, Path> claimed = new HashMap<>();
+            int succeeded = 0;
+            int failed = 0;
+            for (Map.Entry<Path, Path> entry : inputs.entrySet()) {
+                Path input = entry.getKey();
+                Map<String, Path> outputs = outputsOf(entry.getValue(), options);
+                try {
+                    claimOutputs(claimed, input, outputs);
+                } catch (IOException e) {
+                    // Writing both would lose one image, and concurrently corrupt the file
+                    outputs.keySet().forEach(format -> writer.failure(input, format, e, 0));
+                    failed++;
+                    continue;
+                }
+                if (!isLarge(input, options)) {
+                    jobs.add(new ImagePipeline.Job(input, outputs));
+                    continue;
+                }
+                try {
+                    process(input, outputs, options, converter, writer);
+                    succeeded++;
+                } catch (IOException e) {
+                    failed++;
+                }
+            }
+
+            BatchResult[] outcome = new BatchResult[1];
+            BatchHandle handle = pipeline.submit(jobs,
+                    (input, format, output, error, nanos) -> {
+                        if (error == null) {
+                            writer.success(input, format, output.toFile(), nanos);
+                        } else {
+                            writer.failure(input, format, error, nanos);
+                        }
+                    },
+                    new BatchListener() {
+                        @Override
+                        public void onProgress(int completed, int total, String itemName) {
+                            logger.debug("Processed {} of {}: {}", completed, total, itemName);
+                        }
+
+                        @Override
+                        public void onComplete(BatchResult result) {
+                            outcome[0] = result;
+                        }
+                    });
+            handle.await();
+            succeeded += outcome[0].getSuccessCount();
+            failed += outcome[0].getFailureCount();
+            writer.summary(succeeded, failed, outcome[0].getSkippedCount(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return failed == 0 ? EXIT_OK : EXIT_FAILURES;
+        } catch (FileNotFoundException e) {
+            System.err.println("ImageCli: cannot write report: " + e.getMessage());
+            return EXIT_USAGE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FAILURES;
+        }
+    }
+
+    /**
+     * Watches a hot folder until the process is terminated, reporting every output as it is
+     * written and the queue metrics at a fixed interval.
+     *
+     * @param options The parsed options.
+     * @return The exit status, once interrupted.
+     * @throws IOException if the directory cannot be watched.
+     */
+    private static int watch(Options options) throws IOException {
+        Path directory = Paths.get(options.patterns.get(0));
+        if (options.patterns.size() != 1 || !Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("--watch requires exactly one directory.");
+        }
+        if (directory.toAbsolutePath().normalize().equals(options.output.toPath().toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("The output directory cannot be the watched directory.");
+        }
+        if (!options.output.isDirectory() && !options.output.mkdirs()) {
+            throw new IOException("Cannot create output directory: " + options.output);
+        }
+
+        PrintStream out = openReport(options.report);
+        Report report = new Report(out);
+        ImageConverter converter = new ImageConverter();
+        Map<Path, Path> writing = new ConcurrentHashMap<>();
+        HotFolderWatcher watcher = new HotFolderWatcher(directory,
+                path -> ingest(path, options, converter, report, writing),
+                options.queueCapacity != null ? options.queueCapacity : DEFAULT_WATCH_QUEUE,
+                options.threads, Duration.ofMillis(options.settleMillis));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            watcher.close();
+            report.metrics(watcher.getMetrics());
+            out.close();
+        }, "watch-shutdown"));
+        watcher.start();
+        try {
+            while (true) {
+                Thread.sleep(METRICS_INTERVAL_MILLIS);
+                IngestMetrics metrics = watcher.getMetrics();
+                logger.info("Ingestion metrics: {}", metrics);
+                report.metrics(metrics);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FAILURES;
+        }
+    }
+
+    /**
+     * Indicates whether an input should bypass the pipeline because it is to be streamed to one of
+     * its target formats (see StreamingImageProcessor.shouldStream).
+     *
+     * @param input   The source image.
+     * @param options The parsed options.
+     * @return true if the image is too large to buffer whole.
+     */
+    private static boolean isLarge(Path input, Options options) {
+        try {
+            for (String format : formatsOf(input, options)) {
+                if (StreamingImageProcessor.shouldStream(input.toFile(), format)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable headers are reported by the pipeline like any other decoding failure
+        }
+        return false;
+    }
+
+    /**
+     * Lists the output file of every target format of an input, in the output directory or the
+     * subdirectory of it mirroring the location of the input below its glob.
+     *
+     * @param relative The path of the source image relative to the directory its glob searched.
+     * @param options  The parsed options.
+     * @return The output files by format.
+     */
+    private static Map<String, Path> outputsOf(Path relative, Options options) {
+        String baseName = baseName(relative.getFileName().toString());
+        Path directory = relative.getParent() == null
+                ? options.output.toPath() : options.output.toPath().resolve(relative.getParent());
+        Map<String, Path> outputs = new LinkedHashMap<>();
+        for (String format : formatsOf(relative, options)) {
+            outputs.put(format, directory.resolve(baseName + "." + format));
+        }
+        return outputs;
+    }
+
+    /**
+     * Reserves the outputs of an input and creates their directory, unless another input already
+     * writes one of them.
+     *
+     * @param claimed The inputs writing each output so far; updated with the outputs of this input.
+     * @param input   The source image.
+     * @param outputs The output files of the input by format.
+     * @throws IOException if an output is already claimed or its directory cannot be created.
+     */
+    private static void claimOutputs(Map<Path, Path> claimed, Path input, Map<String, Path> outputs)
+            throws IOException {
+        for (Path output : outputs.values()) {
+            Path owner = claimed.get(output);
+            if (owner != null) {
+                throw new IOException("Output " + output + " is also written from " + owner);
+            }
+        }
+        for (Path output : outputs.values()) {
+            claimed.put(output, input);
+            Files.createDirectories(output.getParent());
+        }
+    }
+
+    /**
+     * Processes a file dropped into the watched directory. Its outputs are claimed while it is being
+     * processed, so that files dropped together that map to the same output (such as x.jpg and x.bmp
+     * converted to PNG) are not written at the same time by two workers: as in batch mode, the
+     * clash is reported as a failure and the later file is moved to the failed directory. A file
+     * dropped after the earlier one finished replaces its outputs, as a new run would.
+     *
+     * @param input     The source image.
+     * @param options   The parsed options.
+     * @param converter The converter writing the outputs.
+     * @param report    The report receiving one line per output.
+     * @param writing   The input writing each output at the moment, shared by the workers.
+     * @throws IOException if an output is being written from another input, or any output failed.
+     */
+    private static void ingest(Path input, Options options, ImageConverter converter, Report report,
+                               Map<Path, Path> writing) throws IOException {
+        Map<String, Path> outputs = outputsOf(input.getFileName(), options);
+        List<Path> claimed = new ArrayList<>();
+        try {
+            for (Path output : outputs.values()) {
+                Path owner = writing.putIfAbsent(output, input);
+                if (owner != null) {
+                    IOException clash = new IOException("Output " + output + " is also being written from " + owner);
+                    outputs.keySet().forEach(format -> report.failure(input, format, clash, 0));
+                    throw clash;
+                }
+                claimed.add(output);
+            }
+            process(input, outputs, options, converter, report);
+        } finally {
+            for (Path output : claimed) {
+                writing.remove(output, input);
+            }
+        }
+    }
+
+    /**
+     * Lists the target formats of an input: the requested formats, or the format of the source.
+     *
+     * @param input   The source image.
+     * @param options The parsed options.
+     * @return The target formats.
+     */
+    private static List<String> formatsOf(Path input, Options options) {
+        return options.formats.isEmpty() ? List.of(extension(input.getFileName().toString())) : options.formats;
+    }
+
+    /**
+     * Writes one input image in every target format, filtering it first if a chain is configured.
+     * The source is decoded at most once for all formats; images too large for the heap are
+     * streamed when the format allows it (see StreamingImageProcessor).
+     *
+     * @param input     The source image.
+     * @param outputs   The output files by format (see outputsOf).
+     * @param options   The parsed options.
+     * @param converter The converter writing the outputs.
+     * @param report    The report receiving one line per output.
+     * @throws IOException if any output failed, after all formats were attempted.
+     */
+    private static void process(Path input, Map<String, Path> outputs, Options options, ImageConverter converter,
+                                Report report) throws IOException {
+        File inputFile = input.toFile();
+
+        BufferedImage filtered = null;
+        int failures = 0;
+        for (Map.Entry<String, Path> output : outputs.entrySet()) {
+            String format = output.getKey();
+            File outputFile = output.getValue().toFile();
+            long start = System.nanoTime();
+            try {
+                if (options.chain.isEmpty()) {
+                    converter.process(inputFile, outputFile, format);
+                } else if (StreamingImageProcessor.shouldStream(inputFile, format)) {
+                    new StreamingImageProcessor(options.chain).process(inputFile, outputFile, format);
+                } else {
+                    if (filtered == null) {
+                        BufferedImage source = ImageIO.read(inputFile);
+                        if (source == null) {
+                            throw new IOException("Unsupported or corrupted image format: " + inputFile.getName());
+                        }
+                        filtered = options.chain.apply(source);
+                    }
+                    converter.write(filtered, outputFile, format);
+                }
+                report.success(input, format, outputFile, System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                failures++;
+                report.failure(input, format, e, System.nanoTime() - start);
+            }
+        }
+        if (failures > 0) {
+            throw new IOException(failures + " of " + outputs.size() + " outputs failed for " + input);
+        }
+    }
+
+    /**
+     * Expands file names and glob patterns into the distinct regular files they match, sorted.
+     * A pattern is split at its first segment containing a glob character; the fixed leading
+     * segments name the directory that is searched. Each file is mapped to its path relative to that
+     * directory, or to its file name if it was named directly; a file matched by several patterns
+     * keeps the first.
+     *
+     * @param patterns The file names or glob patterns.
+     * @return The matching files, mapped to their relative paths.
+     * @throws IOException if a directory cannot be searched.
+     */
+    static Map<Path, Path> expand(List<String> patterns) throws IOException {
+        Map<Path, Path> files = new TreeMap<>();
+        for (String pattern : patterns) {
+            Path path = Paths.get(pattern);
+            int first = 0;
+            while (first < path.getNameCount() && !isGlob(path.getName(first).toString())) {
+                first++;
+            }
+            if (first == path.getNameCount()) {
+                if (Files.isRegularFile(path)) {
+                    files.putIfAbsent(path.toAbsolutePath().normalize(), path.getFileName());
+                }
+                continue;
+            }
+
+            Path base = first == 0 ? (path.isAbsolute() ? path.getRoot() : Paths.get(""))
+                    : (path.isAbsolute() ? path.getRoot().resolve(path.subpath(0, first)) : path.subpath(0, first));
+            Path searched = base.toString().isEmpty() ? Paths.get(".") : base;
+            String remainder = path.subpath(first, path.getNameCount()).toString();
+            PathMatcher matcher = searched.getFileSystem().getPathMatcher("glob:" + remainder);
+            int depth = remainder.contains("**") ? Integer.MAX_VALUE : path.getNameCount() - first;
+            if (!Files.isDirectory(searched)) {
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(searched, depth)) {
+                walk.filter(Files::isRegularFile)
+                        .filter(file -> matcher.matches(searched.relativize(file)))
+                        .forEach(file -> files.putIfAbsent(file.toAbsolutePath().normalize(),
+                                searched.relativize(file)));
+            }
+        }
+        return files;
+    }
+
+    private static boolean isGlob(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(segment.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens the report destination.
+     *
+     * @param report The report file, or null for standard output.
+     * @return The stream receiving the report. Closing it leaves standard output open.
+     * @throws FileNotFoundException if the file cannot be created.
+     */
+    private static PrintStream openReport(File report) throws FileNotFoundException {
+        if (report == null) {
+            return new PrintStream(System.out, true, StandardCharsets.UTF_8) {
+                @Override
+                public void close() {
+                    flush();
+                }
+            };
+        }
+        return new PrintStream(new FileOutputStream(report), true, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Extracts the base name of a file name without its extension.
+     *
+     * @param fileName The file name.
+     * @return The base name.
+     */
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * Extracts the lower-case extension of a file name.
+     *
+     * @param fileName The file name.
+     * @return The extension, or an empty string if there is none.
+     */
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * The parsed command line.
+     */
+    private static final class Options {
+        private final List<String> patterns = new ArrayList<>();
+        private final List<String> formats = new ArrayList<>();
+        private final FilterChain chain = new FilterChain();
+        private File output;
+        private File report;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private boolean help;
+        private boolean watch;
+        private long settleMillis = 2000;
+        private Integer queueCapacity;
+        private int ioThreads = DEFAULT_IO_THREADS;
+
+        /**
+         * Parses command line arguments.
+         *
+         * @param args The arguments.
+         * @return The options.
+         * @throws IllegalArgumentException if an argument is invalid or the output directory is missing.
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-h":
+                    case "--help":
+                        options.help = true;
+                        return options;
+                    case "-o":
+                    case "--output":
+                        options.output = new File(value(args, ++i, arg));
+                        break;
+                    case "-f":
+                    case "--format":
+                        for (String format : value(args, ++i, arg).split(",")) {
+                            options.formats.add(format.trim().toLowerCase(Locale.ROOT));
+                        }
+                        break;
+                    case "--filter":
+                        for (String filter : value(args, ++i, arg).split(",")) {
+                            addFilter(options.chain, filter.trim());
+                        }
+                        break;
+                    case "--edge-mode":
+                        options.chain.edgeMode(parseEdgeMode(value(args, ++i, arg)));
+                        break;
+                    case "--report":
+                        options.report = new File(value(args, ++i, arg));
+                        break;
+                    case "--watch":
+                        options.watch = true;
+                        break;
+                    case "--settle":
+                        options.settleMillis = parseNumber(value(args, ++i, arg), arg).longValue();
+                        if (options.settleMillis < 0) {
+                            throw new IllegalArgumentException("Settle time cannot be negative.");
+                        }
+                        break;
+                    case "--queue":
+                        options.queueCapacity = parseNumber(value(args, ++i, arg), arg).intValue();
+                        if (options.queueCapacity <= 0) {
+                            throw new IllegalArgumentException("Queue capacity must be positive.");
+                        }
+                        break;
+                    case "--io-threads":
+                        options.ioThreads = parseNumber(value(args, ++i, arg), arg).intValue();
+                        if (options.ioThreads <= 0) {
+                            throw new IllegalArgumentException("I/O thread count must be positive.");
+                        }
+                        break;
+                    case "-j":
+                    case "--threads":
+                        options.threads = parseNumber(value(args, ++i, arg), arg).intValue();
+                        if (options.threads <= 0) {
+                            throw new IllegalArgumentException("Thread count must be positive.");
+                        }
+                        break;
+                    default:
+                        if (arg.startsWith("-")) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        }
+                        options.patterns.add(arg);
+                }
+            }
+            if (options.output == null) {
+                throw new IllegalArgumentException("An output directory is required (--output).");
+            }
+            if (options.patterns.isEmpty()) {
+                throw new IllegalArgumentException("At least one input file or glob is required.");
+            }
+            return options;
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option + ".");
+            }
+            return args[index];
+        }
+
+        /**
+         * Appends a filter given as name or name:argument to the chain.
+         */
+        private static void addFilter(FilterChain chain, String filter) {
+            int colon = filter.indexOf(':');
+            String name = (colon < 0 ? filter : filter.substring(0, colon)).toLowerCase(Locale.ROOT);
+            String argument = colon < 0 ? null : filter.substring(colon + 1);
+            switch (name) {
+                case "grayscale":
+                    chain.grayscale();
+                    break;
+                case "sepia":
+                    chain.sepia();
+                    break;
+                case "blur":
+                    chain.blur();
+                    break;
+                case "box":
+                    chain.boxBlur(parseNumber(requireArgument(name, argument), name).intValue());
+                    break;
+                case "gaussian":
+                    chain.gaussianBlur(parseNumber(requireArgument(name, argument), name).doubleValue());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown filter: " + filter);
+            }
+        }
+
+        private static String requireArgument(String filter, String argument) {
+            if (argument == null || argument.isEmpty()) {
+                throw new IllegalArgumentException("Filter " + filter + " requires an argument, e.g. " + filter + ":5");
+            }
+            return argument;
+        }
+
+        private static Number parseNumber(String text, String name) {
+            try {
+                return text.contains(".") ? (Number) Double.parseDouble(text) : (Number) Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + name + ": " + text);
+            }
+        }
+
+        private static EdgeMode parseEdgeMode(String mode) {
+            try {
+                return EdgeMode.valueOf(mode.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown edge mode: " + mode);
+            }
+        }
+    }
+
+    /**
+     * Writes the JSON lines report. Lines are written atomically, so workers can report concurrently.
+     */
+    private static final class Report {
+        private final PrintStream out;
+
+        Report(PrintStream out) {
+            this.out = out;
+        }
+
+        void success(Path input, String format, File output, long nanos) {
+            line("{\"type\":\"result\",\"status\":\"ok\",\"input\":" + quote(input.toString())
+                    + ",\"format\":" + quote(format)
+                    + ",\"output\":" + quote(output.getAbsolutePath())
+                    + ",\"bytes\":" + output.length()
+                    + ",\"millis\":" + nanos / 1_000_000 + "}");
+        }
+
+        void failure(Path input, String format, Exception error, long nanos) {
+            String message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+            line("{\"type\":\"result\",\"status\":\"error\",\"input\":" + quote(input.toString())
+                    + ",\"format\":" + quote(format)
+                    + ",\"error\":" + quote(message)
+                    + ",\"millis\":" + nanos / 1_000_000 + "}");
+        }
+
+        void metrics(IngestMetrics metrics) {
+            line("{\"type\":\"metrics\",\"pending\":" + metrics.getPendingCount()
+                    + ",\"queued\":" + metrics.getQueueDepth()
+                    + ",\"queueCapacity\":" + metrics.getQueueCapacity()
+                    + ",\"running\":" + metrics.getRunningCount()
+                    + ",\"processed\":" + metrics.getProcessedCount()
+                    + ",\"failed\":" + metrics.getFailedCount()
+                    + ",\"averageLatencyMillis\":" + metrics.getAverageLatencyMillis()
+                    + ",\"maxLatencyMillis\":" + metrics.getMaxLatencyMillis() + "}");
+        }
+
+        void summary(int succeeded, int failed, int skipped, long millis) {
+            line("{\"type\":\"summary\",\"succeeded\":" + succeeded
+                    + ",\"failed\":" + failed
+                    + ",\"skipped\":" + skipped
+                    + ",\"millis\":" + millis + "}");
+        }
+
+        private synchronized void line(String json) {
+            out.println(json);
+        }
+
+        /**
+         * Encodes a string as a JSON string literal.
+         */
+        private static String quote(String text) {
+            StringBuilder builder = new StringBuilder(text.length() + 2).append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        builder.append("\\\"");
+                        break;
+                    case '\\':
+                        builder.append("\\\\");
+                        break;
+                    case '\n':
+                        builder.append("\\n");
+                        break;
+                    case '\r':
+                        builder.append("\\r");
+                        break;
+                    case '\t':
+                        builder.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            builder.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            builder.append(c);
+                        }
+                }
+            }
+            return builder.append('"').toString();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DecodedImageCache keeps recently used decoded images in memory, evicting the least recently
+ * used entries once the total size of their rasters exceeds a byte budget.
+ * Budgeting by bytes rather than by entry count keeps memory bounded regardless of image resolution.
+ * Concurrent requests for the same key share a single decode.
+ * This class is thread-safe.
+ */
+public final class DecodedImageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecodedImageCache.class);
+
+    // System property overriding the default byte budget of the shared cache
+    public static final String MAX_BYTES_PROPERTY = "imageapp.decodedCache.maxBytes";
+
+    // Fraction of the maximum heap used by the shared cache when no budget is configured
+    private static final double DEFAULT_HEAP_FRACTION = 0.25;
+
+    private static final DecodedImageCache SHARED = new DecodedImageCache(resolveDefaultBudget());
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<BufferedImage>> pendingDecodes = new ConcurrentHashMap<>();
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Loads an image when it is not present in the cache.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * Decodes the image.
+         *
+         * @return The decoded image. Must not be null.
+         * @throws IOException If the image cannot be decoded.
+         */
+        BufferedImage load() throws IOException;
+    }
+
+    /**
+     * Constructs a cache with the given byte budget.
+     *
+     * @param maxBytes The maximum total size of cached rasters in bytes. Must be positive.
+     * @throws IllegalArgumentException if maxBytes is not positive.
+     */
+    public DecodedImageCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Retrieves the cache shared by all image models.
+     *
+     * @return The shared cache.
+     */
+    public static DecodedImageCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached image for the key, decoding it with the loader on a miss.
+     * The returned image is shared and must be treated as read-only by callers.
+     *
+     * @param key    The cache key, typically the absolute path of the image file.
+     * @param loader Decodes the image on a cache miss.
+     * @return The decoded image.
+     * @throws IOException If the image is not cached and cannot be decoded.
+     */
+    public BufferedImage get(String key, Loader loader) throws IOException {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.image;
+            }
+        }
+        misses.incrementAndGet();
+
+        // Only the first caller decodes; concurrent callers for the same key wait for its result
+        CompletableFuture<BufferedImage> pending = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> existing = pendingDecodes.putIfAbsent(key, pending);
+        if (existing != null) {
+            return awaitDecode(existing);
+        }
+
+        try {
+            BufferedImage image = loader.load();
+            if (image == null) {
+                throw new IOException("Loader returned no image for: " + key);
+            }
+            put(key, image);
+            pending.complete(image);
+            return image;
+        } catch (Throwable e) {
+            // Errors such as OutOfMemoryError must also release the callers waiting for this decode
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingDecodes.remove(key);
+        }
+    }
+
+    /**
+     * Waits for a decode started by another thread.
+     *
+     * @param pending The pending decode.
+     * @return The decoded image.
+     * @throws IOException If the decode failed or the wait was interrupted.
+     */
+    private BufferedImage awaitDecode(CompletableFuture<BufferedImage> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image decode.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Image decode failed.", cause);
+        }
+    }
+
+    /**
+     * Inserts an image and evicts least recently used entries until the cache fits its budget.
+     * Images larger than the whole budget are not cached.
+     *
+     * @param key   The cache key.
+     * @param image The decoded image.
+     */
+    private synchronized void put(String key, BufferedImage image) {
+        long size = estimateBytes(image);
+        if (size > maxBytes) {
+            logger.debug("Image {} ({} bytes) exceeds the cache budget and is not cached.", key, size);
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(image, size));
+        if (previous != null) {
+            currentBytes -= previous.bytes;
+        }
+        currentBytes += size;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().bytes;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the entry for the key, if present.
+     *
+     * @param key The cache key.
+     */
+    public synchronized void invalidate(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * Removes all entries. Counters are left untouched.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Estimates the heap footprint of an image's raster.
+     *
+     * @param image The image.
+     * @return The size of the backing data buffer in bytes.
+     */
+    static long estimateBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long elementBytes = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return (long) buffer.getSize() * buffer.getNumBanks() * elementBytes;
+    }
+
+    /**
+     * Resolves the budget of the shared cache from the system property or the heap size.
+     *
+     * @return The byte budget.
+     */
+    private static long resolveDefaultBudget() {
+        String configured = System.getProperty(MAX_BYTES_PROPERTY);
+        if (configured != null) {
+            try {
+                long value = Long.parseLong(configured.trim());
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the heap-based default
+            }
+            logger.warn("Ignoring invalid value for {}: {}", MAX_BYTES_PROPERTY, configured);
+        }
+        return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+    }
+
+    /**
+     * Retrieves the byte budget.
+     *
+     * @return The maximum total size of cached rasters in bytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Retrieves the current total size of cached rasters.
+     *
+     * @return The cached size in bytes.
+     */
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    /**
+     * Retrieves the number of cached entries.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Retrieves the number of lookups served from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves the number of lookups that required a decode.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Retrieves the number of entries evicted to stay within the budget.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Holds a cached image together with its estimated size.
+     */
+    private static final class Entry {
+        private final BufferedImage image;
+        private final long bytes;
+
+        Entry(BufferedImage image, long bytes) {
+            this.image = image;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * ThumbnailStore persists generated thumbnails across application launches.
+ * Thumbnails are appended as PNG data to a single pack file, and a fixed-size record per entry is
+ * appended to an index file that is read on startup. Entries are keyed by the canonical path of the
+ * source image and validated against its length and last-modified time (and optionally a checksum of
+ * its content), so a modified file is never served a stale thumbnail.
+ * Both files start with the same generation number, which changes whenever they are rewritten, so a
+ * pack and an index that do not belong together (after a crash during compaction) are discarded.
+ * The store compacts itself in the background when superseded entries waste space and keeps its pack
+ * file under a configurable size cap by dropping the least recently used entries.
+ * This class is thread-safe. Its lock only covers record lookups and reserving and indexing space in
+ * the pack, so reads, PNG decoding and encoding, and checksums of different files run in parallel.
+ */
+public final class ThumbnailStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailStore.class);
+
+    // System properties configuring the shared store
+    public static final String DIRECTORY_PROPERTY = "imageapp.thumbnailCache.dir";
+    public static final String MAX_BYTES_PROPERTY = "imageapp.thumbnailCache.maxBytes";
+    public static final String VERIFY_CONTENT_PROPERTY = "imageapp.thumbnailCache.verifyContent";
+
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String PACK_FILE_NAME = "thumbnails.pack";
+    private static final String INDEX_FILE_NAME = "thumbnails.idx";
+
+    // File layout: an 8-byte magic and an 8-byte generation, followed by entries (pack) or fixed-size records (index)
+    private static final byte[] PACK_MAGIC = "THMBPAK1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INDEX_MAGIC = "THMBIDX2".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 44;
+
+    // Compaction is triggered when more than this fraction of the pack is unreachable
+    private static final double MAX_GARBAGE_RATIO = 0.5;
+    // When the cap is exceeded, compaction keeps the most recent entries up to this fraction of the cap
+    private static final double COMPACTION_TARGET_RATIO = 0.75;
+
+    private static volatile ThumbnailStore shared;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean verifyContent;
+    private final boolean enabled;
+
+    // Held shared while reading or writing the pack and index, and exclusively while compaction swaps them
+    private final ReentrantReadWriteLock channelLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    // Guarded by this
+    private final Map<Long, Record> records = new HashMap<>();
+    private FileChannel pack;
+    private FileChannel index;
+    private long packEnd;
+    private long indexEnd;
+    private long liveBytes;
+    private long accessClock;
+    private boolean closed;
+
+    /**
+     * Opens or creates a store in the given directory.
+     *
+     * @param directory     The directory holding the pack and index files.
+     * @param maxBytes      The maximum size of the pack file in bytes. Must be positive.
+     * @param verifyContent Whether entries are also validated against a checksum of the file content.
+     * @throws IOException              If the store cannot be opened.
+     * @throws IllegalArgumentException If directory is null or maxBytes is not positive.
+     */
+    public ThumbnailStore(Path directory, long maxBytes, boolean verifyContent) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Thumbnail store directory cannot be null.");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Thumbnail store size cap must be positive.");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.verifyContent = verifyContent;
+        this.enabled = true;
+
+        Files.createDirectories(directory);
+        synchronized (this) {
+            open();
+        }
+        if (needsCompaction()) {
+            compact();
+        }
+        logger.info("Thumbnail store opened at {} with {} entries.", directory, size());
+    }
+
+    /**
+     * Retrieves the store shared by the application, opening it on first use.
+     * If the store cannot be opened, null is returned and thumbnails are simply not persisted.
+     *
+     * @return The shared store, or null if it is unavailable.
+     */
+    public static ThumbnailStore getShared() {
+        ThumbnailStore store = shared;
+        if (store == null) {
+            synchronized (ThumbnailStore.class) {
+                store = shared;
+                if (store == null) {
+                    store = openShared();
+                    shared = store;
+                }
+            }
+        }
+        return store.enabled ? store : null;
+    }
+
+    /**
+     * Opens the shared store from the system properties, falling back to a disabled store on failure.
+     *
+     * @return The opened store, or a disabled store if opening failed.
+     */
+    private static ThumbnailStore openShared() {
+        String configuredDir = System.getProperty(DIRECTORY_PROPERTY);
+        Path dir = configuredDir != null
+                ? Paths.get(configuredDir)
+                : Paths.get(System.getProperty("user.home"), ".imageapp", "thumbnails");
+        long cap = Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+        boolean verify = Boolean.getBoolean(VERIFY_CONTENT_PROPERTY);
+        try {
+            return new ThumbnailStore(dir, cap > 0 ? cap : DEFAULT_MAX_BYTES, verify);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Thumbnail store unavailable at {}; thumbnails will not be persisted.", dir, e);
+            return new ThumbnailStore(dir);
+        }
+    }
+
+    /**
+     * Constructs a disabled store that is never returned to callers.
+     *
+     * @param directory The directory that failed to open.
+     */
+    private ThumbnailStore(Path directory) {
+        this.directory = directory;
+        this.maxBytes = DEFAULT_MAX_BYTES;
+        this.verifyContent = false;
+        this.enabled = false;
+    }
+
+    /**
+     * Looks up the thumbnail of an image file.
+     *
+     * @param file The source image file.
+     * @return The stored thumbnail, or null if none is stored or the file changed since it was stored.
+     */
+    public BufferedImage get(File file) {
+        try {
+            String path = file.getCanonicalPath();
+            long key = hashPath(path);
+            long fileLength = file.length();
+            long lastModified = file.lastModified();
+
+            Record found;
+            synchronized (this) {
+                found = records.get(key);
+            }
+            if (found == null || found.fileLength != fileLength || found.lastModified != lastModified) {
+                return null;
+            }
+            // The checksum reads the whole source file, so it is computed before taking any lock
+            if (verifyContent && found.contentHash != contentHash(file)) {
+                return null;
+            }
+
+            byte[] entry;
+            channelLock.readLock().lock();
+            try {
+                Record record;
+                FileChannel source;
+                synchronized (this) {
+                    // Compaction may have moved the entry, or a newer thumbnail replaced it, meanwhile
+                    record = records.get(key);
+                    if (closed || record == null || record.fileLength != found.fileLength
+                            || record.lastModified != found.lastModified || record.contentHash != found.contentHash) {
+                        return null;
+                    }
+                    record.lastAccess = ++accessClock;
+                    source = pack;
+                }
+                entry = readEntry(source, record);
+            } finally {
+                channelLock.readLock().unlock();
+            }
+
+            int pathLength = ByteBuffer.wrap(entry).getInt();
+            String storedPath = new String(entry, Integer.BYTES, pathLength, StandardCharsets.UTF_8);
+            if (!storedPath.equals(path)) {
+                return null; // Hash collision with a different path
+            }
+            int imageOffset = Integer.BYTES + pathLength;
+            return ImageIO.read(new ByteArrayInputStream(entry, imageOffset, entry.length - imageOffset));
+        } catch (IOException e) {
+            logger.warn("Failed to read stored thumbnail for {}", file.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the thumbnail of an image file, replacing any previous entry for the same path.
+     *
+     * @param file      The source image file.
+     * @param thumbnail The thumbnail to store.
+     */
+    public void put(File file, BufferedImage thumbnail) {
+        boolean compactionNeeded;
+        try {
+            String path = file.getCanonicalPath();
+            byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            long fileLength = file.length();
+            long lastModified = file.lastModified();
+            long contentHash = verifyContent ? contentHash(file) : 0L;
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            if (!ImageIO.write(thumbnail, "png", encoded)) {
+                return;
+            }
+
+            ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + pathBytes.length + encoded.size());
+            entry.putInt(pathBytes.length).put(pathBytes).put(encoded.toByteArray()).flip();
+            int entryLength = entry.remaining();
+
+            channelLock.readLock().lock();
+            try {
+                long offset;
+                FileChannel target;
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    // Reserve the space so that concurrent puts write their entries side by side
+                    offset = packEnd;
+                    packEnd += entryLength;
+                    target = pack;
+                }
+                writeFully(target, entry, offset);
+
+                // The record is only indexed once its entry is written
+                Record record = new Record(hashPath(path), fileLength, lastModified, contentHash, offset, entryLength);
+                synchronized (this) {
+                    writeFully(index, record.toBuffer(), indexEnd);
+                    indexEnd += RECORD_SIZE;
+                    record.lastAccess = ++accessClock;
+                    track(record);
+                    compactionNeeded = needsCompaction();
+                }
+            } finally {
+                channelLock.readLock().unlock();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to store thumbnail for {}", file.getName(), e);
+            return;
+        }
+        if (compactionNeeded) {
+            compactInBackground();
+        }
+    }
+
+    /**
+     * Retrieves the number of stored thumbnails.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * Retrieves the current size of the pack file.
+     *
+     * @return The pack size in bytes.
+     */
+    public synchronized long getPackBytes() {
+        return packEnd;
+    }
+
+    /**
+     * Closes the pack and index files, waiting for reads and writes in progress. A compaction in
+     * progress is abandoned.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channelLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (pack != null && !closed) {
+                    closed = true;
+                    pack.close();
+                    index.close();
+                }
+            }
+        } finally {
+            channelLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the pack and index files and loads the index. An index that is corrupt, unrecognized or
+     * of a different generation than the pack causes both files to be discarded.
+     * Must be called while holding the lock on this store.
+     *
+     * @throws IOException If the files cannot be opened.
+     */
+    private void open() throws IOException {
+        Path packPath = directory.resolve(PACK_FILE_NAME);
+        Path indexPath = directory.resolve(INDEX_FILE_NAME);
+        pack = FileChannel.open(packPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (!loadIndex()) {
+            logger.info("Initializing empty thumbnail store at {}", directory);
+            records.clear();
+            liveBytes = 0;
+            long generation = ThreadLocalRandom.current().nextLong();
+            pack.truncate(0);
+            index.truncate(0);
+            writeFully(pack, header(PACK_MAGIC, generation), 0);
+            writeFully(index, header(INDEX_MAGIC, generation), 0);
+            packEnd = HEADER_SIZE;
+            indexEnd = HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Reads every index record with a plain read of the index file, so that no mapping keeps the file
+     * from being truncated or replaced. Later records supersede earlier ones for the same key; a
+     * partial record left by a crash is ignored and overwritten by the next append.
+     * Must be called while holding the lock on this store.
+     *
+     * @return true if the index was valid and matches the pack.
+     * @throws IOException If the files cannot be read.
+     */
+    private boolean loadIndex() throws IOException {
+        records.clear();
+        liveBytes = 0;
+        long packSize = pack.size();
+        long indexSize = index.size();
+        if (packSize < HEADER_SIZE || indexSize < HEADER_SIZE || indexSize > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        ByteBuffer packHeader = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(pack, packHeader, 0);
+        ByteBuffer contents = ByteBuffer.allocate((int) indexSize);
+        readFully(index, contents, 0);
+        packHeader.flip();
+        contents.flip();
+
+        if (!readMagic(packHeader, PACK_MAGIC) || !readMagic(contents, INDEX_MAGIC)) {
+            return false;
+        }
+        long packGeneration = packHeader.getLong();
+        if (contents.getLong() != packGeneration) {
+            logger.warn("Thumbnail pack and index do not belong together; discarding them.");
+            return false;
+        }
+
+        while (contents.remaining() >= RECORD_SIZE) {
+            Record record = new Record(contents.getLong(), contents.getLong(), contents.getLong(), contents.getLong(),
+                    contents.getLong(), contents.getInt());
+            if (record.packOffset < HEADER_SIZE || record.entryLength <= 0
+                    || record.packOffset + record.entryLength > packSize) {
+                return false;
+            }
+            record.lastAccess = ++accessClock;
+            track(record);
+        }
+        packEnd = packSize;
+        indexEnd = contents.position();
+        return true;
+    }
+
+    /**
+     * Registers a record in memory, replacing the previous record for the same key.
+     * Must be called while holding the lock on this store.
+     *
+     * @param record The record.
+     */
+    private void track(Record record) {
+        Record previous = records.put(record.keyHash, record);
+        if (previous != null) {
+            liveBytes -= previous.entryLength;
+        }
+        liveBytes += record.entryLength;
+    }
+
+    /**
+     * Determines whether the pack exceeds its cap or holds too many superseded entries.
+     *
+     * @return true if the store should be compacted.
+     */
+    private synchronized boolean needsCompaction() {
+        long dataBytes = packEnd - HEADER_SIZE;
+        return packEnd > maxBytes || (dataBytes > 0 && dataBytes - liveBytes > dataBytes * MAX_GARBAGE_RATIO);
+    }
+
+    /**
+     * Starts a compaction on a background thread unless one is already running.
+     */
+    private void compactInBackground() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread compactor = new Thread(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to compact thumbnail store at {}", directory, e);
+            } finally {
+                compacting.set(false);
+            }
+        }, "thumbnail-store-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    /**
+     * Rewrites the pack and index with only the live entries, under a new generation. If the live
+     * entries exceed the size cap, the most recently used entries are kept up to a fraction of the cap.
+     * The entries are copied while gets and puts carry on; only entries stored during the copy are
+     * copied again while the store is briefly locked to swap the files. A crash between the two
+     * renames leaves files of different generations, which open discards.
+     *
+     * @throws IOException If compaction fails.
+     */
+    private void compact() throws IOException {
+        Path packTemp = directory.resolve(PACK_FILE_NAME + ".tmp");
+        Path indexTemp = directory.resolve(INDEX_FILE_NAME + ".tmp");
+        long newGeneration = ThreadLocalRandom.current().nextLong();
+        Map<Record, Record> moved = new IdentityHashMap<>();
+        List<Record> live;
+
+        try (FileChannel newPack = FileChannel.open(packTemp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(indexTemp, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(newPack, header(PACK_MAGIC, newGeneration), 0);
+            writeFully(newIndex, header(INDEX_MAGIC, newGeneration), 0);
+            long[] ends = {HEADER_SIZE, HEADER_SIZE};
+
+            // Copy the live entries, most recently used first, while the store stays usable
+            channelLock.readLock().lock();
+            try {
+                FileChannel source;
+                long budget;
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    live = new ArrayList<>(records.values());
+                    live.sort(Comparator.comparingLong((Record r) -> r.lastAccess).reversed());
+                    budget = liveBytes > maxBytes ? (long) (maxBytes * COMPACTION_TARGET_RATIO) : Long.MAX_VALUE;
+                    source = pack;
+                }
+                for (Record record : live) {
+                    if (ends[0] - HEADER_SIZE + record.entryLength > budget) {
+                        break;
+                    }
+                    moved.put(record, copyEntry(source, record, newPack, newIndex, ends));
+                }
+            } finally {
+                channelLock.readLock().unlock();
+            }
+
+            // Copy the entries stored meanwhile, then swap the files while nothing reads or writes them
+            channelLock.writeLock().lock();
+            try {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    Set<Record> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+                    copied.addAll(live);
+                    for (Record current : records.values()) {
+                        if (!copied.contains(current)) {
+                            moved.put(current, copyEntry(pack, current, newPack, newIndex, ends));
+                        }
+                    }
+                    newPack.force(true);
+                    newIndex.force(true);
+
+                    pack.close();
+                    index.close();
+                    try {
+                        Files.move(packTemp, directory.resolve(PACK_FILE_NAME),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        Files.move(indexTemp, directory.resolve(INDEX_FILE_NAME),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        // Reopen whatever pair is on disk; a mismatched pair is discarded
+                        reopenAfterFailure();
+                        throw e;
+                    }
+                    pack = FileChannel.open(directory.resolve(PACK_FILE_NAME), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    index = FileChannel.open(directory.resolve(INDEX_FILE_NAME), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    packEnd = ends[0];
+                    indexEnd = ends[1];
+
+                    int before = records.size();
+                    List<Record> current = new ArrayList<>(records.values());
+                    records.clear();
+                    liveBytes = 0;
+                    for (Record record : current) {
+                        Record copy = moved.get(record);
+                        if (copy != null) {
+                            copy.lastAccess = record.lastAccess;
+                            track(copy);
+                        }
+                    }
+                    logger.info("Compacted thumbnail store to {} entries ({} bytes), dropped {}.",
+                            records.size(), liveBytes, before - records.size());
+                }
+            } finally {
+                channelLock.writeLock().unlock();
+            }
+        } finally {
+            Files.deleteIfExists(packTemp);
+            Files.deleteIfExists(indexTemp);
+        }
+    }
+
+    /**
+     * Reopens the store after a failed swap of its files. If even that fails, the store is closed and
+     * gets and puts become no-ops. Must be called while holding the lock on this store.
+     */
+    private void reopenAfterFailure() {
+        try {
+            open();
+        } catch (IOException e) {
+            logger.warn("Unable to reopen thumbnail store at {}; thumbnails will not be persisted.", directory, e);
+            closed = true;
+        }
+    }
+
+    /**
+     * Copies one entry into the pack and index being built by compaction.
+     *
+     * @param source   The current pack.
+     * @param record   The record of the entry.
+     * @param newPack  The new pack.
+     * @param newIndex The new index.
+     * @param ends     The end positions of the new pack and index, advanced past the copy.
+     * @return The record of the copied entry.
+     * @throws IOException If copying fails.
+     */
+    private static Record copyEntry(FileChannel source, Record record, FileChannel newPack, FileChannel newIndex,
+                                    long[] ends) throws IOException {
+        writeFully(newPack, ByteBuffer.wrap(readEntry(source, record)), ends[0]);
+        Record copy = new Record(record.keyHash, record.fileLength, record.lastModified,
+                record.contentHash, ends[0], record.entryLength);
+        writeFully(newIndex, copy.toBuffer(), ends[1]);
+        ends[0] += record.entryLength;
+        ends[1] += RECORD_SIZE;
+        return copy;
+    }
+
+    /**
+     * Reads the pack entry referenced by a record.
+     *
+     * @param source The pack holding the entry.
+     * @param record The record.
+     * @return The entry bytes.
+     * @throws IOException If reading fails.
+     */
+    private static byte[] readEntry(FileChannel source, Record record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.entryLength);
+        readFully(source, buffer, record.packOffset);
+        return buffer.array();
+    }
+
+    /**
+     * Fills the buffer from the given position.
+     *
+     * @param channel  The source channel.
+     * @param buffer   The buffer to fill.
+     * @param position The file position.
+     * @throws IOException If reading fails or the file ends first.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Thumbnail store file is truncated.");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Creates the header of a pack or index file.
+     *
+     * @param magic      The magic of the file.
+     * @param generation The generation shared by the pack and index.
+     * @return The header, ready to be written.
+     */
+    private static ByteBuffer header(byte[] magic, long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(magic).putLong(generation).flip();
+        return header;
+    }
+
+    /**
+     * Reads the magic at the start of a pack or index file.
+     *
+     * @param buffer The file contents, positioned at the start; advanced past the magic.
+     * @param magic  The expected magic.
+     * @return true if the magic matches.
+     */
+    private static boolean readMagic(ByteBuffer buffer, byte[] magic) {
+        byte[] actual = new byte[magic.length];
+        buffer.get(actual);
+        return Arrays.equals(actual, magic);
+    }
+
+    /**
+     * Writes the whole buffer at the given position.
+     *
+     * @param channel  The target channel.
+     * @param buffer   The data to write.
+     * @param position The file position.
+     * @throws IOException If writing fails.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of a path.
+     *
+     * @param path The canonical path.
+     * @return The hash.
+     */
+    private static long hashPath(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a checksum of the whole file content.
+     *
+     * @param file The file.
+     * @return The CRC32C checksum.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long contentHash(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * One index record locating a pack entry and describing the file it was generated from.
+     */
+    private static final class Record {
+        private final long keyHash;
+        private final long fileLength;
+        private final long lastModified;
+        private final long contentHash;
+        private final long packOffset;
+        private final int entryLength;
+        private long lastAccess;
+
+        Record(long keyHash, long fileLength, long lastModified, long contentHash, long packOffset, int entryLength) {
+            this.keyHash = keyHash;
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.packOffset = packOffset;
+            this.entryLength = entryLength;
+        }
+
+        ByteBuffer toBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            buffer.putLong(keyHash).putLong(fileLength).putLong(lastModified).putLong(contentHash)
+                    .putLong(packOffset).putInt(entryLength).flip();
+            return buffer;
+        }
+    }
+}
@@ -1,28 +1,42 @@
 package controller;
 
+import engine.BatchExecutor;
+import engine.BatchHandle;
+import engine.BatchListener;
+import engine.BatchResult;
+import engine.BatchTask;
+import engine.BulkExporter;
+import engine.ImagePipeline;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.image.*;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.FlowPane;
-import javafx.scene.layout.StackPane;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import model.ImageModel;
 import model.ImageProperties;
+import model.ImageRegistry;
+import model.SimilarityIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import util.CustomFilterDialog;
+import util.FilterChain;
 import util.ImageConverter;
 import util.ImageFilter;
+import util.StreamingImageProcessor;
+import view.ThumbnailGrid;
+import view.ThumbnailLoader;
+import view.UiUpdateBatcher;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * MainController handles user interactions in the Image Processing Application.
@@ -32,8 +46,13 @@ public class MainController {
 
     private static final Logger logger = LoggerFactory.getLogger(MainController.class);
 
+    // Concurrent reads, and concurrent writes, of a pipeline batch; disks need several requests in flight
+    private static final int PIPELINE_IO_THREADS = 8;
+    // Files buffered between the stages of a pipeline batch, enough to keep every processor busy
+    private static final int PIPELINE_QUEUE_CAPACITY = 2 * Runtime.getRuntime().availableProcessors();
+
     @FXML
-    private FlowPane thumbnailsPane;
+    private ThumbnailGrid thumbnailGrid;
 
     @FXML
     private TextArea propertiesArea;
@@ -59,14 +78,66 @@ public class MainController {
     @FXML
     private CheckBox blurCheckBox;
 
+    @FXML
+    private Spinner<Integer> blurRadiusSpinner;
+
+    @FXML
+    private CheckBox gaussianBlurCheckBox;
+
+    @FXML
+    private CheckBox linkExportCheckBox;
+
+    @FXML
+    private Label statusLabel;
+
+    @FXML
+    private ProgressBar batchProgressBar;
+
+    @FXML
+    private Button cancelBatchButton;
+
     // Tracks the selected images using a Set to prevent duplicates
     private final Set<ImageModel> selectedImages = new HashSet<>();
 
+    // Maps uploaded files to one shared model per distinct content
+    private final ImageRegistry imageRegistry = new ImageRegistry();
+
+    // Indexes the perceptual hashes of uploaded images for near-duplicate queries
+    private final SimilarityIndex similarityIndex = new SimilarityIndex();
+
+    // Loads the thumbnails shown in the grid, most urgent first
+    private final ThumbnailLoader thumbnailLoader = new ThumbnailLoader();
+
+    // Applies updates from the workers to the UI at most once per pulse
+    private final UiUpdateBatcher uiUpdates = new UiUpdateBatcher();
+    private final UiUpdateBatcher.Batch<ImageModel> uploadedImages = uiUpdates.batch(this::addThumbnails);
+    private final UiUpdateBatcher.Batch<ImageModel> duplicateImages = uiUpdates.batch(this::markDuplicates);
+    private final UiUpdateBatcher.Latest<Runnable> batchProgress = uiUpdates.latest(Runnable::run);
+
+    // Runs uploads, conversions and filters off the JavaFX Application Thread
+    private final BatchExecutor batchExecutor = new BatchExecutor();
+
+    // Runs downloads, which are bound by disk bandwidth rather than by the number of cores
+    private final BatchExecutor exportExecutor = new BatchExecutor(BulkExporter.DEFAULT_PARALLELISM);
+
+    // The batch currently running, or null when idle (only accessed on the FX thread)
+    private BatchHandle activeBatch;
+
+    // The pipeline running the current conversion or filter batch, or null (only accessed on the FX thread)
+    private ImagePipeline activePipeline;
+
     /**
      * Initializes the controller class. This method is automatically called after the FXML file has been loaded.
      */
     @FXML
     public void initialize() {
+        thumbnailLoader.setOnLoaded(thumbnailGrid::refresh);
+        thumbnailGrid.setThumbnailProvider(thumbnailLoader::getCached);
+        thumbnailGrid.setViewportListener(thumbnailLoader::onViewportChanged);
+        thumbnailGrid.setSelectionPredicate(selectedImages::contains);
+        thumbnailGrid.setBadgeProvider(this::duplicateBadge);
+        thumbnailGrid.setTooltipProvider(this::thumbnailTooltip);
+        thumbnailGrid.setOnImageClicked(this::toggleImageSelection);
         logger.info("MainController initialized.");
     }
 
@@ -86,69 +157,194 @@ public class MainController {
         fileChooser.getExtensionFilters().add(imageFilter);
 
         // Allow multiple file selection
-        List<File> selectedFiles = fileChooser.showOpenMultipleDialog(thumbnailsPane.getScene().getWindow());
-
-        if (selectedFiles != null && !selectedFiles.isEmpty()) {
-            for (File file : selectedFiles) {
-                try {
-                    ImageModel imageModel = new ImageModel(file);
-                    addThumbnail(imageModel);
-                    logger.info("Image uploaded: {}", file.getName());
-                } catch (Exception e) {
-                    logger.error("Failed to load image: {}", file.getName(), e);
-                    showAlert(Alert.AlertType.ERROR, "Upload Error", "Unable to load image: " + file.getName());
-                }
-            }
-        } else {
+        List<File> selectedFiles = fileChooser.showOpenMultipleDialog(thumbnailGrid.getScene().getWindow());
+
+        if (selectedFiles == null || selectedFiles.isEmpty()) {
             logger.info("No images selected for upload.");
+            return;
         }
+
+        // Images are decoded, hashed and thumbnailed on the workers and join the grid at the next pulse
+        AtomicInteger duplicates = new AtomicInteger();
+        startBatch("Uploading", selectedFiles, File::getName,
+                file -> {
+                    ImageRegistry.Registration registration = imageRegistry.register(file);
+                    ImageModel imageModel = registration.getModel();
+                    if (registration.isDuplicate()) {
+                        duplicates.incrementAndGet();
+                        logger.info("Duplicate image uploaded: {}", file.getName());
+                        duplicateImages.add(imageModel);
+                    } else {
+                        similarityIndex.add(imageModel);
+                        logger.info("Image uploaded: {}", file.getName());
+                        uploadedImages.add(imageModel);
+                    }
+                },
+                result -> {
+                    if (result.getFailureCount() > 0 || result.isCancelled()) {
+                        showBatchSummary(result, "Upload", "Images Uploaded", "Selected images have been uploaded.");
+                    }
+                    if (duplicates.get() > 0) {
+                        statusLabel.setText(duplicates.get() + " duplicate image(s) matched already uploaded content");
+                    }
+                });
     }
 
     /**
-     * Adds a thumbnail to the thumbnailsPane and maps it to its ImageModel.
+     * Adds the thumbnails of images to the grid in a single change, so that the grid is laid out
+     * once however many images arrived since the last pulse.
      *
-     * @param imageModel The ImageModel of the image.
+     * @param imageModels The ImageModels of the images.
      */
-    private void addThumbnail(ImageModel imageModel) {
-        ImageView imageView = new ImageView(imageModel.getThumbnail());
-        imageView.setFitWidth(100);
-        imageView.setFitHeight(100);
-        imageView.setPreserveRatio(true);
-        imageView.setSmooth(true);
-        imageView.setCache(true);
-
-        // Wrap the ImageView in a StackPane to apply styles and effects
-        StackPane imageContainer = new StackPane(imageView);
-        imageContainer.setStyle("-fx-padding: 5;");
+    private void addThumbnails(List<ImageModel> imageModels) {
+        thumbnailGrid.getItems().addAll(imageModels);
+    }
 
-        // Set tooltip to display image name
-        Tooltip tooltip = new Tooltip(imageModel.getFile().getName());
-        Tooltip.install(imageView, tooltip);
+    /**
+     * Refreshes the tiles of images whose content was uploaded again, so that their badges and
+     * tooltips show every file sharing it.
+     *
+     * @param imageModels The shared ImageModels.
+     */
+    private void markDuplicates(List<ImageModel> imageModels) {
+        for (ImageModel imageModel : new LinkedHashSet<>(imageModels)) {
+            thumbnailGrid.refresh(imageModel);
+        }
+    }
 
-        // Click event to select/deselect image
-        imageContainer.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> toggleImageSelection(imageModel, imageContainer));
+    /**
+     * Produces the badge of an image whose content was uploaded from more than one path.
+     *
+     * @param imageModel The ImageModel of the image.
+     * @return The number of files sharing the content, or null if there is only one.
+     */
+    private String duplicateBadge(ImageModel imageModel) {
+        int count = imageRegistry.getPaths(imageModel).size();
+        return count > 1 ? count + "\u00d7" : null;
+    }
 
-        thumbnailsPane.getChildren().add(imageContainer);
+    /**
+     * Produces the tooltip of an image: its name, or every path holding its content if there are several.
+     *
+     * @param imageModel The ImageModel of the image.
+     * @return The tooltip text.
+     */
+    private String thumbnailTooltip(ImageModel imageModel) {
+        List<String> paths = imageRegistry.getPaths(imageModel);
+        return paths.size() > 1
+                ? "Duplicate content:\n" + String.join("\n", paths)
+                : imageModel.getFile().getName();
     }
 
     /**
      * Toggles the selection state of an image and updates the UI accordingly.
      *
-     * @param imageModel     The ImageModel of the image.
-     * @param imageContainer The container holding the image thumbnail.
+     * @param imageModel The ImageModel of the image.
      */
-    private void toggleImageSelection(ImageModel imageModel, StackPane imageContainer) {
-        if (selectedImages.contains(imageModel)) {
-            selectedImages.remove(imageModel);
-            imageContainer.setStyle("-fx-padding: 5;"); // Reset to default style
-            logger.info("Image deselected: {}", imageModel.getFile().getName());
-        } else {
+    private void toggleImageSelection(ImageModel imageModel) {
+        setImageSelected(imageModel, !selectedImages.contains(imageModel));
+        updatePropertiesArea();
+    }
+
+    /**
+     * Selects or deselects an image and updates the style of its thumbnail.
+     *
+     * @param imageModel The ImageModel of the image.
+     * @param selected   Whether the image should be selected.
+     */
+    private void setImageSelected(ImageModel imageModel, boolean selected) {
+        if (selected) {
             selectedImages.add(imageModel);
-            imageContainer.setStyle("-fx-padding: 5; -fx-border-color: blue; -fx-border-width: 2;");
             logger.info("Image selected: {}", imageModel.getFile().getName());
+        } else {
+            selectedImages.remove(imageModel);
+            logger.info("Image deselected: {}", imageModel.getFile().getName());
         }
+        thumbnailGrid.refresh(imageModel);
+    }
 
-        updatePropertiesArea();
+    /**
+     * Handles the action of selecting every image that looks like the selected one.
+     *
+     * @param event The action event triggered by the user.
+     */
+    @FXML
+    private void handleFindSimilar(ActionEvent event) {
+        if (selectedImages.size() != 1) {
+            showAlert(Alert.AlertType.WARNING, "Select One Image", "Please select exactly one image to find similar images.");
+            logger.warn("Similarity search attempted with {} images selected.", selectedImages.size());
+            return;
+        }
+
+        ImageModel query = selectedImages.iterator().next();
+        List<SimilarityIndex.Match> matches =
+                similarityIndex.findSimilar(query, SimilarityIndex.DEFAULT_NEAR_DUPLICATE_DISTANCE);
+        if (matches.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "No Similar Images", "No image looks like " + query.getFile().getName() + ".");
+            logger.info("No similar images found for {}.", query.getFile().getName());
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder("Similar to ").append(query.getFile().getName()).append(":\n");
+        for (SimilarityIndex.Match match : matches) {
+            setImageSelected(match.getModel(), true);
+            sb.append("- ").append(match.getModel().getFile().getName())
+                    .append(" (distance ").append(match.getDistance()).append(")\n");
+        }
+        propertiesArea.setText(sb.toString());
+        logger.info("Found {} images similar to {}.", matches.size(), query.getFile().getName());
+    }
+
+    /**
+     * Handles the action of listing groups of near-duplicate images among all uploaded images.
+     *
+     * @param event The action event triggered by the user.
+     */
+    @FXML
+    private void handleGroupNearDuplicates(ActionEvent event) {
+        // One index query per image: too slow for the FX thread on large libraries, so it runs as a batch
+        SimilarityIndex.Grouping grouping =
+                similarityIndex.startGrouping(SimilarityIndex.DEFAULT_NEAR_DUPLICATE_DISTANCE);
+        List<Integer> entries = new ArrayList<>(grouping.size());
+        for (int entry = 0; entry < grouping.size(); entry++) {
+            entries.add(entry);
+        }
+
+        startBatch("Grouping near-duplicates", entries,
+                entry -> grouping.getImage(entry).getFile().getName(),
+                grouping::link,
+                result -> {
+                    if (result.isCancelled() || result.getFailureCount() > 0) {
+                        showBatchSummary(result, "Near-Duplicate Grouping", "Grouping Complete",
+                                "Near-duplicate images have been grouped.");
+                        return;
+                    }
+                    displayNearDuplicateGroups(grouping.getGroups(), grouping.size());
+                });
+    }
+
+    /**
+     * Lists groups of near-duplicate images in the propertiesArea.
+     *
+     * @param groups The groups, largest first.
+     * @param total  The number of images that were grouped.
+     */
+    private void displayNearDuplicateGroups(List<List<ImageModel>> groups, int total) {
+        if (groups.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "No Near-Duplicates", "No near-duplicate images were found.");
+            logger.info("No near-duplicate groups found among {} images.", total);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < groups.size(); i++) {
+            sb.append("Group ").append(i + 1).append(":\n");
+            for (ImageModel imageModel : groups.get(i)) {
+                sb.append("- ").append(imageModel.getFile().getName()).append("\n");
+            }
+        }
+        propertiesArea.setText(sb.toString());
+        logger.info("Found {} near-duplicate groups among {} images.", groups.size(), total);
     }
 
     /**
@@ -172,7 +368,7 @@ public class MainController {
      */
     private void displayImageProperties(ImageProperties properties) {
         StringBuilder sb = new StringBuilder();
-        sb.append("Format: ").append(properties.getFormat()).append("\n");
+        sb.append("Format: ").append(properties.getDetectedFormat()).append("\n");
         sb.append("Image Size: ").append(properties.getWidth()).append(" x ").append(properties.getHeight()).append(" px\n");
         sb.append("File Size: ").append(properties.getFileSizeKB()).append(" KB\n");
         sb.append("Camera Model: ").append(properties.getCameraModel()).append("\n");
@@ -206,46 +402,30 @@ public class MainController {
             return;
         }
 
-        String destinationPath = destinationDirectory.getAbsolutePath();
-        ImageConverter converter = new ImageConverter();
-
-        int successCount = 0;
-        int failureCount = 0;
-        List<String> failedImages = new ArrayList<>();
-
+        // Images are converted in parallel, so every output is assigned up front: a.png and a.jpg,
+        // or two a.png from different folders, must not be written to the same file
+        Map<ImageModel, Map<String, File>> outputs = new HashMap<>();
+        Set<String> usedNames = new HashSet<>();
         for (ImageModel imageModel : selectedImages) {
+            String baseName = getBaseName(imageModel.getFile().getName()) + "_converted";
+            Map<String, File> outputFiles = new LinkedHashMap<>();
             for (String format : targetFormats) {
-                try {
-                    File inputFile = imageModel.getFile();
-                    String baseName = getBaseName(inputFile.getName());
-                    File outputFile = new File(destinationPath, baseName + "_converted." + format.toLowerCase());
-                    converter.process(inputFile, outputFile, format.toLowerCase());
-                    logger.info("Image converted: {} to {}", inputFile.getName(), format);
-                    successCount++;
-                } catch (IOException e) {
-                    logger.error("Failed to convert image: {}", imageModel.getFile().getName(), e);
-                    failedImages.add(imageModel.getFile().getName() + " to " + format.toUpperCase());
-                    failureCount++;
-                }
+                String extension = format.toLowerCase();
+                outputFiles.put(extension, uniqueFile(destinationDirectory, baseName, extension, usedNames));
             }
+            outputs.put(imageModel, outputFiles);
         }
+        ImageConverter converter = new ImageConverter();
 
-        // Display a summary message
-        StringBuilder message = new StringBuilder();
-        message.append("Conversion completed.\n");
-        message.append("Successful conversions: ").append(successCount).append("\n");
-        if (failureCount > 0) {
-            message.append("Failed conversions: ").append(failureCount).append("\n");
-            message.append("Failed to convert:\n");
-            for (String failedImage : failedImages) {
-                message.append("- ").append(failedImage).append("\n");
-            }
-            showAlert(Alert.AlertType.WARNING, "Conversion Completed with Errors", message.toString());
-            logger.warn("Image conversion completed with some errors.");
-        } else {
-            showAlert(Alert.AlertType.INFORMATION, "Conversion Complete", "Selected images have been successfully converted.");
-            logger.info("Image conversion completed successfully.");
-        }
+        // Each image is decoded once and encoded to every format; large images are streamed per format
+        startPipelineBatch("Converting", null, outputs,
+                imageModel -> {
+                    File inputFile = imageModel.getFile();
+                    converter.convert(inputFile, outputs.get(imageModel));
+                    logger.info("Image converted: {} to {}", inputFile.getName(), targetFormats);
+                },
+                result -> showBatchSummary(result, "Conversion", "Conversion Complete",
+                        "Selected images have been successfully converted."));
     }
 
     /**
@@ -282,49 +462,17 @@ public class MainController {
         result.ifPresent(kernel -> {
             DirectoryChooser directoryChooser = new DirectoryChooser();
             directoryChooser.setTitle("Select Save Directory for Custom Filtered Images");
-            File selectedDirectory = directoryChooser.showDialog(thumbnailsPane.getScene().getWindow());
+            File selectedDirectory = directoryChooser.showDialog(thumbnailGrid.getScene().getWindow());
 
             if (selectedDirectory != null) {
-                String destinationPath = selectedDirectory.getAbsolutePath();
-                int successCount = 0;
-                int failureCount = 0;
-                List<String> failedImages = new ArrayList<>();
-
-                for (ImageModel imageModel : selectedImages) {
-                    try {
-                        BufferedImage originalImage = imageModel.getBufferedImage();
-                        BufferedImage filteredImage = ImageFilter.applyCustomFilter(originalImage, kernel);
-
-                        String format = imageModel.getProperties().getFormat().toLowerCase();
-                        String baseName = getBaseName(imageModel.getFile().getName());
-                        File outputFile = new File(destinationPath, baseName + "_custom_filtered." + format);
-
-                        ImageIO.write(filteredImage, format, outputFile);
-                        logger.info("Custom filtered image saved: {}", outputFile.getName());
-                        successCount++;
-                    } catch (Exception e) {
-                        logger.error("Failed to apply custom filter to image: {}", imageModel.getFile().getName(), e);
-                        failedImages.add(imageModel.getFile().getName());
-                        failureCount++;
-                    }
-                }
-
-                // Display a summary message
-                StringBuilder message = new StringBuilder();
-                message.append("Custom filter application completed.\n");
-                message.append("Successfully filtered images: ").append(successCount).append("\n");
-                if (failureCount > 0) {
-                    message.append("Failed to filter images: ").append(failureCount).append("\n");
-                    message.append("Failed to apply filter to:\n");
-                    for (String failedImage : failedImages) {
-                        message.append("- ").append(failedImage).append("\n");
-                    }
-                    showAlert(Alert.AlertType.WARNING, "Custom Filter Completed with Errors", message.toString());
-                    logger.warn("Custom filter application completed with some errors.");
-                } else {
-                    showAlert(Alert.AlertType.INFORMATION, "Custom Filter Applied", "Selected images have been successfully filtered with the custom kernel.");
-                    logger.info("Custom filter application completed successfully.");
-                }
+                Map<ImageModel, Map<String, File>> outputs =
+                        assignOutputFilesByFormat(selectedDirectory, "_custom_filtered");
+
+                // The custom kernel cannot be streamed, so every image goes through the pipeline
+                startPipelineBatch("Applying custom filter",
+                        image -> ImageFilter.applyCustomFilter(image, kernel), outputs, null,
+                        batchResult -> showBatchSummary(batchResult, "Custom Filter", "Custom Filter Applied",
+                                "Selected images have been successfully filtered with the custom kernel."));
             } else {
                 logger.info("Custom filter application canceled by user.");
             }
@@ -345,6 +493,61 @@ public class MainController {
         return fileName;
     }
 
+    /**
+     * Assigns each selected image an output file named after it, with the suffix appended to its base
+     * name and its own format as the extension. Batches write their outputs in parallel, and images
+     * from different folders may share a name, so the names are made unique up front rather than
+     * letting two workers write the same file.
+     *
+     * @param directory The directory the files are written to.
+     * @param suffix    The text appended to each base name, such as "_filtered".
+     * @return The output file of each selected image.
+     */
+    private Map<ImageModel, File> assignOutputFiles(File directory, String suffix) {
+        Map<ImageModel, File> outputFiles = new HashMap<>();
+        Set<String> usedNames = new HashSet<>();
+        for (ImageModel imageModel : selectedImages) {
+            String baseName = getBaseName(imageModel.getFile().getName()) + suffix;
+            String format = imageModel.getProperties().getFormat().toLowerCase();
+            outputFiles.put(imageModel, uniqueFile(directory, baseName, format, usedNames));
+        }
+        return outputFiles;
+    }
+
+    /**
+     * Assigns each selected image an output file as assignOutputFiles does, keyed by its format as
+     * startPipelineBatch expects.
+     *
+     * @param directory The directory the files are written to.
+     * @param suffix    The text appended to each base name, such as "_filtered".
+     * @return The output file of each selected image, by format.
+     */
+    private Map<ImageModel, Map<String, File>> assignOutputFilesByFormat(File directory, String suffix) {
+        Map<ImageModel, Map<String, File>> outputs = new HashMap<>();
+        assignOutputFiles(directory, suffix).forEach((imageModel, file) ->
+                outputs.put(imageModel, Map.of(imageModel.getProperties().getFormat().toLowerCase(), file)));
+        return outputs;
+    }
+
+    /**
+     * Creates a file name in the directory that no other file of the same batch uses, appending
+     * "_2", "_3" and so on to the base name when needed. Names are compared ignoring case, since
+     * they may differ only in case on a case-insensitive file system.
+     *
+     * @param directory The directory the file is created in.
+     * @param baseName  The file name without extension.
+     * @param extension The file extension.
+     * @param usedNames The names already assigned in this batch. The returned name is added to it.
+     * @return The file.
+     */
+    private File uniqueFile(File directory, String baseName, String extension, Set<String> usedNames) {
+        String name = baseName + "." + extension;
+        for (int suffix = 2; !usedNames.add(name.toLowerCase()); suffix++) {
+            name = baseName + "_" + suffix + "." + extension;
+        }
+        return new File(directory, name);
+    }
+
     /**
      * Handles the action of downloading the selected images.
      *
@@ -364,43 +567,32 @@ public class MainController {
             return;
         }
 
-        String destinationPath = destinationDirectory.getAbsolutePath();
-        int successCount = 0;
-        int failureCount = 0;
-        List<String> failedDownloads = new ArrayList<>();
+        Map<ImageModel, File> outputFiles = assignOutputFiles(destinationDirectory, "_downloaded");
+        BulkExporter exporter = new BulkExporter(linkExportCheckBox.isSelected()
+                ? BulkExporter.Mode.HARD_LINK : BulkExporter.Mode.COPY);
 
-        for (ImageModel imageModel : selectedImages) {
-            try {
-                File inputFile = imageModel.getFile();
-                String baseName = getBaseName(inputFile.getName());
-                String format = imageModel.getProperties().getFormat().toLowerCase();
-                File outputFile = new File(destinationPath, baseName + "_downloaded." + format);
-                Files.copy(inputFile.toPath(), outputFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                logger.info("Image downloaded: {}", inputFile.getName());
-                successCount++;
-            } catch (IOException e) {
-                logger.error("Failed to download image: {}", imageModel.getFile().getName(), e);
-                failedDownloads.add(imageModel.getFile().getName());
-                failureCount++;
-            }
-        }
+        startBatch(exportExecutor, "Downloading", selectedImages,
+                imageModel -> imageModel.getFile().getName(),
+                imageModel -> {
+                    File inputFile = imageModel.getFile();
+                    File outputFile = outputFiles.get(imageModel);
+                    BulkExporter.Outcome outcome = exporter.export(inputFile.toPath(), outputFile.toPath());
+                    logger.info("Image downloaded: {} ({})", inputFile.getName(), outcome);
+                },
+                result -> showBatchSummary(result, "Download", "Download Complete",
+                        "Selected images have been successfully downloaded.\n" + describeExport(exporter)));
+    }
 
-        // Display a summary message
-        StringBuilder message = new StringBuilder();
-        message.append("Download completed.\n");
-        message.append("Successful downloads: ").append(successCount).append("\n");
-        if (failureCount > 0) {
-            message.append("Failed downloads: ").append(failureCount).append("\n");
-            message.append("Failed to download:\n");
-            for (String failedImage : failedDownloads) {
-                message.append("- ").append(failedImage).append("\n");
-            }
-            showAlert(Alert.AlertType.WARNING, "Download Completed with Errors", message.toString());
-            logger.warn("Image download completed with some errors.");
-        } else {
-            showAlert(Alert.AlertType.INFORMATION, "Download Complete", "Selected images have been successfully downloaded.");
-            logger.info("Image download completed successfully.");
-        }
+    /**
+     * Describes how much data a download wrote and how much it avoided writing.
+     *
+     * @param exporter The exporter that performed the download.
+     * @return A human-readable summary of the export.
+     */
+    private String describeExport(BulkExporter exporter) {
+        return String.format("Copied: %d (%d KB)%nLinked: %d%nAlready up to date: %d%nBytes not copied: %d KB",
+                exporter.getCopiedCount(), exporter.getCopiedBytes() / 1024,
+                exporter.getLinkedCount(), exporter.getSkippedCount(), exporter.getAvoidedBytes() / 1024);
     }
 
     /**
@@ -432,58 +624,272 @@ public class MainController {
             return;
         }
 
-        String destinationPath = destinationDirectory.getAbsolutePath();
-        int successCount = 0;
-        int failureCount = 0;
-        List<String> failedFilters = new ArrayList<>();
+        Map<ImageModel, Map<String, File>> outputs = assignOutputFilesByFormat(destinationDirectory, "_filtered");
 
-        for (ImageModel imageModel : selectedImages) {
-            try {
-                BufferedImage processedImage = imageModel.getBufferedImage();
-
-                // Apply selected filters
-                if (grayscale) {
-                    processedImage = ImageFilter.applyGrayscale(processedImage);
-                    logger.info("Grayscale filter applied to: {}", imageModel.getFile().getName());
-                }
-                if (sepia) {
-                    processedImage = ImageFilter.applySepia(processedImage);
-                    logger.info("Sepia filter applied to: {}", imageModel.getFile().getName());
-                }
-                if (blur) {
-                    processedImage = ImageFilter.applyBlur(processedImage);
-                    logger.info("Blur filter applied to: {}", imageModel.getFile().getName());
-                }
-
-                String format = imageModel.getProperties().getFormat().toLowerCase();
-                String baseName = getBaseName(imageModel.getFile().getName());
-                File outputFile = new File(destinationPath, baseName + "_filtered." + format);
-                ImageIO.write(processedImage, format, outputFile);
-                logger.info("Filtered image saved: {}", outputFile.getName());
-                successCount++;
-            } catch (Exception e) {
-                logger.error("Failed to apply filters to image: {}", imageModel.getFile().getName(), e);
-                failedFilters.add(imageModel.getFile().getName());
-                failureCount++;
+        // Compile the selected filters into one chain so that per-pixel filters share a single pass
+        FilterChain chain = new FilterChain();
+        if (grayscale) {
+            chain.grayscale();
+        }
+        if (sepia) {
+            chain.sepia();
+        }
+        if (blur) {
+            int radius = blurRadiusSpinner.getValue();
+            if (gaussianBlurCheckBox.isSelected()) {
+                chain.gaussianBlur(radius);
+            } else if (radius == 1) {
+                chain.blur();
+            } else {
+                chain.boxBlur(radius);
+            }
+        }
+
+        // Images too large to decode whole bypass the pipeline and are filtered strip by strip
+        startPipelineBatch("Applying filters", chain::apply, outputs,
+                imageModel -> {
+                    Map.Entry<String, File> output = outputs.get(imageModel).entrySet().iterator().next();
+                    new StreamingImageProcessor(chain).process(imageModel.getFile(), output.getValue(), output.getKey());
+                    logger.info("Filtered image saved: {}", output.getValue().getName());
+                },
+                result -> showBatchSummary(result, "Filter Application", "Filters Applied",
+                        "Selected images have been successfully filtered."));
+    }
+
+    /**
+     * Handles the action of cancelling the batch operation that is currently running.
+     *
+     * @param event The action event triggered by the user.
+     */
+    @FXML
+    private void handleCancelBatch(ActionEvent event) {
+        if (activeBatch != null && !activeBatch.isCancelled()) {
+            activeBatch.cancel();
+            statusLabel.setText("Cancelling...");
+            cancelBatchButton.setDisable(true);
+            logger.info("Batch cancellation requested by user.");
+        }
+    }
+
+    /**
+     * Starts a batch operation on the worker pool and reflects its progress in the status bar.
+     * Only one batch runs at a time so that the progress bar and cancel button stay unambiguous.
+     *
+     * @param operation  A short description of the operation shown in the status bar.
+     * @param items      The items to process.
+     * @param namer      Produces the display name of an item.
+     * @param task       The work to perform for each item, executed on a worker thread.
+     * @param onComplete Invoked on the FX thread with the batch summary.
+     * @param <T>        The type of the items.
+     */
+    private <T> void startBatch(String operation, Collection<T> items, Function<T, String> namer,
+                                BatchTask<T> task, Consumer<BatchResult> onComplete) {
+        startBatch(batchExecutor, operation, items, namer, task, onComplete);
+    }
+
+    /**
+     * Starts a batch operation on the given executor and reflects its progress in the status bar.
+     *
+     * @param executor   The executor to run the batch on.
+     * @param operation  A short description of the operation shown in the status bar.
+     * @param items      The items to process.
+     * @param namer      Produces the display name of an item.
+     * @param task       The work to perform for each item, executed on a worker thread.
+     * @param onComplete Invoked on the FX thread with the batch summary.
+     * @param <T>        The type of the items.
+     */
+    private <T> void startBatch(BatchExecutor executor, String operation, Collection<T> items, Function<T, String> namer,
+                                BatchTask<T> task, Consumer<BatchResult> onComplete) {
+        if (isBatchRunning(operation)) {
+            return;
+        }
+        activeBatch = executor.submit(items, namer, task, batchListener(operation, onComplete));
+    }
+
+    /**
+     * Starts a batch that writes files produced from images through an ImagePipeline, so that reading
+     * and writing files overlap with decoding, processing and encoding images. Images too large to
+     * buffer whole (see StreamingImageProcessor.shouldStream) bypass the pipeline: once it finishes,
+     * they are processed by the direct task, one per worker, and the summary covers both.
+     *
+     * @param operation  A short description of the operation shown in the status bar.
+     * @param processor  The operation applied to each decoded image, or null to convert only.
+     * @param outputs    The output files of each image, by format.
+     * @param direct     Processes one large image on a worker thread, typically by streaming it, or
+     *                   null to send every image through the pipeline.
+     * @param onComplete Invoked on the FX thread with the batch summary.
+     */
+    private void startPipelineBatch(String operation, UnaryOperator<BufferedImage> processor,
+                                    Map<ImageModel, Map<String, File>> outputs, BatchTask<ImageModel> direct,
+                                    Consumer<BatchResult> onComplete) {
+        if (isBatchRunning(operation)) {
+            return;
+        }
+
+        List<ImagePipeline.Job> jobs = new ArrayList<>();
+        List<ImageModel> large = new ArrayList<>();
+        for (Map.Entry<ImageModel, Map<String, File>> entry : outputs.entrySet()) {
+            ImageModel imageModel = entry.getKey();
+            if (direct != null && isLarge(imageModel, entry.getValue().keySet())) {
+                large.add(imageModel);
+                continue;
+            }
+            Map<String, Path> targets = new LinkedHashMap<>();
+            entry.getValue().forEach((format, file) -> targets.put(format, file.toPath()));
+            jobs.add(new ImagePipeline.Job(imageModel.getFile().toPath(), targets));
+        }
+
+        ImagePipeline pipeline = new ImagePipeline(processor, new ImageConverter()::encode,
+                PIPELINE_IO_THREADS, PIPELINE_QUEUE_CAPACITY);
+        activePipeline = pipeline;
+        activeBatch = pipeline.submit(jobs, this::logPipelineOutput, batchListener(operation, pipelined -> {
+            pipeline.close();
+            activePipeline = null;
+            if (large.isEmpty()) {
+                onComplete.accept(pipelined);
+            } else if (pipelined.isCancelled()) {
+                onComplete.accept(combine(pipelined, new BatchResult(0, 0, large.size(), List.of(), true, 0)));
+            } else {
+                activeBatch = batchExecutor.submit(large, imageModel -> imageModel.getFile().getName(), direct,
+                        batchListener(operation, streamed -> onComplete.accept(combine(pipelined, streamed))));
+            }
+        }));
+    }
+
+    /**
+     * Determines whether an image is too large to be buffered whole for any of its target formats.
+     *
+     * @param imageModel The image.
+     * @param formats    The target formats.
+     * @return true if the image should be streamed to at least one format.
+     */
+    private boolean isLarge(ImageModel imageModel, Collection<String> formats) {
+        ImageProperties properties = imageModel.getProperties();
+        for (String format : formats) {
+            if (StreamingImageProcessor.shouldStream(properties.getWidth(), properties.getHeight(), format)) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Logs an output written by a pipeline batch. Failures are logged by the pipeline itself.
+     *
+     * @param input        The source file.
+     * @param format       The target format.
+     * @param output       The destination file.
+     * @param error        The failure, or null if the output was written.
+     * @param elapsedNanos The time since the source file started being read.
+     */
+    private void logPipelineOutput(Path input, String format, Path output, Exception error, long elapsedNanos) {
+        if (error == null) {
+            logger.info("Image saved: {} ({} ms)", output.getFileName(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+    }
+
+    /**
+     * Merges the results of two consecutive batches forming one operation.
+     *
+     * @param first  The result of the first batch.
+     * @param second The result of the second batch.
+     * @return The combined result.
+     */
+    private static BatchResult combine(BatchResult first, BatchResult second) {
+        List<String> failedItems = new ArrayList<>(first.getFailedItems());
+        failedItems.addAll(second.getFailedItems());
+        return new BatchResult(first.getSuccessCount() + second.getSuccessCount(),
+                first.getFailureCount() + second.getFailureCount(),
+                first.getSkippedCount() + second.getSkippedCount(), failedItems,
+                first.isCancelled() || second.isCancelled(), first.getElapsedMillis() + second.getElapsedMillis());
+    }
+
+    /**
+     * Determines whether a batch is still running, warning the user if so. Only one batch runs at a
+     * time so that the progress bar and cancel button stay unambiguous.
+     *
+     * @param operation A short description of the operation the user attempted.
+     * @return true if the operation must not start.
+     */
+    private boolean isBatchRunning(String operation) {
+        if (activeBatch != null && !activeBatch.isDone()) {
+            showAlert(Alert.AlertType.WARNING, "Operation in Progress", "Please wait for the current operation to finish or cancel it.");
+            logger.warn("{} attempted while another batch is running.", operation);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Prepares the status bar for a starting batch and creates the listener reflecting its progress
+     * there. Must be called on the FX thread.
+     *
+     * @param operation  A short description of the operation shown in the status bar.
+     * @param onComplete Invoked on the FX thread with the batch summary.
+     * @return The listener to submit the batch with.
+     */
+    private BatchListener batchListener(String operation, Consumer<BatchResult> onComplete) {
+        statusLabel.setText(operation + "...");
+        batchProgressBar.setProgress(0);
+        cancelBatchButton.setDisable(false);
+
+        return new BatchListener() {
+            @Override
+            public void onProgress(int completed, int total, String itemName) {
+                // Only the latest tick of each pulse is shown
+                batchProgress.set(() -> {
+                    batchProgressBar.setProgress((double) completed / total);
+                    statusLabel.setText(operation + ": " + completed + " / " + total);
+                });
+            }
+
+            @Override
+            public void onComplete(BatchResult result) {
+                Platform.runLater(() -> {
+                    // Apply the items and progress still pending before reporting the outcome
+                    uiUpdates.flush();
+                    cancelBatchButton.setDisable(true);
+                    batchProgressBar.setProgress(0);
+                    statusLabel.setText("Ready");
+                    onComplete.accept(result);
+                });
+            }
+        };
+    }
+
+    /**
+     * Displays a summary of a finished batch operation.
+     *
+     * @param result         The batch result.
+     * @param operation      The name of the operation (e.g., "Conversion").
+     * @param successTitle   The alert title used when every item succeeded.
+     * @param successMessage The alert message used when every item succeeded.
+     */
+    private void showBatchSummary(BatchResult result, String operation, String successTitle, String successMessage) {
+        if (result.getFailureCount() == 0 && !result.isCancelled()) {
+            showAlert(Alert.AlertType.INFORMATION, successTitle, successMessage);
+            logger.info("{} completed successfully in {} ms.", operation, result.getElapsedMillis());
+            return;
+        }
 
-        // Display a summary message
         StringBuilder message = new StringBuilder();
-        message.append("Filter application completed.\n");
-        message.append("Successfully filtered images: ").append(successCount).append("\n");
-        if (failureCount > 0) {
-            message.append("Failed to filter images: ").append(failureCount).append("\n");
-            message.append("Failed to apply filters to:\n");
-            for (String failedImage : failedFilters) {
-                message.append("- ").append(failedImage).append("\n");
+        message.append(operation).append(result.isCancelled() ? " cancelled.\n" : " completed.\n");
+        message.append("Successful: ").append(result.getSuccessCount()).append("\n");
+        if (result.getSkippedCount() > 0) {
+            message.append("Skipped: ").append(result.getSkippedCount()).append("\n");
+        }
+        if (result.getFailureCount() > 0) {
+            message.append("Failed: ").append(result.getFailureCount()).append("\n");
+            message.append("Failed items:\n");
+            for (String failedItem : result.getFailedItems()) {
+                message.append("- ").append(failedItem).append("\n");
             }
-            showAlert(Alert.AlertType.WARNING, "Filter Application Completed with Errors", message.toString());
-            logger.warn("Filter application completed with some errors.");
-        } else {
-            showAlert(Alert.AlertType.INFORMATION, "Filters Applied", "Selected images have been successfully filtered.");
-            logger.info("Filter application completed successfully.");
         }
+
+        String title = operation + (result.isCancelled() ? " Cancelled" : " Completed with Errors");
+        showAlert(Alert.AlertType.WARNING, title, message.toString());
+        logger.warn("{} finished with {} failures and {} skipped items.",
+                operation, result.getFailureCount(), result.getSkippedCount());
     }
 
     /**
@@ -494,6 +900,15 @@ public class MainController {
     @FXML
     private void handleExit(ActionEvent event) {
         logger.info("Application exit initiated by user.");
+        if (activeBatch != null) {
+            activeBatch.cancel();
+        }
+        if (activePipeline != null) {
+            activePipeline.close();
+        }
+        batchExecutor.close();
+        exportExecutor.close();
+        thumbnailLoader.close();
         System.exit(0);
     }
 
@@ -532,7 +947,7 @@ public class MainController {
     private File chooseDirectory(String title) {
         DirectoryChooser directoryChooser = new DirectoryChooser();
         directoryChooser.setTitle(title);
-        File selectedDirectory = directoryChooser.showDialog(thumbnailsPane.getScene().getWindow());
+        File selectedDirectory = directoryChooser.showDialog(thumbnailGrid.getScene().getWindow());
 
         if (selectedDirectory != null) {
             logger.info("Directory selected: {}", selectedDirectory.getAbsolutePath());
@@ -0,0 +1,259 @@
+package engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * BatchExecutor runs batches of independent jobs (conversions, filters, downloads) on a bounded
+ * pool of worker threads sized to the machine, so that long batches neither block the caller
+ * nor leave cores idle.
+ * Progress is reported per item through a BatchListener, and every batch ends with exactly one
+ * BatchResult summarizing successes, failures and cancellation, even if the executor is closed
+ * while the batch is running.
+ */
+public final class BatchExecutor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchExecutor.class);
+
+    private final ExecutorService workers;
+    private final int parallelism;
+
+    /**
+     * Constructs a BatchExecutor with one worker per available processor.
+     */
+    public BatchExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a BatchExecutor with the given number of worker threads.
+     *
+     * @param parallelism The number of worker threads. Must be positive.
+     * @throws IllegalArgumentException if parallelism is not positive.
+     */
+    public BatchExecutor(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        this.parallelism = parallelism;
+        this.workers = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+    }
+
+    /**
+     * Retrieves the number of worker threads.
+     *
+     * @return The worker count.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Submits a batch for asynchronous execution. Each item is processed independently;
+     * a failing item is recorded in the result and does not abort the rest of the batch.
+     *
+     * @param items    The items to process. Must not be null.
+     * @param namer    Produces the display name of an item for progress and failure reports.
+     * @param task     The work to perform for each item.
+     * @param listener Receives progress and completion callbacks on worker threads.
+     * @param <T>      The type of the items.
+     * @return A handle for cancelling or awaiting the batch.
+     * @throws IllegalArgumentException if any argument is null.
+     * @throws IllegalStateException    if the executor has been closed.
+     */
+    public <T> BatchHandle submit(Collection<? extends T> items, Function<? super T, String> namer,
+                                  BatchTask<? super T> task, BatchListener listener) {
+        if (items == null || namer == null || task == null || listener == null) {
+            throw new IllegalArgumentException("Batch items, namer, task and listener cannot be null.");
+        }
+        if (workers.isShutdown()) {
+            throw new IllegalStateException("BatchExecutor is closed.");
+        }
+
+        // Snapshot the items so that later changes to the caller's collection cannot affect the batch
+        List<T> snapshot = new ArrayList<>(items);
+        BatchHandle handle = new BatchHandle();
+        BatchRun run = new BatchRun(snapshot.size(), handle, listener);
+
+        if (snapshot.isEmpty()) {
+            run.finish();
+            return handle;
+        }
+
+        logger.info("Submitting batch of {} items to {} workers.", snapshot.size(), parallelism);
+        for (int i = 0; i < snapshot.size(); i++) {
+            try {
+                workers.execute(new BatchItem<>(run, snapshot.get(i), namer, task));
+            } catch (RejectedExecutionException e) {
+                // Closed while submitting: skip the items not queued so that the batch still completes
+                logger.warn("BatchExecutor closed while submitting; skipping {} items.", snapshot.size() - i);
+                for (T item : snapshot.subList(i, snapshot.size())) {
+                    run.skip(item, namer);
+                }
+                break;
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * Stops accepting new batches and interrupts running workers. Items still queued are skipped
+     * and their batches are cancelled, so that every batch still completes and its listener and
+     * waiters are notified.
+     */
+    @Override
+    public void close() {
+        List<Runnable> queued = workers.shutdownNow();
+        if (!queued.isEmpty()) {
+            logger.info("BatchExecutor closed with {} queued items; skipping them.", queued.size());
+        }
+        for (Runnable runnable : queued) {
+            if (runnable instanceof BatchItem<?> item) {
+                item.skip();
+            }
+        }
+    }
+
+    /**
+     * One item of a batch queued on the worker pool. Items are their own class, rather than
+     * lambdas, so that close can recognise and skip the ones shutdownNow returns.
+     *
+     * @param <T> The type of the item.
+     */
+    private static final class BatchItem<T> implements Runnable {
+        private final BatchRun run;
+        private final T item;
+        private final Function<? super T, String> namer;
+        private final BatchTask<? super T> task;
+
+        BatchItem(BatchRun run, T item, Function<? super T, String> namer, BatchTask<? super T> task) {
+            this.run = run;
+            this.item = item;
+            this.namer = namer;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            run.process(item, namer, task);
+        }
+
+        void skip() {
+            run.skip(item, namer);
+        }
+    }
+
+    /**
+     * Tracks the state of a single submitted batch.
+     */
+    private static final class BatchRun {
+        private final int total;
+        private final BatchHandle handle;
+        private final BatchListener listener;
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger successes = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        BatchRun(int total, BatchHandle handle, BatchListener listener) {
+            this.total = total;
+            this.handle = handle;
+            this.listener = listener;
+        }
+
+        <T> void process(T item, Function<? super T, String> namer, BatchTask<? super T> task) {
+            // Reported if the namer itself fails, so that the item is still counted
+            String name = String.valueOf(item);
+            try {
+                name = namer.apply(item);
+                if (handle.isCancelled()) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                task.execute(item);
+                successes.incrementAndGet();
+            } catch (Exception | OutOfMemoryError e) {
+                // An image too large to decode fails its item rather than going uncounted
+                logger.error("Batch item failed: {}", name, e);
+                failures.add(name);
+            } finally {
+                complete(name);
+            }
+        }
+
+        /**
+         * Counts an item that will never run as skipped and cancels the batch.
+         */
+        <T> void skip(T item, Function<? super T, String> namer) {
+            handle.cancel();
+            String name = String.valueOf(item);
+            try {
+                name = namer.apply(item);
+            } catch (RuntimeException e) {
+                logger.warn("Batch namer failed for a skipped item.", e);
+            }
+            skipped.incrementAndGet();
+            complete(name);
+        }
+
+        private void complete(String name) {
+            int done = completed.incrementAndGet();
+            notifyProgress(done, name);
+            if (done == total) {
+                finish();
+            }
+        }
+
+        private void notifyProgress(int done, String name) {
+            try {
+                listener.onProgress(done, total, name);
+            } catch (RuntimeException e) {
+                logger.warn("Batch listener failed while reporting progress.", e);
+            }
+        }
+
+        void finish() {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            BatchResult result = new BatchResult(successes.get(), failures.size(), skipped.get(),
+                    new ArrayList<>(failures), handle.isCancelled(), elapsedMillis);
+            logger.info("Batch finished in {} ms: {} succeeded, {} failed, {} skipped.",
+                    elapsedMillis, result.getSuccessCount(), result.getFailureCount(), result.getSkippedCount());
+            try {
+                listener.onComplete(result);
+            } catch (RuntimeException e) {
+                logger.warn("Batch listener failed while reporting completion.", e);
+            } finally {
+                handle.markDone();
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon worker threads so that a running batch never prevents JVM exit.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "batch-worker-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
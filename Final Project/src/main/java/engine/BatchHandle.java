@@ -0,0 +1,75 @@
+package engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * BatchHandle gives the submitter of a batch control over its execution.
+ * It allows cancelling items that have not started yet and waiting for completion.
+ */
+public final class BatchHandle {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * Package-private constructor; handles are created by the BatchExecutor.
+     */
+    BatchHandle() {
+    }
+
+    /**
+     * Requests cancellation of the batch. Items already running are allowed to finish;
+     * items that have not started yet are skipped.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Indicates whether cancellation has been requested.
+     *
+     * @return true if the batch was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Indicates whether every item of the batch has finished or been skipped.
+     *
+     * @return true if the batch is done.
+     */
+    public boolean isDone() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Blocks until the batch is done.
+     *
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * Blocks until the batch is done or the timeout elapses.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return true if the batch finished within the timeout.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Marks the batch as done and releases any waiting threads.
+     */
+    void markDone() {
+        finished.countDown();
+    }
+}
@@ -0,0 +1,23 @@
+package engine;
+
+/**
+ * BatchListener receives progress notifications from a running batch.
+ * Callbacks are invoked on worker threads; UI code must marshal them onto its own thread.
+ */
+public interface BatchListener {
+    /**
+     * Called each time an item of the batch has finished, successfully or not.
+     *
+     * @param completed The number of items finished so far.
+     * @param total     The total number of items in the batch.
+     * @param itemName  The display name of the item that just finished.
+     */
+    void onProgress(int completed, int total, String itemName);
+
+    /**
+     * Called exactly once when every item has finished or has been skipped due to cancellation.
+     *
+     * @param result The summary of the batch.
+     */
+    void onComplete(BatchResult result);
+}
@@ -0,0 +1,93 @@
+package engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchResult summarizes the outcome of a batch run, including success and failure counts,
+ * the names of failed items, and whether the batch was cancelled.
+ * This class is immutable and thread-safe.
+ */
+public final class BatchResult {
+
+    private final int successCount;
+    private final int failureCount;
+    private final int skippedCount;
+    private final List<String> failedItems;
+    private final boolean cancelled;
+    private final long elapsedMillis;
+
+    /**
+     * Constructs a BatchResult.
+     *
+     * @param successCount  Number of items processed successfully.
+     * @param failureCount  Number of items that failed.
+     * @param skippedCount  Number of items skipped because the batch was cancelled.
+     * @param failedItems   Display names of the failed items.
+     * @param cancelled     Whether the batch was cancelled.
+     * @param elapsedMillis Wall-clock duration of the batch in milliseconds.
+     */
+    public BatchResult(int successCount, int failureCount, int skippedCount,
+                       List<String> failedItems, boolean cancelled, long elapsedMillis) {
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.skippedCount = skippedCount;
+        this.failedItems = Collections.unmodifiableList(failedItems);
+        this.cancelled = cancelled;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Retrieves the number of items processed successfully.
+     *
+     * @return Success count.
+     */
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Retrieves the number of items that failed.
+     *
+     * @return Failure count.
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Retrieves the number of items skipped because the batch was cancelled.
+     *
+     * @return Skipped count.
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Retrieves the display names of the items that failed.
+     *
+     * @return An unmodifiable list of failed item names.
+     */
+    public List<String> getFailedItems() {
+        return failedItems;
+    }
+
+    /**
+     * Indicates whether the batch was cancelled before all items were processed.
+     *
+     * @return true if the batch was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Retrieves the wall-clock duration of the batch.
+     *
+     * @return Elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,17 @@
+package engine;
+
+/**
+ * BatchTask defines the unit of work executed by the BatchExecutor for each item of a batch.
+ *
+ * @param <T> The type of item processed by the task.
+ */
+@FunctionalInterface
+public interface BatchTask<T> {
+    /**
+     * Processes a single item of the batch.
+     *
+     * @param item The item to process.
+     * @throws Exception If the item cannot be processed. The failure is recorded in the batch result.
+     */
+    void execute(T item) throws Exception;
+}
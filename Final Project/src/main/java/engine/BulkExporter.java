@@ -0,0 +1,269 @@
+package engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BulkExporter copies original files into an export directory with as little I/O as possible.
+ * A destination that already holds the same bytes is left untouched. Otherwise the file is either
+ * hard-linked, when requested and the destination lives on the same file store, or copied with
+ * FileChannel.transferTo so that the kernel moves the data without staging it in the Java heap.
+ * Every file is written under a unique temporary name and moved into place, so an interrupted
+ * export never leaves a truncated file that a later export would mistake for a finished one, and
+ * concurrent exports to the same destination cannot overwrite or delete each other's partial files;
+ * the last one to finish wins.
+ * Exports of different files may run concurrently, typically as tasks of a BatchExecutor sized by
+ * DEFAULT_PARALLELISM; the byte and file counters are thread-safe.
+ */
+public final class BulkExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkExporter.class);
+
+    // Disk and network file systems only reach full bandwidth with several requests in flight,
+    // so exports use more workers than there are cores even on small machines
+    public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    // Suffix of the uniquely named temporary file a copy or link is created under before it is moved into place
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    /**
+     * How a file that is not already present in the destination is materialized.
+     */
+    public enum Mode {
+        /** Copy the bytes into a new, independent file. */
+        COPY,
+        /**
+         * Hard-link the destination to the source when both are on the same file store, falling
+         * back to a copy otherwise. The export then shares storage with the original, so editing
+         * one edits the other.
+         */
+        HARD_LINK
+    }
+
+    /**
+     * What an export of a single file did.
+     */
+    public enum Outcome {
+        /** The bytes were copied. */
+        COPIED,
+        /** The destination was hard-linked to the source. */
+        LINKED,
+        /** The destination already held identical content and was left untouched. */
+        SKIPPED
+    }
+
+    private final Mode mode;
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final AtomicLong avoidedBytes = new AtomicLong();
+    private final AtomicInteger copiedCount = new AtomicInteger();
+    private final AtomicInteger linkedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+
+    /**
+     * Constructs a BulkExporter.
+     *
+     * @param mode The way missing or outdated files are materialized. Must not be null.
+     * @throws IllegalArgumentException if mode is null.
+     */
+    public BulkExporter(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Export mode cannot be null.");
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * Exports a single file, replacing the destination unless it already holds the same bytes.
+     *
+     * @param source      The file to export. Must be a regular file.
+     * @param destination The path to export the file to.
+     * @return What was done to bring the destination up to date.
+     * @throws IllegalArgumentException if source or destination is null, or source is not a regular file.
+     * @throws IOException              if the file cannot be read, compared, copied or linked.
+     */
+    public Outcome export(Path source, Path destination) throws IOException {
+        if (source == null || destination == null) {
+            throw new IllegalArgumentException("Export source and destination cannot be null.");
+        }
+        if (!Files.isRegularFile(source)) {
+            throw new IllegalArgumentException("Export source is not a regular file: " + source);
+        }
+
+        long size = Files.size(source);
+        if (isUpToDate(source, destination, size)) {
+            skippedCount.incrementAndGet();
+            avoidedBytes.addAndGet(size);
+            logger.debug("Export skipped, destination is identical: {}", destination);
+            return Outcome.SKIPPED;
+        }
+
+        // A fresh name per export, so concurrent exports to the same destination never share a partial file
+        Path partial = Files.createTempFile(destination.toAbsolutePath().getParent(),
+                "." + destination.getFileName() + ".", PARTIAL_SUFFIX);
+        try {
+            Outcome outcome = mode == Mode.HARD_LINK && link(source, partial) ? Outcome.LINKED : Outcome.COPIED;
+            if (outcome == Outcome.COPIED) {
+                copy(source, partial, size);
+                // Temporary files are created readable by the owner only; give the export the source's access instead
+                if (Files.getFileStore(partial).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                    Files.setPosixFilePermissions(partial, Files.getPosixFilePermissions(source));
+                }
+            }
+            Files.move(partial, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (outcome == Outcome.LINKED) {
+                linkedCount.incrementAndGet();
+                avoidedBytes.addAndGet(size);
+            } else {
+                copiedCount.incrementAndGet();
+                copiedBytes.addAndGet(size);
+            }
+            logger.debug("Exported {} to {} ({}).", source, destination, outcome);
+            return outcome;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Retrieves the export mode.
+     *
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Retrieves the number of bytes written by copies.
+     *
+     * @return Copied bytes.
+     */
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    /**
+     * Retrieves the number of bytes that did not have to be copied because the destination was
+     * already identical or was hard-linked.
+     *
+     * @return Avoided bytes.
+     */
+    public long getAvoidedBytes() {
+        return avoidedBytes.get();
+    }
+
+    /**
+     * Retrieves the number of files copied.
+     *
+     * @return Copied count.
+     */
+    public int getCopiedCount() {
+        return copiedCount.get();
+    }
+
+    /**
+     * Retrieves the number of files hard-linked.
+     *
+     * @return Linked count.
+     */
+    public int getLinkedCount() {
+        return linkedCount.get();
+    }
+
+    /**
+     * Retrieves the number of files left untouched because the destination was already identical.
+     *
+     * @return Skipped count.
+     */
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Determines whether the destination already holds the bytes of the source. Sizes are compared
+     * first, so a changed file is usually detected without reading it. Files of equal size are
+     * compared byte for byte: this reads no more than hashing both files would, stops at the first
+     * difference and cannot be fooled by a collision.
+     *
+     * @param source      The source file.
+     * @param destination The destination path.
+     * @param size        The size of the source in bytes.
+     * @return true if the destination exists and has the same content as the source.
+     * @throws IOException if either file cannot be read.
+     */
+    private static boolean isUpToDate(Path source, Path destination, long size) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(destination, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile() || attributes.size() != size) {
+            return false;
+        }
+        return Files.isSameFile(source, destination) || Files.mismatch(source, destination) == -1L;
+    }
+
+    /**
+     * Creates a hard link to the source, if both paths are on the same file store.
+     *
+     * @param source The source file.
+     * @param link   The path of the link to create.
+     * @return true if the link was created, false if the caller must copy instead.
+     * @throws IOException if the file stores cannot be determined.
+     */
+    private static boolean link(Path source, Path link) throws IOException {
+        Path directory = link.toAbsolutePath().getParent();
+        if (!Files.getFileStore(source).equals(Files.getFileStore(directory))) {
+            logger.debug("Not linking {}: destination is on a different file store.", source);
+            return false;
+        }
+        try {
+            Files.deleteIfExists(link);
+            Files.createLink(link, source);
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            logger.warn("Hard link failed for {}, copying instead: {}", source, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Copies the source with FileChannel.transferTo, which lets the operating system move the bytes
+     * between the files directly. transferTo may move fewer bytes than requested, so it is repeated
+     * until the whole file has been transferred.
+     *
+     * @param source The source file.
+     * @param target The file to create or truncate.
+     * @param size   The size of the source in bytes.
+     * @throws IOException if the copy fails or the source shrinks while being copied.
+     */
+    private static void copy(Path source, Path target, long size) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Source ended after " + position + " of " + size + " bytes: " + source);
+                }
+                position += transferred;
+            }
+        }
+    }
+}
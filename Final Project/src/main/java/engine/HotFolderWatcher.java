@@ -0,0 +1,380 @@
+package engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HotFolderWatcher ingests the files dropped into a directory, running a task on each file once
+ * it has been completely written.
+ * A WatchService reports new and modified files; a file is considered complete when its size and
+ * modification time have not changed for a settle time. Complete files are handed to a fixed
+ * number of workers through a bounded queue. After processing, a file is moved into the
+ * "processed" or "failed" subdirectory, so the watched directory itself is the backlog: the
+ * watcher only keeps a bounded number of files in memory (at most the queue capacity waiting to
+ * settle and the queue capacity queued), and files beyond that stay on disk untouched until a
+ * rescan of the directory finds room for them. Rescans also recover events dropped by the
+ * WatchService when a burst overflows its own queue, and pick up files left over from a previous run.
+ * Only the top level of the directory is watched. Files whose name starts with a dot are ignored,
+ * which leaves temporary files of tools that write and then rename alone.
+ */
+public final class HotFolderWatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotFolderWatcher.class);
+
+    // Subdirectories receiving the processed and failed files
+    public static final String PROCESSED_DIRECTORY = "processed";
+    public static final String FAILED_DIRECTORY = "failed";
+
+    // Interval at which pending files are checked for completion
+    private static final long POLL_MILLIS = 250;
+
+    // Time granted to running tasks when the watcher is closed
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final Path directory;
+    private final BatchTask<Path> task;
+    private final Duration settleTime;
+    private final int capacity;
+    private final BlockingQueue<Detected> queue;
+    private final ExecutorService workers;
+    private final int parallelism;
+
+    // Files waiting for their writes to finish; only accessed by the watcher thread
+    private final Map<Path, Candidate> pending = new HashMap<>();
+
+    // Files pending, queued or running, so that events and rescans do not submit them twice
+    private final Set<Path> tracked = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private WatchService watchService;
+    private Thread watcherThread;
+    private volatile boolean closed;
+
+    // Set when files may exist on disk that are not tracked: at start, after overflows and when full
+    private boolean rescanNeeded = true;
+
+    /**
+     * Constructs a HotFolderWatcher. Call start to begin watching.
+     *
+     * @param directory   The directory to watch. Must be an existing directory.
+     * @param task        The work to perform for each complete file, executed on a worker thread.
+     * @param capacity    The maximum number of files queued for the workers. Must be positive.
+     * @param parallelism The number of worker threads. Must be positive.
+     * @param settleTime  How long a file must stay unchanged to be considered complete. Must not be negative.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public HotFolderWatcher(Path directory, BatchTask<Path> task, int capacity, int parallelism, Duration settleTime) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Watched path is not a directory: " + directory);
+        }
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null.");
+        }
+        if (capacity <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Capacity and parallelism must be positive.");
+        }
+        if (settleTime == null || settleTime.isNegative()) {
+            throw new IllegalArgumentException("Settle time cannot be null or negative.");
+        }
+        this.directory = directory.toAbsolutePath().normalize();
+        this.task = task;
+        this.capacity = capacity;
+        this.parallelism = parallelism;
+        this.settleTime = settleTime;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        AtomicInteger counter = new AtomicInteger(1);
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ingest-worker-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts watching the directory and processing files.
+     *
+     * @throws IOException              If the directory cannot be watched or its subdirectories created.
+     * @throws IllegalStateException    If the watcher was already started or closed.
+     */
+    public synchronized void start() throws IOException {
+        if (watcherThread != null || closed) {
+            throw new IllegalStateException("Watcher has already been started.");
+        }
+        Files.createDirectories(directory.resolve(PROCESSED_DIRECTORY));
+        Files.createDirectories(directory.resolve(FAILED_DIRECTORY));
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        for (int i = 0; i < parallelism; i++) {
+            workers.execute(this::work);
+        }
+        watcherThread = new Thread(this::watch, "hot-folder-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("Watching {} with {} workers and a queue of {} files.", directory, parallelism, capacity);
+    }
+
+    /**
+     * Takes a snapshot of the watcher's queue and counters.
+     *
+     * @return The current metrics.
+     */
+    public IngestMetrics getMetrics() {
+        long done = processed.get() + failed.get();
+        long average = done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / done);
+        int queued = queue.size();
+        int active = running.get();
+        // Tracked files are pending, queued or running
+        int waiting = Math.max(0, tracked.size() - queued - active);
+        return new IngestMetrics(waiting, queued, capacity, active, processed.get(), failed.get(), average,
+                TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+    }
+
+    /**
+     * Stops watching and waits for running tasks to finish. Files still pending or queued stay in
+     * the directory and are picked up by the next watcher.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close the watch service of {}.", directory, e);
+        }
+        workers.shutdown();
+        try {
+            if (watcherThread != null) {
+                watcherThread.join();
+            }
+            if (!workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Stopped watching {}: {}", directory, getMetrics());
+    }
+
+    /**
+     * Runs on the watcher thread: collects events, rescans when needed and queues complete files.
+     */
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescanNeeded = true;
+                        } else {
+                            detect(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        logger.error("Watched directory is no longer accessible: {}", directory);
+                        return;
+                    }
+                }
+                if (rescanNeeded && pending.size() < capacity) {
+                    rescan();
+                }
+                queueCompleteFiles();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // The watcher was closed while polling
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts tracking a file reported by an event, or notes that a rescan is needed if too many
+     * files are pending already.
+     *
+     * @param file The file.
+     */
+    private void detect(Path file) {
+        Candidate candidate = pending.get(file);
+        if (candidate != null) {
+            candidate.lastChangeNanos = System.nanoTime();
+            return;
+        }
+        if (tracked.contains(file) || file.getFileName().toString().startsWith(".") || !Files.isRegularFile(file)) {
+            return;
+        }
+        if (pending.size() >= capacity) {
+            rescanNeeded = true;
+            return;
+        }
+        pending.put(file, new Candidate());
+        tracked.add(file);
+    }
+
+    /**
+     * Lists the directory and tracks the files that are not tracked yet, as far as room allows.
+     */
+    private void rescan() {
+        rescanNeeded = false;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+            for (Path file : files) {
+                detect(file);
+                if (rescanNeeded) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to list {}.", directory, e);
+            rescanNeeded = true;
+        }
+    }
+
+    /**
+     * Moves the pending files whose size and modification time have settled into the queue,
+     * stopping when the queue is full; those files stay pending until the workers catch up.
+     */
+    private void queueCompleteFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Candidate>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Path, Candidate> entry = entries.next();
+            Path file = entry.getKey();
+            Candidate candidate = entry.getValue();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // Deleted or renamed before it was complete
+                entries.remove();
+                tracked.remove(file);
+                continue;
+            }
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (attributes.size() != candidate.size || modified != candidate.modifiedMillis) {
+                candidate.size = attributes.size();
+                candidate.modifiedMillis = modified;
+                candidate.lastChangeNanos = now;
+            } else if (now - candidate.lastChangeNanos >= settleTime.toNanos()) {
+                if (!queue.offer(new Detected(file, candidate.detectedNanos))) {
+                    return;
+                }
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs on each worker thread: processes queued files until the watcher is closed.
+     */
+    private void work() {
+        while (!closed || !queue.isEmpty()) {
+            Detected detected;
+            try {
+                detected = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (detected == null) {
+                continue;
+            }
+            if (closed) {
+                // Leave the file in the directory for the next run
+                tracked.remove(detected.file);
+                continue;
+            }
+            process(detected);
+        }
+    }
+
+    /**
+     * Runs the task on a file, moves it out of the watched directory and records its latency.
+     *
+     * @param detected The file and its detection time.
+     */
+    private void process(Detected detected) {
+        Path file = detected.file;
+        running.incrementAndGet();
+        boolean success;
+        try {
+            task.execute(file);
+            success = true;
+        } catch (Throwable e) {
+            // Errors such as OutOfMemoryError fail the file too: escaping would end this worker for
+            // good and leave the file tracked, so ingestion would stop once every worker was lost
+            logger.error("Ingestion failed: {}", file, e);
+            success = false;
+        } finally {
+            running.decrementAndGet();
+        }
+        (success ? processed : failed).incrementAndGet();
+        long latency = System.nanoTime() - detected.detectedNanos;
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+
+        Path target = directory.resolve(success ? PROCESSED_DIRECTORY : FAILED_DIRECTORY).resolve(file.getFileName());
+        try {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            tracked.remove(file);
+        } catch (IOException e) {
+            // Keep the file tracked so that rescans do not process it again
+            logger.error("Failed to move {} to {}.", file, target, e);
+        }
+    }
+
+    /**
+     * A file waiting for its writes to finish.
+     */
+    private static final class Candidate {
+        private final long detectedNanos = System.nanoTime();
+        private long lastChangeNanos = detectedNanos;
+        private long size = -1;
+        private long modifiedMillis = -1;
+    }
+
+    /**
+     * A complete file queued for processing.
+     */
+    private static final class Detected {
+        private final Path file;
+        private final long detectedNanos;
+
+        Detected(Path file, long detectedNanos) {
+            this.file = file;
+            this.detectedNanos = detectedNanos;
+        }
+    }
+}
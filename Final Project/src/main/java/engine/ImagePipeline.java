@@ -0,0 +1,528 @@
+package engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * ImagePipeline converts batches of image files in overlapping stages, so that the disks keep
+ * reading and writing while the processors decode, filter and encode.
+ * File reads and writes are blocking I/O and run on virtual threads; decoding, filtering and
+ * encoding are CPU bound and run on a pool of platform threads sized to the processors. The
+ * stages are connected by bounded queues holding the file contents read and the encoded outputs
+ * to write, so a slow stage holds back the stages before it instead of letting buffers pile up:
+ * at most the queue capacity of files is buffered on each side of the CPU stage, plus one decoded
+ * image per CPU thread. A CPU thread decodes, filters and encodes an image in one go, since
+ * queueing between steps that compete for the same processors would add memory but no overlap.
+ * Each output is reported through an OutputListener, and each input through the same
+ * BatchListener and BatchHandle as BatchExecutor batches.
+ * Files are read into memory whole, so images whose decoded size approaches the heap should be
+ * processed separately (see util.StreamingImageProcessor). They are decoded through in-memory
+ * image streams, since ImageIO would otherwise spool them through temporary files on the CPU threads.
+ */
+public final class ImagePipeline implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePipeline.class);
+
+    /**
+     * Encodes an image in a format into the contents of an image file.
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode(BufferedImage image, String format) throws IOException;
+    }
+
+    /**
+     * Receives the outcome of every output of a batch, on the thread that finished it.
+     */
+    @FunctionalInterface
+    public interface OutputListener {
+        /**
+         * Called once per output when it has been written or has failed.
+         *
+         * @param input        The source file.
+         * @param format       The target format.
+         * @param output       The destination file.
+         * @param error        The failure, or null if the output was written.
+         * @param elapsedNanos The time since the source file started being read.
+         */
+        void onOutput(Path input, String format, Path output, Exception error, long elapsedNanos);
+    }
+
+    /**
+     * A source file and the outputs to produce from it.
+     */
+    public static final class Job {
+        private final Path input;
+        private final Map<String, Path> outputs;
+
+        /**
+         * Constructs a Job.
+         *
+         * @param input   The source file. Must not be null.
+         * @param outputs The destination file for each target format, in the order to produce them.
+         * @throws IllegalArgumentException if any argument is null.
+         */
+        public Job(Path input, Map<String, Path> outputs) {
+            if (input == null || outputs == null) {
+                throw new IllegalArgumentException("Job input and outputs cannot be null.");
+            }
+            this.input = input;
+            this.outputs = Collections.unmodifiableMap(new LinkedHashMap<>(outputs));
+        }
+
+        /**
+         * Retrieves the source file.
+         *
+         * @return The source file.
+         */
+        public Path getInput() {
+            return input;
+        }
+
+        /**
+         * Retrieves the destination file of each target format.
+         *
+         * @return The outputs by format.
+         */
+        public Map<String, Path> getOutputs() {
+            return outputs;
+        }
+    }
+
+    private final UnaryOperator<BufferedImage> processor;
+    private final Encoder encoder;
+    private final int cpuThreads;
+    private final int ioThreads;
+    private final int queueCapacity;
+    private final ExecutorService cpuPool;
+    private final ExecutorService ioPool = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
+
+    /**
+     * Constructs an ImagePipeline with one CPU thread per available processor.
+     *
+     * @param processor     The operation applied to every decoded image, or null to convert only.
+     * @param encoder       Encodes the processed images. Must not be null.
+     * @param ioThreads     The number of concurrent reads, and of concurrent writes. Must be positive.
+     * @param queueCapacity The number of files buffered between stages. Must be positive.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public ImagePipeline(UnaryOperator<BufferedImage> processor, Encoder encoder, int ioThreads, int queueCapacity) {
+        this(processor, encoder, Runtime.getRuntime().availableProcessors(), ioThreads, queueCapacity);
+    }
+
+    /**
+     * Constructs an ImagePipeline.
+     *
+     * @param processor     The operation applied to every decoded image, or null to convert only.
+     * @param encoder       Encodes the processed images. Must not be null.
+     * @param cpuThreads    The number of threads decoding, processing and encoding. Must be positive.
+     * @param ioThreads     The number of concurrent reads, and of concurrent writes. Must be positive.
+     * @param queueCapacity The number of files buffered between stages. Must be positive.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public ImagePipeline(UnaryOperator<BufferedImage> processor, Encoder encoder, int cpuThreads, int ioThreads,
+                         int queueCapacity) {
+        if (encoder == null) {
+            throw new IllegalArgumentException("Encoder cannot be null.");
+        }
+        if (cpuThreads <= 0 || ioThreads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Thread counts and queue capacity must be positive.");
+        }
+        this.processor = processor;
+        this.encoder = encoder;
+        this.cpuThreads = cpuThreads;
+        this.ioThreads = ioThreads;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger counter = new AtomicInteger(1);
+        this.cpuPool = Executors.newFixedThreadPool(cpuThreads, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-cpu-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a batch for asynchronous execution. Each job is processed independently; a failing
+     * job or output is recorded and does not abort the rest of the batch. A job succeeds when all
+     * of its outputs were written.
+     *
+     * @param jobs     The jobs to process. Must not be null.
+     * @param outputs  Receives the outcome of every output. Must not be null.
+     * @param listener Receives progress per job and the batch result. Must not be null.
+     * @return A handle for cancelling or awaiting the batch. Cancelling skips jobs not read yet.
+     * @throws IllegalArgumentException if any argument is null.
+     */
+    public BatchHandle submit(List<Job> jobs, OutputListener outputs, BatchListener listener) {
+        if (jobs == null || outputs == null || listener == null) {
+            throw new IllegalArgumentException("Jobs, output listener and batch listener cannot be null.");
+        }
+        Run run = new Run(new ArrayList<>(jobs), outputs, listener);
+        run.start();
+        return run.handle;
+    }
+
+    /**
+     * Stops the pipeline threads, interrupting running batches. The jobs of a running batch that are
+     * not finished yet fail, so that the batch still completes and its handle can be awaited.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cpuPool.shutdownNow();
+        ioPool.shutdownNow();
+    }
+
+    /**
+     * The state of a single submitted batch.
+     */
+    private final class Run {
+        private final List<Job> jobs;
+        private final OutputListener outputs;
+        private final BatchListener listener;
+        private final BatchHandle handle = new BatchHandle();
+        private final long startNanos = System.nanoTime();
+
+        private final Queue<Job> unread;
+        private final BlockingQueue<Read> reads = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Write> writes = new ArrayBlockingQueue<>(queueCapacity);
+
+        // Stage threads still running, so that the last one of a stage can stop the next stage
+        private final AtomicInteger activeReaders = new AtomicInteger(ioThreads);
+        private final AtomicInteger activeCpuThreads = new AtomicInteger(cpuThreads);
+
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger successes = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Run(List<Job> jobs, OutputListener outputs, BatchListener listener) {
+            this.jobs = jobs;
+            this.outputs = outputs;
+            this.listener = listener;
+            this.unread = new ConcurrentLinkedQueue<>(jobs);
+        }
+
+        void start() {
+            if (jobs.isEmpty()) {
+                finish();
+                return;
+            }
+            logger.info("Submitting pipeline batch of {} jobs: {} CPU threads, {} I/O threads, queues of {}.",
+                    jobs.size(), cpuThreads, ioThreads, queueCapacity);
+            for (int i = 0; i < ioThreads; i++) {
+                ioPool.execute(this::read);
+                ioPool.execute(this::write);
+            }
+            for (int i = 0; i < cpuThreads; i++) {
+                cpuPool.execute(this::compute);
+            }
+        }
+
+        /**
+         * Read stage: loads source files into memory.
+         */
+        private void read() {
+            try {
+                Job job;
+                while ((job = unread.poll()) != null) {
+                    JobState state = new JobState(job);
+                    if (handle.isCancelled()) {
+                        state.skipped = true;
+                        jobDone(state);
+                        continue;
+                    }
+                    byte[] contents;
+                    try {
+                        contents = Files.readAllBytes(job.getInput());
+                    } catch (IOException | OutOfMemoryError e) {
+                        failAll(state, asException(e));
+                        continue;
+                    }
+                    try {
+                        reads.put(new Read(state, contents));
+                    } catch (InterruptedException e) {
+                        failAll(state, closedError());
+                        throw e;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (activeReaders.decrementAndGet() == 0) {
+                    stop(reads, Read.END, cpuThreads);
+                }
+                if (closed) {
+                    failRemaining();
+                }
+            }
+        }
+
+        /**
+         * CPU stage: decodes, processes and encodes each source into its outputs.
+         */
+        private void compute() {
+            try {
+                Read read;
+                while ((read = reads.take()) != Read.END) {
+                    JobState state = read.state;
+                    BufferedImage image;
+                    try {
+                        // ImageIO.read closes the stream; the memory cache keeps it off the disk
+                        image = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(read.contents)));
+                        if (image == null) {
+                            throw new IOException("Unsupported or corrupted image format: "
+                                    + state.job.getInput().getFileName());
+                        }
+                        if (processor != null) {
+                            image = processor.apply(image);
+                        }
+                    } catch (Exception | OutOfMemoryError e) {
+                        failAll(state, asException(e));
+                        continue;
+                    }
+                    List<Map.Entry<String, Path>> targets = new ArrayList<>(state.job.getOutputs().entrySet());
+                    for (int i = 0; i < targets.size(); i++) {
+                        Map.Entry<String, Path> output = targets.get(i);
+                        byte[] encoded;
+                        try {
+                            encoded = encoder.encode(image, output.getKey());
+                        } catch (Exception | OutOfMemoryError e) {
+                            outputDone(state, output.getKey(), output.getValue(), asException(e));
+                            continue;
+                        }
+                        try {
+                            writes.put(new Write(state, output.getKey(), output.getValue(), encoded));
+                        } catch (InterruptedException e) {
+                            // This output and the ones not encoded yet will never be written
+                            for (Map.Entry<String, Path> lost : targets.subList(i, targets.size())) {
+                                outputDone(state, lost.getKey(), lost.getValue(), closedError());
+                            }
+                            throw e;
+                        }
+                    }
+                    if (state.job.getOutputs().isEmpty()) {
+                        jobDone(state);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (activeCpuThreads.decrementAndGet() == 0) {
+                    stop(writes, Write.END, ioThreads);
+                }
+                if (closed) {
+                    failRemaining();
+                }
+            }
+        }
+
+        /**
+         * Write stage: stores the encoded outputs.
+         */
+        private void write() {
+            try {
+                Write write;
+                while ((write = writes.take()) != Write.END) {
+                    Exception error = null;
+                    try {
+                        Files.write(write.output, write.contents);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                    outputDone(write.state, write.format, write.output, error);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (closed) {
+                    failRemaining();
+                }
+            }
+        }
+
+        /**
+         * Fails every job not read yet and every read or encoded file still queued, once the pipeline
+         * is closed. Each stage thread calls it on its way out, so items queued by a thread that
+         * finished just before being interrupted are failed by the threads that were to consume them.
+         * End markers are put back for the threads still running.
+         */
+        private void failRemaining() {
+            Job job;
+            while ((job = unread.poll()) != null) {
+                failAll(new JobState(job), closedError());
+            }
+            List<Read> pendingReads = new ArrayList<>();
+            reads.drainTo(pendingReads);
+            for (Read read : pendingReads) {
+                if (read == Read.END) {
+                    reads.offer(read);
+                } else {
+                    failAll(read.state, closedError());
+                }
+            }
+            List<Write> pendingWrites = new ArrayList<>();
+            writes.drainTo(pendingWrites);
+            for (Write write : pendingWrites) {
+                if (write == Write.END) {
+                    writes.offer(write);
+                } else {
+                    outputDone(write.state, write.format, write.output, closedError());
+                }
+            }
+        }
+
+        /**
+         * Signals the threads of the next stage that no more items will arrive.
+         */
+        private <T> void stop(BlockingQueue<T> queue, T end, int consumers) {
+            try {
+                for (int i = 0; i < consumers; i++) {
+                    queue.put(end);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void failAll(JobState state, Exception error) {
+            for (Map.Entry<String, Path> output : state.job.getOutputs().entrySet()) {
+                outputDone(state, output.getKey(), output.getValue(), error);
+            }
+            if (state.job.getOutputs().isEmpty()) {
+                state.failed = true;
+                jobDone(state);
+            }
+        }
+
+        private void outputDone(JobState state, String format, Path output, Exception error) {
+            if (error != null) {
+                logger.error("Pipeline output failed: {} -> {}", state.job.getInput(), output, error);
+                state.failed = true;
+            }
+            try {
+                outputs.onOutput(state.job.getInput(), format, output, error, System.nanoTime() - state.startNanos);
+            } catch (RuntimeException e) {
+                logger.warn("Output listener failed.", e);
+            }
+            if (state.remaining.decrementAndGet() == 0) {
+                jobDone(state);
+            }
+        }
+
+        private void jobDone(JobState state) {
+            String name = state.job.getInput().getFileName().toString();
+            if (state.skipped) {
+                skipped.incrementAndGet();
+            } else if (state.failed) {
+                failures.add(name);
+            } else {
+                successes.incrementAndGet();
+            }
+            int done = completed.incrementAndGet();
+            try {
+                listener.onProgress(done, jobs.size(), name);
+            } catch (RuntimeException e) {
+                logger.warn("Batch listener failed while reporting progress.", e);
+            }
+            if (done == jobs.size()) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            BatchResult result = new BatchResult(successes.get(), failures.size(), skipped.get(),
+                    new ArrayList<>(failures), handle.isCancelled(), elapsedMillis);
+            logger.info("Pipeline batch finished in {} ms: {} succeeded, {} failed, {} skipped.",
+                    elapsedMillis, result.getSuccessCount(), result.getFailureCount(), result.getSkippedCount());
+            try {
+                listener.onComplete(result);
+            } catch (RuntimeException e) {
+                logger.warn("Batch listener failed while reporting completion.", e);
+            } finally {
+                handle.markDone();
+            }
+        }
+
+        private Exception closedError() {
+            return new IOException("Pipeline closed before the image was processed.");
+        }
+
+        private Exception asException(Throwable error) {
+            return error instanceof Exception ? (Exception) error : new IOException("Image too large: " + error, error);
+        }
+
+        /**
+         * Tracks the outputs of a job still in flight.
+         */
+        private final class JobState {
+            private final Job job;
+            private final long startNanos = System.nanoTime();
+            private final AtomicInteger remaining;
+            private volatile boolean failed;
+            private boolean skipped;
+
+            JobState(Job job) {
+                this.job = job;
+                this.remaining = new AtomicInteger(job.getOutputs().size());
+            }
+        }
+    }
+
+    /**
+     * A source file read into memory.
+     */
+    private static final class Read {
+        private static final Read END = new Read(null, null);
+
+        private final Run.JobState state;
+        private final byte[] contents;
+
+        Read(Run.JobState state, byte[] contents) {
+            this.state = state;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * An encoded output waiting to be written.
+     */
+    private static final class Write {
+        private static final Write END = new Write(null, null, null, null);
+
+        private final Run.JobState state;
+        private final String format;
+        private final Path output;
+        private final byte[] contents;
+
+        Write(Run.JobState state, String format, Path output, byte[] contents) {
+            this.state = state;
+            this.format = format;
+            this.output = output;
+            this.contents = contents;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package engine;
+
+/**
+ * IngestMetrics is a snapshot of the state of a HotFolderWatcher: how many files are waiting for
+ * their writes to finish, queued or being processed, how many have completed, and how long files
+ * take from detection to completion.
+ * This class is immutable and thread-safe.
+ */
+public final class IngestMetrics {
+
+    private final int pendingCount;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final int runningCount;
+    private final long processedCount;
+    private final long failedCount;
+    private final long averageLatencyMillis;
+    private final long maxLatencyMillis;
+
+    /**
+     * Constructs an IngestMetrics snapshot.
+     *
+     * @param pendingCount         Number of detected files still being written.
+     * @param queueDepth           Number of files waiting for a worker.
+     * @param queueCapacity        Maximum number of files waiting for a worker.
+     * @param runningCount         Number of files being processed.
+     * @param processedCount       Number of files processed successfully.
+     * @param failedCount          Number of files that failed.
+     * @param averageLatencyMillis Average time from detection to completion in milliseconds.
+     * @param maxLatencyMillis     Longest time from detection to completion in milliseconds.
+     */
+    public IngestMetrics(int pendingCount, int queueDepth, int queueCapacity, int runningCount,
+                         long processedCount, long failedCount, long averageLatencyMillis, long maxLatencyMillis) {
+        this.pendingCount = pendingCount;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.runningCount = runningCount;
+        this.processedCount = processedCount;
+        this.failedCount = failedCount;
+        this.averageLatencyMillis = averageLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * Retrieves the number of detected files whose size is not yet stable.
+     *
+     * @return Pending count.
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Retrieves the number of files waiting for a worker.
+     *
+     * @return Queue depth.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Retrieves the maximum number of files waiting for a worker.
+     *
+     * @return Queue capacity.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Retrieves the number of files being processed.
+     *
+     * @return Running count.
+     */
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * Retrieves the number of files processed successfully.
+     *
+     * @return Processed count.
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Retrieves the number of files that failed.
+     *
+     * @return Failure count.
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Retrieves the average time from detection to completion.
+     *
+     * @return Average latency in milliseconds, or 0 if no file has completed.
+     */
+    public long getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    /**
+     * Retrieves the longest time from detection to completion.
+     *
+     * @return Maximum latency in milliseconds, or 0 if no file has completed.
+     */
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestMetrics{" +
+                "pending=" + pendingCount +
+                ", queued=" + queueDepth + "/" + queueCapacity +
+                ", running=" + runningCount +
+                ", processed=" + processedCount +
+                ", failed=" + failedCount +
+                ", averageLatencyMillis=" + averageLatencyMillis +
+                ", maxLatencyMillis=" + maxLatencyMillis +
+                '}';
+    }
+}
@@ -1,47 +1,91 @@
 package model;
 
-import javafx.scene.image.Image;
+import cache.DecodedImageCache;
+import cache.ThumbnailStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.PerceptualHash;
+import util.ThumbnailGenerator;
+import util.XxHash64;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.OptionalLong;
 import javax.imageio.ImageIO;
 
 /**
- * ImageModel represents an image, encapsulating its file, buffered image,
- * thumbnail, and associated properties.
+ * ImageModel represents an image, encapsulating its file, thumbnail, and associated properties.
+ * Neither the full-resolution image nor the thumbnail is retained by the model, so that large
+ * libraries do not hold every raster in memory: the image is decoded on demand and kept in the
+ * shared DecodedImageCache, and the thumbnail is generated once at construction, persisted in the
+ * ThumbnailStore and read back from there whenever it is displayed.
+ * Two models are equal when their files have the same content, as identified by length and a
+ * 64-bit xxHash, regardless of their paths; ImageRegistry uses this to share one model per content.
  * This class is designed to be immutable after initialization to ensure thread safety
  * and consistency of the image data throughout its lifecycle.
  */
 public final class ImageModel {
 
+    private static final Logger logger = LoggerFactory.getLogger(ImageModel.class);
+
+    // Thumbnail dimensions
+    public static final int THUMBNAIL_WIDTH = 100;
+    public static final int THUMBNAIL_HEIGHT = 100;
+
     private final File file;
-    private final BufferedImage bufferedImage;
-    private final Image thumbnail;
+    private final long contentHash;
+    private final long contentLength;
+    private final OptionalLong perceptualHash;
     private final ImageProperties properties;
 
     /**
-     * Constructs an ImageModel with the specified image file.
+     * Constructs an ImageModel with the specified image file, hashing its content.
      *
      * @param file the image file to be represented by this model.
      * @throws IOException if the image cannot be read or has an unsupported format.
      * @throws IllegalArgumentException if the provided file is null or does not exist.
      */
     public ImageModel(File file) throws IOException {
+        this(validateFile(file), XxHash64.hash(file.toPath()), file.length());
+    }
+
+    /**
+     * Constructs an ImageModel with the specified image file and the already computed hash of its content.
+     *
+     * @param file          the image file to be represented by this model.
+     * @param contentHash   the xxHash64 of the file content.
+     * @param contentLength the length of the file content in bytes.
+     * @throws IOException if the image cannot be read or has an unsupported format.
+     * @throws IllegalArgumentException if the provided file is null or does not exist.
+     */
+    ImageModel(File file, long contentHash, long contentLength) throws IOException {
         validateFile(file);
         this.file = file;
-        this.bufferedImage = loadImageFromFile(file);
-        this.thumbnail = createThumbnail(file);
-        this.properties = extractProperties(file, bufferedImage);
+        this.contentHash = contentHash;
+        this.contentLength = contentLength;
+        this.properties = extractProperties(file);
+
+        // The perceptual hash only needs low frequencies, so it is taken from the thumbnail raster
+        BufferedImage thumbnail = null;
+        try {
+            thumbnail = loadThumbnail();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to create a thumbnail for {}", file.getName(), e);
+        }
+        this.perceptualHash = thumbnail != null
+                ? OptionalLong.of(PerceptualHash.compute(thumbnail))
+                : OptionalLong.empty();
     }
 
     /**
      * Validates the provided image file.
      *
      * @param file the image file to validate.
+     * @return the validated file.
      * @throws IllegalArgumentException if the file is null, does not exist, or is not a file.
      */
-    private void validateFile(File file) {
+    private static File validateFile(File file) {
         if (file == null) {
             throw new IllegalArgumentException("Image file cannot be null.");
         }
@@ -51,6 +95,7 @@ public final class ImageModel {
         if (!file.isFile()) {
             throw new IllegalArgumentException("Provided path is not a file: " + file.getAbsolutePath());
         }
+        return file;
     }
 
     /**
@@ -69,30 +114,37 @@ public final class ImageModel {
     }
 
     /**
-     * Creates a thumbnail of the image for display purposes.
+     * Loads the thumbnail of the image for display purposes.
      * The thumbnail preserves the aspect ratio and fits within the specified dimensions.
+     * Thumbnails persisted earlier are read from the ThumbnailStore. Otherwise the thumbnail is taken
+     * from the one embedded in the file when available, or from a subsampled decode, so the
+     * full-resolution image is never decoded for it, and is then persisted.
+     * The thumbnail is not cached by the model; callers displaying it should keep it as long as needed.
      *
-     * @param file the image file to create a thumbnail from.
-     * @return the generated thumbnail as a JavaFX Image.
+     * @return the thumbnail.
+     * @throws IOException if the thumbnail cannot be read or generated.
      */
-    private Image createThumbnail(File file) {
-        // Thumbnail dimensions
-        final double THUMBNAIL_WIDTH = 100;
-        final double THUMBNAIL_HEIGHT = 100;
-
-        // Generate thumbnail using JavaFX 's Image class with aspect ratio preserved and smoothing enabled
-        return new Image(file.toURI().toString(), THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, true, true, true);
+    public BufferedImage loadThumbnail() throws IOException {
+        ThumbnailStore store = ThumbnailStore.getShared();
+        BufferedImage thumbnail = store != null ? store.get(file) : null;
+        if (thumbnail == null) {
+            thumbnail = ThumbnailGenerator.createThumbnail(file, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+            if (store != null) {
+                store.put(file, thumbnail);
+            }
+        }
+        return thumbnail;
     }
 
     /**
-     * Extracts properties from the image file and its buffered image.
+     * Extracts properties from the image file by probing its header, without decoding pixels.
      *
      * @param file the image file.
-     * @param bufferedImage the buffered image of the file.
      * @return an ImageProperties object containing extracted metadata.
+     * @throws IOException if the image cannot be read or has an unsupported format.
      */
-    private ImageProperties extractProperties(File file, BufferedImage bufferedImage) {
-        return new ImageProperties(file, bufferedImage);
+    private ImageProperties extractProperties(File file) throws IOException {
+        return ImageProperties.probe(file);
     }
 
     /**
@@ -105,21 +157,43 @@ public final class ImageModel {
     }
 
     /**
-     * Retrieves the buffered image representation.
+     * Retrieves the buffered image representation, decoding the file if it is not cached.
+     * The returned image is shared through the cache, keyed by content so that files with the same
+     * bytes share one raster, and must not be modified.
      *
      * @return the BufferedImage.
+     * @throws IOException if the image cannot be read or has an unsupported format.
      */
-    public BufferedImage getBufferedImage() {
-        return bufferedImage;
+    public BufferedImage getBufferedImage() throws IOException {
+        String key = "xxh64:" + Long.toHexString(contentHash) + ":" + contentLength;
+        return DecodedImageCache.getShared().get(key, () -> loadImageFromFile(file));
     }
 
     /**
-     * Retrieves the thumbnail image for display purposes.
+     * Retrieves the xxHash64 of the file content.
      *
-     * @return the thumbnail as a JavaFX Image.
+     * @return the content hash.
      */
-    public Image getThumbnail() {
-        return thumbnail;
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Retrieves the length of the file content.
+     *
+     * @return the content length in bytes.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Retrieves the perceptual hash of the image, used to find resized or re-encoded copies.
+     *
+     * @return the 64-bit perceptual hash, or empty if no thumbnail raster was available to compute it.
+     */
+    public OptionalLong getPerceptualHash() {
+        return perceptualHash;
     }
 
     /**
@@ -130,4 +204,20 @@ public final class ImageModel {
     public ImageProperties getProperties() {
         return properties;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageModel other)) {
+            return false;
+        }
+        return contentHash == other.contentHash && contentLength == other.contentLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(contentHash);
+    }
 }
@@ -6,12 +6,20 @@ import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.exif.GpsDirectory;
 import com.drew.lang.GeoLocation;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
 
 /**
  * ImageProperties encapsulates metadata of an image, including dimensions,
  * file size, format, camera model, and geolocation (latitude and longitude).
+ * Properties can be probed from the file header alone, without decoding any pixels.
  * This class is immutable and thread-safe.
  */
 public final class ImageProperties {
@@ -20,6 +28,7 @@ public final class ImageProperties {
     private final int height;
     private final long fileSizeKB;
     private final String format;
+    private final String detectedFormat;
     private final String cameraModel;
     private final String location;
 
@@ -27,6 +36,9 @@ public final class ImageProperties {
     private static final String DEFAULT_VALUE = "N/A";
     private static final String UNKNOWN_FORMAT = "UNKNOWN";
 
+    // Number of leading bytes inspected to recognize the file format
+    private static final int MAGIC_LENGTH = 12;
+
     /**
      * Constructs an ImageProperties instance by extracting metadata from the provided image file.
      *
@@ -46,19 +58,120 @@ public final class ImageProperties {
         this.height = bufferedImage.getHeight();
         this.fileSizeKB = file.length() / 1024;
         this.format = extractFileExtension(file);
+        this.detectedFormat = format;
+        MetadataData metadataData = extractMetadata(file);
+
+        this.cameraModel = metadataData.getCameraModel();
+        this.location = metadataData.getLocation();
+    }
+
+    /**
+     * Constructs an ImageProperties instance from probed dimensions and format.
+     *
+     * @param file           The image file.
+     * @param width          The image width in pixels.
+     * @param height         The image height in pixels.
+     * @param detectedFormat The format recognized from the file content.
+     */
+    private ImageProperties(File file, int width, int height, String detectedFormat) {
+        this.width = width;
+        this.height = height;
+        this.fileSizeKB = file.length() / 1024;
+        this.format = extractFileExtension(file);
+        this.detectedFormat = detectedFormat;
         MetadataData metadataData = extractMetadata(file);
 
         this.cameraModel = metadataData.getCameraModel();
         this.location = metadataData.getLocation();
     }
 
+    /**
+     * Probes the properties of an image file without decoding its pixels.
+     * The format is still the file extension, as output file names are derived from it; the format
+     * recognized from the leading magic bytes is available from getDetectedFormat. The dimensions are read from the
+     * image header through an ImageReader, and camera model and GPS location come from a single
+     * metadata pass. Scanning a directory this way is bound by I/O rather than decoding.
+     *
+     * @param file The image file from which to extract properties.
+     * @return The probed properties.
+     * @throws IOException              If the file cannot be read or no reader supports its format.
+     * @throws IllegalArgumentException if the file is null.
+     */
+    public static ImageProperties probe(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null.");
+        }
+
+        String format = detectFormat(file);
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("Unable to open image file: " + file.getName());
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format or corrupted file: " + file.getName());
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                // Only the header is parsed to answer the dimension queries
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (UNKNOWN_FORMAT.equals(format)) {
+                    format = reader.getFormatName().toUpperCase();
+                }
+                return new ImageProperties(file, width, height, format);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Recognizes the image format from the magic bytes at the start of the file.
+     *
+     * @param file The image file.
+     * @return The format name in uppercase, or "UNKNOWN" if the signature is not recognized.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String detectFormat(File file) throws IOException {
+        byte[] magic = new byte[MAGIC_LENGTH];
+        int length;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            length = in.readNBytes(magic, 0, MAGIC_LENGTH);
+        }
+
+        if (length >= 8 && (magic[0] & 0xFF) == 0x89 && magic[1] == 'P' && magic[2] == 'N' && magic[3] == 'G') {
+            return "PNG";
+        }
+        if (length >= 3 && (magic[0] & 0xFF) == 0xFF && (magic[1] & 0xFF) == 0xD8 && (magic[2] & 0xFF) == 0xFF) {
+            return "JPEG";
+        }
+        if (length >= 6 && magic[0] == 'G' && magic[1] == 'I' && magic[2] == 'F' && magic[3] == '8') {
+            return "GIF";
+        }
+        if (length >= 2 && magic[0] == 'B' && magic[1] == 'M') {
+            return "BMP";
+        }
+        if (length >= 4 && ((magic[0] == 'I' && magic[1] == 'I' && magic[2] == 42 && magic[3] == 0)
+                || (magic[0] == 'M' && magic[1] == 'M' && magic[2] == 0 && magic[3] == 42))) {
+            return "TIFF";
+        }
+        if (length >= 12 && magic[0] == 'R' && magic[1] == 'I' && magic[2] == 'F' && magic[3] == 'F'
+                && magic[8] == 'W' && magic[9] == 'E' && magic[10] == 'B' && magic[11] == 'P') {
+            return "WEBP";
+        }
+        return UNKNOWN_FORMAT;
+    }
+
     /**
      * Extracts the file extension and returns it in uppercase.
      *
      * @param file The image file.
      * @return The file extension in uppercase, or "UNKNOWN" if not found.
      */
-    private String extractFileExtension(File file) {
+    private static String extractFileExtension(File file) {
         String name = file.getName();
         int lastDot = name.lastIndexOf('.');
         if (lastDot > 0 && lastDot < name.length() - 1) {
@@ -143,6 +256,16 @@ public final class ImageProperties {
         return format;
     }
 
+    /**
+     * Retrieves the image format recognized from the file content, which may differ from the file
+     * extension. Properties constructed from a decoded image report the file extension here too.
+     *
+     * @return Detected format in uppercase (for example "JPEG"), or "UNKNOWN".
+     */
+    public String getDetectedFormat() {
+        return detectedFormat;
+    }
+
     /**
      * Retrieves the camera model used to capture the image.
      *
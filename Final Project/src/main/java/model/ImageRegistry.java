@@ -0,0 +1,221 @@
+package model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.XxHash64;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+
+/**
+ * ImageRegistry maps image files to ImageModels by content rather than by path. Files are
+ * identified by their length and a 64-bit xxHash of their bytes, so the same photo uploaded twice,
+ * or reached through two different paths, resolves to one shared model and therefore to one
+ * thumbnail and one decoded raster.
+ * Hashes are remembered per canonical path together with the file's length and last-modified time,
+ * so registering an unchanged path again does not read the file.
+ * This class is thread-safe. Concurrent registrations of identical files create a single model.
+ */
+public final class ImageRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageRegistry.class);
+
+    private final Map<ContentKey, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, PathState> hashedPaths = new ConcurrentHashMap<>();
+
+    /**
+     * The result of registering a file.
+     */
+    public static final class Registration {
+        private final ImageModel model;
+        private final boolean duplicate;
+
+        private Registration(ImageModel model, boolean duplicate) {
+            this.model = model;
+            this.duplicate = duplicate;
+        }
+
+        /**
+         * Retrieves the model shared by every file with this content.
+         *
+         * @return The image model.
+         */
+        public ImageModel getModel() {
+            return model;
+        }
+
+        /**
+         * Indicates whether a file with the same content had already been registered.
+         *
+         * @return true if the file duplicates an earlier registration.
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+    }
+
+    /**
+     * Registers an image file, creating its model only if no file with the same content is known.
+     *
+     * @param file The image file.
+     * @return The registration holding the shared model.
+     * @throws IOException              if the file cannot be read or is not a supported image.
+     * @throws IllegalArgumentException if the file is null, does not exist, or is not a file.
+     */
+    public Registration register(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Image file cannot be null.");
+        }
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("Provided path is not a file: " + file.getAbsolutePath());
+        }
+
+        String path = file.getCanonicalPath();
+        ContentKey key = contentKey(file, path);
+
+        Entry created = new Entry();
+        Entry entry = entries.putIfAbsent(key, created);
+        if (entry == null) {
+            created.paths.add(path);
+            try {
+                ImageModel model = new ImageModel(file, key.hash, key.length);
+                created.model.complete(model);
+                return new Registration(model, false);
+            } catch (Throwable e) {
+                // Forget the failed content so that a later attempt can retry it, and release the
+                // registrations waiting for it, including after an Error such as OutOfMemoryError
+                entries.remove(key, created);
+                created.model.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        ImageModel model = await(entry);
+        entry.paths.add(path);
+        logger.info("{} has the same content as {}.", file.getName(), model.getFile().getName());
+        return new Registration(model, true);
+    }
+
+    /**
+     * Retrieves the canonical paths of every registered file that shares the model's content.
+     *
+     * @param model The image model.
+     * @return The paths in no particular order, or an empty list if the model is not registered.
+     */
+    public List<String> getPaths(ImageModel model) {
+        Entry entry = entries.get(new ContentKey(model.getContentHash(), model.getContentLength()));
+        return entry == null ? Collections.emptyList() : new ArrayList<>(entry.paths);
+    }
+
+    /**
+     * Retrieves the number of distinct images registered.
+     *
+     * @return The number of models.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Determines the content key of a file, reusing the hash computed for the same unchanged path.
+     *
+     * @param file The file.
+     * @param path The canonical path of the file.
+     * @return The content key.
+     * @throws IOException if the file cannot be read.
+     */
+    private ContentKey contentKey(File file, String path) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        PathState known = hashedPaths.get(path);
+        if (known != null && known.length == length && known.lastModified == lastModified) {
+            return known.key;
+        }
+
+        ContentKey key = new ContentKey(XxHash64.hash(file.toPath()), length);
+        hashedPaths.put(path, new PathState(length, lastModified, key));
+        return key;
+    }
+
+    /**
+     * Waits for the model of an entry that another registration is creating.
+     *
+     * @param entry The entry.
+     * @return The model.
+     * @throws IOException if the other registration failed.
+     */
+    private static ImageModel await(Entry entry) throws IOException {
+        try {
+            return entry.model.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Identifies file content by length and hash.
+     */
+    private static final class ContentKey {
+        private final long hash;
+        private final long length;
+
+        ContentKey(long hash, long length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContentKey other)) {
+                return false;
+            }
+            return hash == other.hash && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+
+    /**
+     * The model for one content key and the paths that hold that content.
+     */
+    private static final class Entry {
+        private final CompletableFuture<ImageModel> model = new CompletableFuture<>();
+        private final Set<String> paths = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * The content key last computed for a path, valid while its length and modification time are unchanged.
+     */
+    private static final class PathState {
+        private final long length;
+        private final long lastModified;
+        private final ContentKey key;
+
+        PathState(long length, long lastModified, ContentKey key) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.key = key;
+        }
+    }
+}
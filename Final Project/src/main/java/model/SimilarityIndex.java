@@ -0,0 +1,403 @@
+package model;
+
+import util.PerceptualHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * SimilarityIndex finds images that look alike by the Hamming distance between their perceptual
+ * hashes, using multi-index hashing. Each 64-bit hash is split into four 16-bit chunks and filed in
+ * one table per chunk position. If two hashes differ in at most r bits, at least one of their chunks
+ * differs in at most r / 4 bits, so a query only has to look up the buckets within that small
+ * distance of each of its own chunks and verify the candidates found there. For the radii that
+ * identify near-duplicates this touches a tiny fraction of the index, so queries take microseconds
+ * even on libraries of millions of images, where pairwise comparison would be hopeless. (A BK-tree
+ * was not used: on 64-bit hashes most distances cluster around 32, so its pruning rarely applies.)
+ * Grouping the whole library is another matter: it runs one query per image, which takes tens of
+ * seconds to minutes on a million images. A Grouping therefore performs it one image at a time, each
+ * query holding the index lock only briefly, so that it can run as a background batch with progress
+ * and cancellation while images keep being added.
+ * Images without a perceptual hash are not indexed.
+ * This class is thread-safe.
+ */
+public final class SimilarityIndex {
+
+    // The Hamming distance under which two images are usually resized or re-encoded copies of each other
+    public static final int DEFAULT_NEAR_DUPLICATE_DISTANCE = 10;
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = Long.SIZE / CHUNKS;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+
+    // tables[c][k] lists the entries whose chunk c equals k; bucketSizes[c][k] is the length in use
+    private final int[][][] tables = new int[CHUNKS][BUCKETS][];
+    private final int[][] bucketSizes = new int[CHUNKS][BUCKETS];
+
+    private final Set<ImageModel> indexed = new HashSet<>();
+    private long[] hashes = new long[16];
+    private ImageModel[] models = new ImageModel[16];
+    private int size;
+
+    // Every 16-bit value with at most r bits set, by r, computed on first use
+    private final int[][] masksByRadius = new int[CHUNK_BITS + 1][];
+
+    // Marks the entries already verified by the current query; stamps avoid clearing between queries
+    private int[] visited = new int[16];
+    private int queryStamp;
+
+    /**
+     * A match returned by findSimilar.
+     */
+    public static final class Match {
+        private final ImageModel model;
+        private final int distance;
+
+        private Match(ImageModel model, int distance) {
+            this.model = model;
+            this.distance = distance;
+        }
+
+        /**
+         * Retrieves the matching image.
+         *
+         * @return The image model.
+         */
+        public ImageModel getModel() {
+            return model;
+        }
+
+        /**
+         * Retrieves the Hamming distance between the perceptual hashes of the query and the match.
+         *
+         * @return The distance, between 0 and 64.
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * Adds an image to the index. Images without a perceptual hash, or already indexed, are ignored.
+     *
+     * @param model The image model.
+     * @return true if the image was indexed.
+     * @throws IllegalArgumentException if model is null.
+     */
+    public synchronized boolean add(ImageModel model) {
+        if (model == null) {
+            throw new IllegalArgumentException("Image model cannot be null.");
+        }
+        if (model.getPerceptualHash().isEmpty() || !indexed.add(model)) {
+            return false;
+        }
+        long hash = model.getPerceptualHash().getAsLong();
+
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            models = Arrays.copyOf(models, size * 2);
+            visited = Arrays.copyOf(visited, size * 2);
+        }
+        int entry = size++;
+        hashes[entry] = hash;
+        models[entry] = model;
+
+        for (int c = 0; c < CHUNKS; c++) {
+            int key = chunk(hash, c);
+            int[] bucket = tables[c][key];
+            int length = bucketSizes[c][key];
+            if (bucket == null) {
+                bucket = new int[2];
+            } else if (length == bucket.length) {
+                bucket = Arrays.copyOf(bucket, length * 2);
+            }
+            bucket[length] = entry;
+            tables[c][key] = bucket;
+            bucketSizes[c][key] = length + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the indexed images within a Hamming distance of an image, nearest first.
+     * The image itself is not included.
+     *
+     * @param model       The query image.
+     * @param maxDistance The largest distance to report, between 0 and 64.
+     * @return The matches ordered by distance, or an empty list if the image has no perceptual hash.
+     * @throws IllegalArgumentException if model is null or maxDistance is out of range.
+     */
+    public synchronized List<Match> findSimilar(ImageModel model, int maxDistance) {
+        if (model == null) {
+            throw new IllegalArgumentException("Image model cannot be null.");
+        }
+        validateDistance(maxDistance);
+        List<Match> matches = new ArrayList<>();
+        if (model.getPerceptualHash().isEmpty()) {
+            return matches;
+        }
+
+        long hash = model.getPerceptualHash().getAsLong();
+        for (int entry : search(hash, maxDistance)) {
+            if (!models[entry].equals(model)) {
+                matches.add(new Match(models[entry], PerceptualHash.distance(hash, hashes[entry])));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::getDistance));
+        return matches;
+    }
+
+    /**
+     * Partitions the indexed images into groups of near-duplicates. Two images belong to the same
+     * group when they are within the distance of each other, directly or through a chain of other
+     * images in the group. Images without any near-duplicate are not reported.
+     * This runs one query per indexed image on the calling thread; use startGrouping to spread the
+     * work over a batch that can report progress and be cancelled.
+     *
+     * @param maxDistance The largest distance between neighbouring images, between 0 and 64.
+     * @return The groups, largest first; each group holds at least two images.
+     * @throws IllegalArgumentException if maxDistance is out of range.
+     */
+    public List<List<ImageModel>> groupNearDuplicates(int maxDistance) {
+        Grouping grouping = startGrouping(maxDistance);
+        for (int entry = 0; entry < grouping.size(); entry++) {
+            grouping.link(entry);
+        }
+        return grouping.getGroups();
+    }
+
+    /**
+     * Starts grouping the images indexed so far into near-duplicates. Images added later are not
+     * part of the grouping. Each image is then linked to its neighbours by a separate call to
+     * Grouping.link, typically one batch item per image, and getGroups collects the result.
+     *
+     * @param maxDistance The largest distance between neighbouring images, between 0 and 64.
+     * @return The grouping, with no image linked yet.
+     * @throws IllegalArgumentException if maxDistance is out of range.
+     */
+    public synchronized Grouping startGrouping(int maxDistance) {
+        validateDistance(maxDistance);
+        return new Grouping(maxDistance, Arrays.copyOf(models, size));
+    }
+
+    /**
+     * Groups a snapshot of the index into near-duplicates, one image at a time. link may be called
+     * from several threads at once; each call queries the index under its lock and then merges the
+     * image's group with those of its neighbours under the grouping's own lock.
+     */
+    public final class Grouping {
+        private final int maxDistance;
+        private final ImageModel[] images;
+        // Union-find parent links over the entries of the snapshot
+        private final int[] parents;
+
+        private Grouping(int maxDistance, ImageModel[] images) {
+            this.maxDistance = maxDistance;
+            this.images = images;
+            this.parents = new int[images.length];
+            for (int entry = 0; entry < parents.length; entry++) {
+                parents[entry] = entry;
+            }
+        }
+
+        /**
+         * Retrieves the number of images being grouped.
+         *
+         * @return The number of images; entries range from 0 to this value, exclusive.
+         */
+        public int size() {
+            return images.length;
+        }
+
+        /**
+         * Retrieves the image of an entry.
+         *
+         * @param entry The entry.
+         * @return The image model.
+         * @throws IndexOutOfBoundsException if the entry is out of range.
+         */
+        public ImageModel getImage(int entry) {
+            return images[entry];
+        }
+
+        /**
+         * Joins the group of an entry with the groups of every image within range of it.
+         *
+         * @param entry The entry.
+         * @throws IndexOutOfBoundsException if the entry is out of range.
+         */
+        public void link(int entry) {
+            int[] neighbours;
+            synchronized (SimilarityIndex.this) {
+                neighbours = search(hashes[Objects.checkIndex(entry, images.length)], maxDistance);
+            }
+            synchronized (this) {
+                for (int neighbour : neighbours) {
+                    // Each pair is found from both sides; joining it once is enough. Entries added
+                    // after the snapshot are not part of the grouping.
+                    if (neighbour > entry && neighbour < parents.length) {
+                        union(parents, entry, neighbour);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Collects the groups formed by the entries linked so far. Images without any near-duplicate
+         * are not reported.
+         *
+         * @return The groups, largest first; each group holds at least two images.
+         */
+        public synchronized List<List<ImageModel>> getGroups() {
+            Map<Integer, List<ImageModel>> groups = new HashMap<>();
+            for (int entry = 0; entry < parents.length; entry++) {
+                groups.computeIfAbsent(find(parents, entry), key -> new ArrayList<>()).add(images[entry]);
+            }
+            List<List<ImageModel>> result = new ArrayList<>();
+            for (List<ImageModel> group : groups.values()) {
+                if (group.size() > 1) {
+                    result.add(group);
+                }
+            }
+            result.sort(Comparator.comparingInt((List<ImageModel> group) -> group.size()).reversed());
+            return result;
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed images.
+     *
+     * @return The number of images.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds every entry within a Hamming distance of a hash. Candidates are gathered from the
+     * buckets within maxDistance / CHUNKS of each chunk of the hash, then verified on the full hash.
+     *
+     * @param hash        The query hash.
+     * @param maxDistance The search radius.
+     * @return The matching entries, in no particular order.
+     */
+    private int[] search(long hash, int maxDistance) {
+        if (++queryStamp == 0) {
+            Arrays.fill(visited, 0);
+            queryStamp = 1;
+        }
+
+        int[] masks = masks(maxDistance / CHUNKS);
+        int[] found = new int[8];
+        int count = 0;
+        for (int c = 0; c < CHUNKS; c++) {
+            int key = chunk(hash, c);
+            for (int mask : masks) {
+                int[] bucket = tables[c][key ^ mask];
+                int length = bucketSizes[c][key ^ mask];
+                for (int i = 0; i < length; i++) {
+                    int entry = bucket[i];
+                    if (visited[entry] == queryStamp) {
+                        continue;
+                    }
+                    visited[entry] = queryStamp;
+                    if (PerceptualHash.distance(hash, hashes[entry]) <= maxDistance) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = entry;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Retrieves every chunk value with at most the given number of bits set, so that XOR-ing a chunk
+     * with each of them enumerates the buckets within that distance.
+     *
+     * @param radius The number of bits, between 0 and CHUNK_BITS.
+     * @return The masks.
+     */
+    private int[] masks(int radius) {
+        int[] masks = masksByRadius[radius];
+        if (masks == null) {
+            masks = new int[BUCKETS];
+            int count = 0;
+            for (int value = 0; value < BUCKETS; value++) {
+                if (Integer.bitCount(value) <= radius) {
+                    masks[count++] = value;
+                }
+            }
+            masks = Arrays.copyOf(masks, count);
+            masksByRadius[radius] = masks;
+        }
+        return masks;
+    }
+
+    /**
+     * Extracts one 16-bit chunk of a hash.
+     *
+     * @param hash  The hash.
+     * @param chunk The chunk position, between 0 and CHUNKS - 1.
+     * @return The chunk value.
+     */
+    private static int chunk(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & (BUCKETS - 1);
+    }
+
+    /**
+     * Validates a Hamming distance.
+     *
+     * @param maxDistance The distance.
+     * @throws IllegalArgumentException if the distance is outside [0, 64].
+     */
+    private static void validateDistance(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > Long.SIZE) {
+            throw new IllegalArgumentException("Distance must be between 0 and " + Long.SIZE + ".");
+        }
+    }
+
+    /**
+     * Finds the representative of an entry's group, compressing the path to it.
+     *
+     * @param parents The union-find parent links.
+     * @param entry   The entry.
+     * @return The representative entry.
+     */
+    private static int find(int[] parents, int entry) {
+        int root = entry;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (entry != root) {
+            int next = parents[entry];
+            parents[entry] = root;
+            entry = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merges the groups of two entries.
+     *
+     * @param parents The union-find parent links.
+     * @param first   The first entry.
+     * @param second  The second entry.
+     */
+    private static void union(int[] parents, int first, int second) {
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        if (firstRoot != secondRoot) {
+            parents[secondRoot] = firstRoot;
+        }
+    }
+}
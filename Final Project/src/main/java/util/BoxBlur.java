@@ -0,0 +1,262 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * BoxBlur blurs images with running sums, so the cost per pixel is the same for any radius.
+ * Each box pass is separable: a horizontal pass slides a window along every row, adding the pixel
+ * entering the window and subtracting the one leaving it, and a vertical pass does the same down
+ * strips of columns. Only the initial window of each row or column costs O(radius), which keeps
+ * radii of several thousand pixels practical.
+ * A Gaussian blur is approximated by three successive box passes whose widths are chosen to match
+ * the requested standard deviation.
+ * As with ConvolutionEngine, all four ARGB channels are blurred and pixels beyond the image edges
+ * are read according to an EdgeMode.
+ * This class is non-instantiable and provides static methods.
+ */
+public final class BoxBlur {
+
+    // Number of box passes used to approximate a Gaussian
+    private static final int GAUSSIAN_PASSES = 3;
+
+    // Private constructor to prevent instantiation
+    private BoxBlur() {
+        throw new UnsupportedOperationException("BoxBlur is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Applies a box blur averaging a (2 * radius + 1) square window around every pixel.
+     *
+     * @param src      Source BufferedImage. Must not be null.
+     * @param radius   The window radius in pixels. Must not be negative.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new TYPE_INT_ARGB image holding the result.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static BufferedImage box(BufferedImage src, int radius, EdgeMode edgeMode) {
+        return blur(src, new int[]{validateRadius(radius)}, edgeMode);
+    }
+
+    /**
+     * Applies an approximate Gaussian blur built from three box passes.
+     *
+     * @param src      Source BufferedImage. Must not be null.
+     * @param sigma    The standard deviation in pixels. Must be positive.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new TYPE_INT_ARGB image holding the result.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static BufferedImage gaussian(BufferedImage src, double sigma, EdgeMode edgeMode) {
+        return blur(src, gaussianRadii(sigma), edgeMode);
+    }
+
+    /**
+     * Validates a box radius.
+     *
+     * @param radius The radius.
+     * @return The radius.
+     * @throws IllegalArgumentException if the radius is negative.
+     */
+    static int validateRadius(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Blur radius cannot be negative.");
+        }
+        return radius;
+    }
+
+    /**
+     * Computes the radii of three box passes whose combined variance matches a Gaussian.
+     * Box widths are the two odd integers around the ideal width sqrt(12 * sigma^2 / n + 1), with
+     * the number of narrower passes chosen so that the variances add up to sigma^2.
+     *
+     * @param sigma The standard deviation in pixels. Must be positive.
+     * @return The radius of each pass.
+     * @throws IllegalArgumentException if sigma is not a positive finite number.
+     */
+    static int[] gaussianRadii(double sigma) {
+        if (!(sigma > 0) || Double.isInfinite(sigma)) {
+            throw new IllegalArgumentException("Blur sigma must be a positive number.");
+        }
+        int n = GAUSSIAN_PASSES;
+        double variance = sigma * sigma;
+        int lower = (int) Math.floor(Math.sqrt(12 * variance / n + 1));
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+        int narrowPasses = (int) Math.round((12 * variance - n * lower * lower - 4.0 * n * lower - 3 * n)
+                / (-4.0 * lower - 4));
+
+        int[] radii = new int[n];
+        for (int i = 0; i < n; i++) {
+            radii[i] = ((i < narrowPasses ? lower : upper) - 1) / 2;
+        }
+        return radii;
+    }
+
+    /**
+     * Applies successive box passes to an image.
+     *
+     * @param src      The source image. Must not be null.
+     * @param radii    The radius of each pass.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new TYPE_INT_ARGB image holding the result.
+     */
+    private static BufferedImage blur(BufferedImage src, int[] radii, EdgeMode edgeMode) {
+        if (src == null) {
+            throw new IllegalArgumentException("Input image cannot be null.");
+        }
+        BufferedImage output = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+        blur(src, radii, edgeMode, null, dst);
+        return output;
+    }
+
+    /**
+     * Applies successive box passes to an image, writing ARGB pixels into an array and applying a
+     * pixel operation to every result of the last pass.
+     *
+     * @param src      The source image.
+     * @param radii    The radius of each pass.
+     * @param edgeMode How pixels beyond the image edges are read.
+     * @param postOp   A pixel operation fused into the final write, or null.
+     * @param dst      The destination array of width * height ARGB pixels.
+     */
+    static void blur(BufferedImage src, int[] radii, EdgeMode edgeMode, FilterChain.PixelOp postOp, int[] dst) {
+        if (edgeMode == null) {
+            throw new IllegalArgumentException("Edge mode cannot be null.");
+        }
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        // Passes alternate between dst and a scratch buffer: rows into scratch, columns back into dst
+        PointProcessor.apply(src, dst, null);
+        int[] scratch = new int[dst.length];
+        int last = -1;
+        for (int i = 0; i < radii.length; i++) {
+            if (radii[i] > 0) {
+                last = i;
+            }
+        }
+        if (last < 0 && postOp != null) {
+            PointProcessor.runInBands(width, height, (y0, y1) -> postOp.applyAll(dst, y0 * width, y1 * width));
+        }
+        for (int i = 0; i <= last; i++) {
+            int radius = radii[i];
+            if (radius == 0) {
+                continue;
+            }
+            FilterChain.PixelOp op = i == last ? postOp : null;
+            PointProcessor.runInBands(width, height,
+                    (y0, y1) -> blurRows(dst, scratch, width, height, radius, edgeMode, y0, y1));
+            // Columns are split into strips that are processed row by row to stay cache friendly
+            PointProcessor.runInBands(height, width,
+                    (x0, x1) -> blurColumns(scratch, dst, width, height, radius, edgeMode, op, x0, x1));
+        }
+    }
+
+    /**
+     * Blurs the rows in [y0, y1) horizontally with a sliding window.
+     *
+     * @param src      The source pixels.
+     * @param dst      The destination pixels.
+     * @param width    The image width.
+     * @param height   The image height.
+     * @param radius   The window radius.
+     * @param edgeMode How pixels beyond the image edges are read.
+     * @param y0       The first row.
+     * @param y1       The row after the last.
+     */
+    private static void blurRows(int[] src, int[] dst, int width, int height, int radius, EdgeMode edgeMode,
+                                 int y0, int y1) {
+        double scale = 1.0 / (2 * radius + 1);
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            int sumA = 0;
+            int sumR = 0;
+            int sumG = 0;
+            int sumB = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int p = src[row + edgeMode.map(i, width)];
+                sumA += p >>> 24;
+                sumR += (p >> 16) & 0xff;
+                sumG += (p >> 8) & 0xff;
+                sumB += p & 0xff;
+            }
+            for (int x = 0; x < width; x++) {
+                dst[row + x] = average(sumA, sumR, sumG, sumB, scale);
+                int entering = src[row + edgeMode.map(x + radius + 1, width)];
+                int leaving = src[row + edgeMode.map(x - radius, width)];
+                sumA += (entering >>> 24) - (leaving >>> 24);
+                sumR += ((entering >> 16) & 0xff) - ((leaving >> 16) & 0xff);
+                sumG += ((entering >> 8) & 0xff) - ((leaving >> 8) & 0xff);
+                sumB += (entering & 0xff) - (leaving & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Blurs the columns in [x0, x1) vertically with a sliding window, advancing all columns of the
+     * strip one row at a time.
+     *
+     * @param src      The source pixels.
+     * @param dst      The destination pixels.
+     * @param width    The image width.
+     * @param height   The image height.
+     * @param radius   The window radius.
+     * @param edgeMode How pixels beyond the image edges are read.
+     * @param postOp   A pixel operation applied to every result, or null.
+     * @param x0       The first column.
+     * @param x1       The column after the last.
+     */
+    private static void blurColumns(int[] src, int[] dst, int width, int height, int radius, EdgeMode edgeMode,
+                                    FilterChain.PixelOp postOp, int x0, int x1) {
+        double scale = 1.0 / (2 * radius + 1);
+        int strip = x1 - x0;
+        int[] sumA = new int[strip];
+        int[] sumR = new int[strip];
+        int[] sumG = new int[strip];
+        int[] sumB = new int[strip];
+        for (int i = -radius; i <= radius; i++) {
+            int row = edgeMode.map(i, height) * width + x0;
+            for (int c = 0; c < strip; c++) {
+                int p = src[row + c];
+                sumA[c] += p >>> 24;
+                sumR[c] += (p >> 16) & 0xff;
+                sumG[c] += (p >> 8) & 0xff;
+                sumB[c] += p & 0xff;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int out = y * width + x0;
+            int entering = edgeMode.map(y + radius + 1, height) * width + x0;
+            int leaving = edgeMode.map(y - radius, height) * width + x0;
+            for (int c = 0; c < strip; c++) {
+                int argb = average(sumA[c], sumR[c], sumG[c], sumB[c], scale);
+                dst[out + c] = postOp != null ? postOp.apply(argb) : argb;
+                int in = src[entering + c];
+                int old = src[leaving + c];
+                sumA[c] += (in >>> 24) - (old >>> 24);
+                sumR[c] += ((in >> 16) & 0xff) - ((old >> 16) & 0xff);
+                sumG[c] += ((in >> 8) & 0xff) - ((old >> 8) & 0xff);
+                sumB[c] += (in & 0xff) - (old & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Packs the rounded window averages of the four channels into an ARGB pixel.
+     *
+     * @param sumA  The alpha sum.
+     * @param sumR  The red sum.
+     * @param sumG  The green sum.
+     * @param sumB  The blue sum.
+     * @param scale The reciprocal of the window size.
+     * @return The ARGB pixel.
+     */
+    private static int average(int sumA, int sumR, int sumG, int sumB, double scale) {
+        return (int) (sumA * scale + 0.5) << 24 | (int) (sumR * scale + 0.5) << 16
+                | (int) (sumG * scale + 0.5) << 8 | (int) (sumB * scale + 0.5);
+    }
+}
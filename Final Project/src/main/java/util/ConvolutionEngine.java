@@ -0,0 +1,511 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ConvolutionEngine is a pure-Java, tile-parallel replacement for java.awt.image.ConvolveOp.
+ * The output is divided into square tiles that are processed as independent tasks on a
+ * work-stealing ForkJoinPool. Each task loads its tile together with the surrounding halo required
+ * by the kernel into thread-local planes, so every pixel is fetched from the source once per tile
+ * and out-of-image reads are resolved by the requested EdgeMode instead of leaving an unprocessed
+ * border.
+ * As with ConvolveOp, the kernel is applied as a true convolution (flipped) around its center,
+ * all four ARGB channels are convolved, and results are truncated and clamped to [0, 255].
+ * Separable (rank-1) kernels such as box, Gaussian, or Sobel kernels are detected automatically and
+ * applied as a horizontal and a vertical 1D pass, costing O(kw + kh) instead of O(kw * kh) per pixel.
+ * Large kernels that are not separable are convolved in the frequency domain (see FftConvolution)
+ * when its cost model estimates that to be cheaper for the kernel and image size.
+ * This class is non-instantiable and provides static methods.
+ */
+public final class ConvolutionEngine {
+
+    // Edge length of an output tile in pixels
+    static final int TILE_SIZE = 64;
+
+    // Maximum summed deviation |k - col * row| over all taps for a kernel to be treated as separable.
+    // Bounds the difference from the full 2D result to 255 / 1024, a quarter of a channel level.
+    private static final double SEPARABLE_TOLERANCE = 1.0 / 1024;
+
+    // Inner loops, vectorized when the Vector API is available
+    private static final PixelKernels KERNELS = PixelKernels.get();
+
+    // Per-thread working memory reused across tiles
+    private static final ThreadLocal<TileScratch> SCRATCH = ThreadLocal.withInitial(TileScratch::new);
+
+    // Private constructor to prevent instantiation
+    private ConvolutionEngine() {
+        throw new UnsupportedOperationException("ConvolutionEngine is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Convolves an image on the common ForkJoinPool.
+     *
+     * @param src          Source BufferedImage. Must not be null.
+     * @param kernel       The kernel values in row-major order.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param edgeMode     How pixels outside the image are read.
+     * @return A new TYPE_INT_ARGB image holding the result.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static BufferedImage convolve(BufferedImage src, float[] kernel, int kernelWidth, int kernelHeight,
+                                         EdgeMode edgeMode) {
+        return convolve(src, kernel, kernelWidth, kernelHeight, edgeMode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Convolves an image on the given ForkJoinPool.
+     *
+     * @param src          Source BufferedImage. Must not be null.
+     * @param kernel       The kernel values in row-major order.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param edgeMode     How pixels outside the image are read.
+     * @param pool         The pool running the tile tasks.
+     * @return A new TYPE_INT_ARGB image holding the result.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static BufferedImage convolve(BufferedImage src, float[] kernel, int kernelWidth, int kernelHeight,
+                                         EdgeMode edgeMode, ForkJoinPool pool) {
+        if (src == null) {
+            throw new IllegalArgumentException("Input image cannot be null.");
+        }
+        BufferedImage output = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+        convolve(src, kernel, kernelWidth, kernelHeight, edgeMode, null, dst, pool);
+        return output;
+    }
+
+    /**
+     * Convolves an image into an ARGB array, optionally applying a pixel operation to every result.
+     *
+     * @param src          The source image.
+     * @param kernel       The kernel values in row-major order.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param edgeMode     How pixels outside the image are read.
+     * @param postOp       A pixel operation fused into the output write, or null.
+     * @param dst          The destination array of width * height ARGB pixels.
+     * @param pool         The pool running the tile tasks.
+     */
+    static void convolve(BufferedImage src, float[] kernel, int kernelWidth, int kernelHeight, EdgeMode edgeMode,
+                         FilterChain.PixelOp postOp, int[] dst, ForkJoinPool pool) {
+        validateKernel(kernel, kernelWidth, kernelHeight);
+        if (edgeMode == null || pool == null) {
+            throw new IllegalArgumentException("Edge mode and pool cannot be null.");
+        }
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        PointProcessor.RegionReader reader = PointProcessor.readerFor(src);
+        float[] flipped = flip(kernel);
+        float[][] factors = separate(flipped, kernelWidth, kernelHeight);
+        if (factors == null && FftConvolution.isFaster(kernelWidth, kernelHeight, width, height)) {
+            FftConvolution.convolve(reader, width, height, kernel, kernelWidth, kernelHeight, edgeMode, postOp,
+                    dst, pool);
+            return;
+        }
+
+        Job job = new Job(reader, width, height, flipped, factors, kernelWidth, kernelHeight, edgeMode, postOp, dst);
+        int tiles = job.tilesX * job.tilesY;
+        if (tiles == 1 || pool.getParallelism() <= 1) {
+            for (int tile = 0; tile < tiles; tile++) {
+                job.processTile(tile);
+            }
+        } else {
+            pool.invoke(new TileAction(job, 0, tiles));
+        }
+    }
+
+    /**
+     * Validates kernel dimensions and values.
+     *
+     * @param kernel       The kernel.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @throws IllegalArgumentException if the kernel is invalid.
+     */
+    static void validateKernel(float[] kernel, int kernelWidth, int kernelHeight) {
+        if (kernel == null || kernel.length == 0) {
+            throw new IllegalArgumentException("Kernel cannot be null or empty.");
+        }
+        if (kernelWidth <= 0 || kernelHeight <= 0 || kernelWidth * kernelHeight != kernel.length) {
+            throw new IllegalArgumentException("Kernel dimensions do not match the number of kernel values.");
+        }
+    }
+
+    /**
+     * Factors a kernel into a column and a row vector whose outer product reproduces it within
+     * SEPARABLE_TOLERANCE. The largest-magnitude tap is used as the pivot: its column and its row,
+     * scaled by the pivot, form the factors, and every other tap is then checked against their product.
+     *
+     * @param kernel       The kernel values in row-major order.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @return The row vector (kernelWidth values) and the column vector (kernelHeight values),
+     * or null if the kernel is not separable or is already one-dimensional.
+     */
+    static float[][] separate(float[] kernel, int kernelWidth, int kernelHeight) {
+        if (kernelWidth == 1 || kernelHeight == 1) {
+            return null;
+        }
+        int pivot = 0;
+        for (int i = 1; i < kernel.length; i++) {
+            if (Math.abs(kernel[i]) > Math.abs(kernel[pivot])) {
+                pivot = i;
+            }
+        }
+        double pivotValue = kernel[pivot];
+        if (pivotValue == 0) {
+            return null; // All-zero kernel; the 2D path handles it trivially
+        }
+        int pivotRow = pivot / kernelWidth;
+        int pivotCol = pivot % kernelWidth;
+
+        double[] row = new double[kernelWidth];
+        double[] col = new double[kernelHeight];
+        for (int u = 0; u < kernelWidth; u++) {
+            row[u] = kernel[pivotRow * kernelWidth + u] / pivotValue;
+        }
+        for (int v = 0; v < kernelHeight; v++) {
+            col[v] = kernel[v * kernelWidth + pivotCol];
+        }
+
+        double residual = 0;
+        for (int v = 0; v < kernelHeight; v++) {
+            for (int u = 0; u < kernelWidth; u++) {
+                residual += Math.abs(kernel[v * kernelWidth + u] - col[v] * row[u]);
+            }
+        }
+        if (residual > SEPARABLE_TOLERANCE) {
+            return null;
+        }
+
+        float[] rowKernel = new float[kernelWidth];
+        float[] colKernel = new float[kernelHeight];
+        for (int u = 0; u < kernelWidth; u++) {
+            rowKernel[u] = (float) row[u];
+        }
+        for (int v = 0; v < kernelHeight; v++) {
+            colKernel[v] = (float) col[v];
+        }
+        return new float[][]{rowKernel, colKernel};
+    }
+
+    /**
+     * Reverses a kernel so that it can be applied by correlation.
+     *
+     * @param kernel The kernel.
+     * @return The reversed kernel.
+     */
+    private static float[] flip(float[] kernel) {
+        float[] flipped = new float[kernel.length];
+        for (int i = 0; i < kernel.length; i++) {
+            flipped[kernel.length - 1 - i] = kernel[i];
+        }
+        return flipped;
+    }
+
+    /**
+     * Clamps a convolved channel value to [0, 255], truncating the fraction as ConvolveOp does.
+     *
+     * @param value The channel value.
+     * @return The clamped channel.
+     */
+    static int clampChannel(float value) {
+        int channel = (int) value;
+        return channel < 0 ? 0 : Math.min(channel, 255);
+    }
+
+    /**
+     * Loads a buffer of ARGB pixels whose top-left corner lies at (bx, by) in image coordinates.
+     * The part inside the image is read as one rectangle; the rest is filled according to the edge mode.
+     *
+     * @param reader   The source reader.
+     * @param width    The image width.
+     * @param height   The image height.
+     * @param edgeMode How pixels outside the image are read.
+     * @param bx       The buffer origin x, possibly negative.
+     * @param by       The buffer origin y, possibly negative.
+     * @param bw       The buffer width.
+     * @param bh       The buffer height.
+     * @param buf      The destination buffer of at least bw * bh pixels.
+     */
+    static void loadWithHalo(PointProcessor.RegionReader reader, int width, int height, EdgeMode edgeMode,
+                             int bx, int by, int bw, int bh, int[] buf) {
+        int ix0 = Math.max(bx, 0);
+        int iy0 = Math.max(by, 0);
+        int ix1 = Math.min(bx + bw, width);
+        int iy1 = Math.min(by + bh, height);
+        boolean hasInterior = ix0 < ix1 && iy0 < iy1;
+        if (hasInterior) {
+            reader.read(ix0, iy0, ix1 - ix0, iy1 - iy0, buf, (iy0 - by) * bw + (ix0 - bx), bw);
+        }
+        if (hasInterior && ix0 - bx == 0 && iy0 - by == 0 && ix1 - bx == bw && iy1 - by == bh) {
+            return; // The buffer lies entirely inside the image
+        }
+
+        // Complete the rows that intersect the image with their out-of-image columns
+        for (int row = 0; row < bh; row++) {
+            int sy = by + row;
+            if (!hasInterior || sy < iy0 || sy >= iy1) {
+                continue;
+            }
+            for (int col = 0; col < bw; col++) {
+                int sx = bx + col;
+                if (sx >= ix0 && sx < ix1) {
+                    continue;
+                }
+                int mx = edgeMode.map(sx, width);
+                int index = row * bw + col;
+                if (mx >= ix0 && mx < ix1) {
+                    buf[index] = buf[row * bw + (mx - bx)];
+                } else {
+                    reader.read(mx, sy, 1, 1, buf, index, 1);
+                }
+            }
+        }
+
+        // Rows outside the image repeat a mapped row, copied from the buffer when it is already loaded
+        for (int row = 0; row < bh; row++) {
+            int sy = by + row;
+            if (hasInterior && sy >= iy0 && sy < iy1) {
+                continue;
+            }
+            int my = edgeMode.map(sy, height);
+            if (hasInterior && my >= iy0 && my < iy1) {
+                System.arraycopy(buf, (my - by) * bw, buf, row * bw, bw);
+                continue;
+            }
+            for (int col = 0; col < bw; col++) {
+                reader.read(edgeMode.map(bx + col, width), my, 1, 1, buf, row * bw + col, 1);
+            }
+        }
+    }
+
+    /**
+     * Shared, read-only state of a convolution.
+     */
+    private static final class Job {
+        private final PointProcessor.RegionReader reader;
+        private final int width;
+        private final int height;
+        private final float[] kernel;
+        private final int kernelWidth;
+        private final int kernelHeight;
+        private final EdgeMode edgeMode;
+        private final FilterChain.PixelOp postOp;
+        private final int[] dst;
+        // Factors of a separable kernel, or null to run the full 2D kernel
+        private final float[] rowKernel;
+        private final float[] colKernel;
+        private final int tilesX;
+        private final int tilesY;
+        private final int left;
+        private final int top;
+
+        Job(PointProcessor.RegionReader reader, int width, int height, float[] kernel, float[][] factors,
+            int kernelWidth, int kernelHeight, EdgeMode edgeMode, FilterChain.PixelOp postOp, int[] dst) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.kernel = kernel;
+            this.kernelWidth = kernelWidth;
+            this.kernelHeight = kernelHeight;
+            this.edgeMode = edgeMode;
+            this.postOp = postOp;
+            this.dst = dst;
+            this.rowKernel = factors != null ? factors[0] : null;
+            this.colKernel = factors != null ? factors[1] : null;
+            this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+            this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+            // Halo extents before the tile; the kernel origin is its center as in java.awt.image.Kernel
+            this.left = kernelWidth - 1 - (kernelWidth - 1) / 2;
+            this.top = kernelHeight - 1 - (kernelHeight - 1) / 2;
+        }
+
+        void processTile(int tile) {
+            int x0 = (tile % tilesX) * TILE_SIZE;
+            int y0 = (tile / tilesX) * TILE_SIZE;
+            int tileWidth = Math.min(TILE_SIZE, width - x0);
+            int tileHeight = Math.min(TILE_SIZE, height - y0);
+            int bw = tileWidth + kernelWidth - 1;
+            int bh = tileHeight + kernelHeight - 1;
+
+            TileScratch scratch = SCRATCH.get();
+            scratch.ensureCapacity(bw * bh, tileWidth, rowKernel != null ? tileWidth * bh : 0);
+            loadWithHalo(reader, width, height, edgeMode, x0 - left, y0 - top, bw, bh, scratch.pixels);
+            KERNELS.unpack(scratch.pixels, scratch.planes, bw * bh);
+
+            if (rowKernel != null) {
+                convolveSeparable(scratch, x0, y0, tileWidth, tileHeight, bw, bh);
+            } else {
+                convolveFull(scratch, x0, y0, tileWidth, tileHeight, bw);
+            }
+        }
+
+        /**
+         * Applies the full 2D kernel to an unpacked tile.
+         *
+         * @param scratch    The tile buffers.
+         * @param x0         The tile origin x.
+         * @param y0         The tile origin y.
+         * @param tileWidth  The tile width.
+         * @param tileHeight The tile height.
+         * @param bw         The width of the tile plus halo.
+         */
+        private void convolveFull(TileScratch scratch, int x0, int y0, int tileWidth, int tileHeight, int bw) {
+            float[][] planes = scratch.planes;
+            float[][] acc = scratch.acc;
+
+            for (int y = 0; y < tileHeight; y++) {
+                clear(acc, tileWidth);
+
+                // Accumulate whole output rows per kernel tap so the inner loop is a simple streaming multiply-add
+                for (int v = 0; v < kernelHeight; v++) {
+                    int rowBase = (y + v) * bw;
+                    for (int u = 0; u < kernelWidth; u++) {
+                        float weight = kernel[v * kernelWidth + u];
+                        if (weight == 0f) {
+                            continue;
+                        }
+                        KERNELS.multiplyAdd(acc, 0, planes, rowBase + u, weight, tileWidth);
+                    }
+                }
+
+                writeRow(acc, (y0 + y) * width + x0, tileWidth);
+            }
+        }
+
+        /**
+         * Applies a separable kernel to an unpacked tile: the row kernel over every row of the tile and
+         * its vertical halo into intermediate planes, then the column kernel down those planes.
+         * Intermediate values are kept in floating point, so the result matches the 2D kernel.
+         *
+         * @param scratch    The tile buffers.
+         * @param x0         The tile origin x.
+         * @param y0         The tile origin y.
+         * @param tileWidth  The tile width.
+         * @param tileHeight The tile height.
+         * @param bw         The width of the tile plus halo.
+         * @param bh         The height of the tile plus halo.
+         */
+        private void convolveSeparable(TileScratch scratch, int x0, int y0, int tileWidth, int tileHeight,
+                                       int bw, int bh) {
+            float[][] planes = scratch.planes;
+            float[][] pass = scratch.pass;
+            float[][] acc = scratch.acc;
+
+            // Horizontal pass: bh rows of tileWidth outputs
+            clear(pass, tileWidth * bh);
+            for (int row = 0; row < bh; row++) {
+                for (int u = 0; u < kernelWidth; u++) {
+                    float weight = rowKernel[u];
+                    if (weight == 0f) {
+                        continue;
+                    }
+                    KERNELS.multiplyAdd(pass, row * tileWidth, planes, row * bw + u, weight, tileWidth);
+                }
+            }
+
+            // Vertical pass: one output row per tile row
+            for (int y = 0; y < tileHeight; y++) {
+                clear(acc, tileWidth);
+                for (int v = 0; v < kernelHeight; v++) {
+                    float weight = colKernel[v];
+                    if (weight == 0f) {
+                        continue;
+                    }
+                    KERNELS.multiplyAdd(acc, 0, pass, (y + v) * tileWidth, weight, tileWidth);
+                }
+                writeRow(acc, (y0 + y) * width + x0, tileWidth);
+            }
+        }
+
+        /**
+         * Packs one row of accumulated channels into the destination, applying the post operation.
+         *
+         * @param acc    The accumulator planes.
+         * @param out    The destination index of the first pixel.
+         * @param length The number of pixels.
+         */
+        private void writeRow(float[][] acc, int out, int length) {
+            KERNELS.pack(acc, dst, out, length);
+            if (postOp != null) {
+                postOp.applyAll(dst, out, out + length);
+            }
+        }
+
+        /**
+         * Zeroes the first values of every channel plane.
+         *
+         * @param planes The channel planes.
+         * @param length The number of values to clear.
+         */
+        private static void clear(float[][] planes, int length) {
+            for (float[] plane : planes) {
+                Arrays.fill(plane, 0, length, 0f);
+            }
+        }
+    }
+
+    /**
+     * Splits a range of tiles into work-stealing subtasks.
+     */
+    private static final class TileAction extends RecursiveAction {
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        TileAction(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                job.processTile(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileAction(job, from, mid), new TileAction(job, mid, to));
+        }
+    }
+
+    /**
+     * Per-thread buffers for a tile and its halo, grown on demand. Channel planes are ordered
+     * alpha, red, green, blue.
+     */
+    private static final class TileScratch {
+        private int[] pixels = new int[0];
+        // The unpacked tile with its halo
+        private final float[][] planes = new float[4][0];
+        // One output row being accumulated
+        private final float[][] acc = new float[4][0];
+        // The horizontal pass of a separable kernel
+        private final float[][] pass = new float[4][0];
+
+        void ensureCapacity(int bufferSize, int rowSize, int passSize) {
+            if (pixels.length < bufferSize) {
+                pixels = new int[bufferSize];
+            }
+            grow(planes, bufferSize);
+            grow(acc, rowSize);
+            grow(pass, passSize);
+        }
+
+        private static void grow(float[][] channels, int size) {
+            if (channels[0].length < size) {
+                for (int c = 0; c < channels.length; c++) {
+                    channels[c] = new float[size];
+                }
+            }
+        }
+    }
+}
@@ -9,11 +9,20 @@ import java.util.Optional;
 
 /**
  * CustomFilterDialog allows users to input custom convolution kernels for image filtering.
+ * Kernels up to MAX_GRID_KERNEL_SIZE are entered in a grid of fields; larger kernels, up to
+ * MAX_KERNEL_SIZE, are typed or pasted into a text area as numbers separated by spaces, commas
+ * or line breaks.
  */
 public class CustomFilterDialog extends Dialog<float[]> {
 
     private static final int DEFAULT_KERNEL_SIZE = 3;
 
+    // Largest kernel edge accepted; large kernels are convolved in the frequency domain
+    private static final int MAX_KERNEL_SIZE = 101;
+
+    // Largest kernel edge entered through a grid of fields
+    private static final int MAX_GRID_KERNEL_SIZE = 10;
+
     public CustomFilterDialog() {
         setTitle("Custom Filter");
         setHeaderText("Enter Custom Convolution Kernel");
@@ -41,31 +50,26 @@ public class CustomFilterDialog extends Dialog<float[]> {
         kernelGrid.setVgap(5);
         kernelGrid.setPadding(new Insets(10, 0, 0, 0));
 
+        // Text area for kernels too large for a grid of fields
+        TextArea kernelTextArea = new TextArea();
+        kernelTextArea.setPromptText("Enter size x size values separated by spaces, commas or new lines");
+        kernelTextArea.setPrefColumnCount(40);
+        kernelTextArea.setPrefRowCount(12);
+
         grid.add(new Label("Kernel Values:"), 0, 1);
         grid.add(kernelGrid, 1, 1);
 
         // Listener to update kernel fields based on size input
         sizeField.textProperty().addListener((observable, oldValue, newValue) -> {
-            kernelGrid.getChildren().clear();
-            try {
-                int size = Integer.parseInt(newValue);
-                if (size <= 0 || size > 10) { // Arbitrary limits to prevent excessive input
-                    return;
-                }
-                for (int row = 0; row < size; row++) {
-                    for (int col = 0; col < size; col++) {
-                        TextField tf = new TextField("0");
-                        tf.setPrefWidth(50);
-                        kernelGrid.add(tf, col, row);
-                    }
-                }
-            } catch (NumberFormatException e) {
-                // Invalid size input; do nothing
+            updateKernelInput(newValue, grid, kernelGrid, kernelTextArea);
+            // Grow or shrink the dialog window to fit the new input
+            if (getDialogPane().getScene() != null && getDialogPane().getScene().getWindow() != null) {
+                getDialogPane().getScene().getWindow().sizeToScene();
             }
         });
 
-        // Trigger initial kernel fields
-        sizeField.setText(String.valueOf(DEFAULT_KERNEL_SIZE));
+        // Create the initial kernel fields
+        updateKernelInput(sizeField.getText(), grid, kernelGrid, kernelTextArea);
 
         getDialogPane().setContent(grid);
 
@@ -73,7 +77,13 @@ public class CustomFilterDialog extends Dialog<float[]> {
         setResultConverter(dialogButton -> {
             if (dialogButton == applyButtonType) {
                 try {
-                    int size = Integer.parseInt(sizeField.getText());
+                    int size = Integer.parseInt(sizeField.getText().trim());
+                    if (size <= 0 || size > MAX_KERNEL_SIZE) {
+                        throw new IllegalArgumentException("Kernel size out of range: " + size);
+                    }
+                    if (size > MAX_GRID_KERNEL_SIZE) {
+                        return parseKernel(kernelTextArea.getText(), size);
+                    }
                     float[] kernel = new float[size * size];
                     for (int row = 0; row < size; row++) {
                         for (int col = 0; col < size; col++) {
@@ -84,7 +94,8 @@ public class CustomFilterDialog extends Dialog<float[]> {
                     return kernel;
                 } catch (Exception e) {
                     // Show error alert for invalid input
-                    Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid kernel values. Please ensure all fields are filled with valid numbers.", ButtonType.OK);
+                    Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid kernel. The size must be between 1 and "
+                            + MAX_KERNEL_SIZE + " and all size x size values must be valid numbers.", ButtonType.OK);
                     alert.setHeaderText(null);
                     alert.showAndWait();
                 }
@@ -92,4 +103,58 @@ public class CustomFilterDialog extends Dialog<float[]> {
             return null;
         });
     }
+
+    /**
+     * Shows the input matching a kernel size: a grid of fields for small kernels, or the text area
+     * for large ones. Invalid sizes clear the input.
+     *
+     * @param sizeText       The kernel size as entered.
+     * @param grid           The dialog layout.
+     * @param kernelGrid     The grid of kernel fields.
+     * @param kernelTextArea The text area for large kernels.
+     */
+    private static void updateKernelInput(String sizeText, GridPane grid, GridPane kernelGrid, TextArea kernelTextArea) {
+        kernelGrid.getChildren().clear();
+        grid.getChildren().remove(kernelTextArea);
+        try {
+            int size = Integer.parseInt(sizeText.trim());
+            if (size <= 0 || size > MAX_KERNEL_SIZE) {
+                return;
+            }
+            if (size > MAX_GRID_KERNEL_SIZE) {
+                grid.add(kernelTextArea, 1, 2);
+                return;
+            }
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    TextField tf = new TextField("0");
+                    tf.setPrefWidth(50);
+                    kernelGrid.add(tf, col, row);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Invalid size input; do nothing
+        }
+    }
+
+    /**
+     * Parses the values of a large kernel from text.
+     *
+     * @param text The values separated by whitespace or commas, in row-major order.
+     * @param size The kernel size.
+     * @return The kernel values.
+     * @throws IllegalArgumentException if the number of values is not size * size or a value is invalid.
+     */
+    static float[] parseKernel(String text, int size) {
+        String[] tokens = text.trim().split("[\\s,;]+");
+        if (tokens.length != size * size || tokens[0].isEmpty()) {
+            throw new IllegalArgumentException("Expected " + size * size + " kernel values but found "
+                    + (tokens[0].isEmpty() ? 0 : tokens.length) + ".");
+        }
+        float[] kernel = new float[size * size];
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] = Float.parseFloat(tokens[i]);
+        }
+        return kernel;
+    }
 }
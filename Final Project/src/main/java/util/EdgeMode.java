@@ -0,0 +1,46 @@
+package util;
+
+/**
+ * EdgeMode defines how convolution reads pixels that lie outside the image.
+ */
+public enum EdgeMode {
+    /**
+     * Repeats the nearest edge pixel (aaa|abcd|ddd).
+     */
+    CLAMP,
+
+    /**
+     * Mirrors the image at its edges, repeating the edge pixel (cba|abcd|dcb).
+     */
+    REFLECT,
+
+    /**
+     * Tiles the image periodically (bcd|abcd|abc).
+     */
+    WRAP;
+
+    /**
+     * Maps a coordinate that may lie outside [0, length) to a coordinate inside it.
+     *
+     * @param index  The coordinate.
+     * @param length The image extent along the axis. Must be positive.
+     * @return The coordinate of the pixel to read.
+     */
+    public int map(int index, int length) {
+        if (index >= 0 && index < length) {
+            return index;
+        }
+        switch (this) {
+            case CLAMP:
+                return index < 0 ? 0 : length - 1;
+            case REFLECT:
+                int period = 2 * length;
+                int folded = Math.floorMod(index, period);
+                return folded < length ? folded : period - 1 - folded;
+            case WRAP:
+                return Math.floorMod(index, length);
+            default:
+                throw new IllegalStateException("Unknown edge mode: " + this);
+        }
+    }
+}
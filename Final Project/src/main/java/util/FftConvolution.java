@@ -0,0 +1,432 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * FftConvolution convolves images with large kernels in the frequency domain using overlap-save.
+ * The output is divided into tiles; each tile is loaded together with its kernel halo into an
+ * N x N block (N a power of two), transformed with a 2D FFT, multiplied by the transform of the
+ * kernel and transformed back, and the part of the result that is free of circular wrap-around is
+ * written out. The four ARGB channels are transformed in two complex FFTs by packing one channel
+ * into the real part and another into the imaginary part, which is exact because the kernel is real.
+ * The cost per output pixel grows with log(N) instead of with the number of kernel taps, so a
+ * cost model (see isFaster) decides when this path beats direct convolution.
+ * This class is non-instantiable and provides static methods.
+ */
+final class FftConvolution {
+
+    // Smallest and largest FFT block edge considered by the cost model
+    private static final int MIN_BLOCK_SIZE = 32;
+    private static final int MAX_BLOCK_SIZE = 1024;
+
+    // Relative costs, calibrated so that the FFT path takes over from direct convolution at about
+    // 15x15 on multi-megapixel images
+
+    // Cost of one tap of direct convolution for one pixel (all four channels)
+    private static final double DIRECT_TAP_COST = 1.0;
+
+    // Cost of one radix-2 butterfly on complex doubles
+    private static final double BUTTERFLY_COST = 4.8;
+
+    // Cost per block pixel of loading, unpacking, multiplying spectra and writing results
+    private static final double BLOCK_PIXEL_COST = 15.0;
+
+    // Added before truncation so that results the direct path computes as exact integers are not
+    // truncated one level low because of floating-point round-off in the transforms
+    private static final double ROUND_OFF = 1e-4;
+
+    // Private constructor to prevent instantiation
+    private FftConvolution() {
+        throw new UnsupportedOperationException("FftConvolution is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Estimates whether the FFT path is faster than direct convolution of a non-separable kernel.
+     *
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param width        The image width.
+     * @param height       The image height.
+     * @return true if the FFT path is estimated to be cheaper.
+     */
+    static boolean isFaster(int kernelWidth, int kernelHeight, int width, int height) {
+        double direct = DIRECT_TAP_COST * kernelWidth * kernelHeight * (double) width * height;
+        int blockSize = chooseBlockSize(kernelWidth, kernelHeight, width, height);
+        return blockSize > 0 && estimateCost(blockSize, kernelWidth, kernelHeight, width, height) < direct;
+    }
+
+    /**
+     * Chooses the FFT block edge with the lowest estimated cost for an image.
+     *
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param width        The image width.
+     * @param height       The image height.
+     * @return The block edge, or 0 if the kernel is too large for any block.
+     */
+    static int chooseBlockSize(int kernelWidth, int kernelHeight, int width, int height) {
+        int best = 0;
+        double bestCost = Double.MAX_VALUE;
+        for (int n = MIN_BLOCK_SIZE; n <= MAX_BLOCK_SIZE; n <<= 1) {
+            if (n < kernelWidth || n < kernelHeight) {
+                continue;
+            }
+            double cost = estimateCost(n, kernelWidth, kernelHeight, width, height);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = n;
+            }
+            // Larger blocks only add padding once a single block covers the image
+            if (n - kernelWidth + 1 >= width && n - kernelHeight + 1 >= height) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Estimates the cost of convolving an image with blocks of the given edge, in the same units as
+     * DIRECT_TAP_COST.
+     *
+     * @param n            The block edge.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param width        The image width.
+     * @param height       The image height.
+     * @return The estimated cost.
+     */
+    private static double estimateCost(int n, int kernelWidth, int kernelHeight, int width, int height) {
+        int tileWidth = Math.min(n - kernelWidth + 1, width);
+        int tileHeight = Math.min(n - kernelHeight + 1, height);
+        long tiles = (long) ((width + tileWidth - 1) / tileWidth) * ((height + tileHeight - 1) / tileHeight);
+        int bh = tileHeight + kernelHeight - 1;
+        // Two packed transforms each way: forward rows of the loaded block, all columns both ways,
+        // and inverse rows of the output tile only
+        double butterflies = 2.0 * (bh + n + n + tileHeight) * (n / 2.0) * log2(n);
+        return tiles * (BUTTERFLY_COST * butterflies + BLOCK_PIXEL_COST * n * n);
+    }
+
+    /**
+     * Convolves an image into an ARGB array in the frequency domain. The kernel is applied as a true
+     * convolution around its center, exactly as by the direct path of ConvolutionEngine.
+     *
+     * @param reader       The source reader.
+     * @param width        The image width.
+     * @param height       The image height.
+     * @param kernel       The kernel values in row-major order.
+     * @param kernelWidth  The kernel width.
+     * @param kernelHeight The kernel height.
+     * @param edgeMode     How pixels outside the image are read.
+     * @param postOp       A pixel operation fused into the output write, or null.
+     * @param dst          The destination array of width * height ARGB pixels.
+     * @param pool         The pool running the tile tasks.
+     */
+    static void convolve(PointProcessor.RegionReader reader, int width, int height, float[] kernel,
+                         int kernelWidth, int kernelHeight, EdgeMode edgeMode, FilterChain.PixelOp postOp,
+                         int[] dst, ForkJoinPool pool) {
+        int n = chooseBlockSize(kernelWidth, kernelHeight, width, height);
+        if (n == 0) {
+            throw new IllegalArgumentException("Kernel is too large for FFT convolution.");
+        }
+        Job job = new Job(reader, width, height, kernel, kernelWidth, kernelHeight, edgeMode, postOp, dst, n);
+        int tiles = job.tilesX * job.tilesY;
+        if (tiles == 1 || pool.getParallelism() <= 1) {
+            for (int tile = 0; tile < tiles; tile++) {
+                job.processTile(tile);
+            }
+        } else {
+            pool.invoke(new TileAction(job, 0, tiles));
+        }
+    }
+
+    /**
+     * Computes log2 of a power of two.
+     *
+     * @param n The power of two.
+     * @return Its base-2 logarithm.
+     */
+    private static int log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    /**
+     * Shared, read-only state of a convolution, including the kernel spectrum.
+     */
+    private static final class Job {
+        private final PointProcessor.RegionReader reader;
+        private final int width;
+        private final int height;
+        private final int kernelWidth;
+        private final int kernelHeight;
+        private final EdgeMode edgeMode;
+        private final FilterChain.PixelOp postOp;
+        private final int[] dst;
+        private final Fft fft;
+        private final int n;
+        private final int tileWidth;
+        private final int tileHeight;
+        private final int tilesX;
+        private final int tilesY;
+        private final int left;
+        private final int top;
+        private final double[] kernelRe;
+        private final double[] kernelIm;
+        // Buffers of finished tiles, reused by the next tiles and released with the job
+        private final Queue<BlockScratch> scratches = new ConcurrentLinkedQueue<>();
+
+        Job(PointProcessor.RegionReader reader, int width, int height, float[] kernel, int kernelWidth,
+            int kernelHeight, EdgeMode edgeMode, FilterChain.PixelOp postOp, int[] dst, int n) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.kernelWidth = kernelWidth;
+            this.kernelHeight = kernelHeight;
+            this.edgeMode = edgeMode;
+            this.postOp = postOp;
+            this.dst = dst;
+            this.fft = new Fft(n);
+            this.n = n;
+            this.tileWidth = Math.min(n - kernelWidth + 1, width);
+            this.tileHeight = Math.min(n - kernelHeight + 1, height);
+            this.tilesX = (width + tileWidth - 1) / tileWidth;
+            this.tilesY = (height + tileHeight - 1) / tileHeight;
+            // Halo extents before the tile, matching ConvolutionEngine
+            this.left = kernelWidth - 1 - (kernelWidth - 1) / 2;
+            this.top = kernelHeight - 1 - (kernelHeight - 1) / 2;
+
+            // The block holds the tile with its halo, so output (x, y) = sum of k'[v][u] * block[y + v][x + u]
+            // with k' the flipped kernel; as a circular convolution that correlation uses
+            // g[-v mod n][-u mod n] = k'[v][u] = kernel[kh - 1 - v][kw - 1 - u]
+            this.kernelRe = new double[n * n];
+            this.kernelIm = new double[n * n];
+            for (int v = 0; v < kernelHeight; v++) {
+                for (int u = 0; u < kernelWidth; u++) {
+                    int row = (n - v) % n;
+                    int col = (n - u) % n;
+                    kernelRe[row * n + col] = kernel[(kernelHeight - 1 - v) * kernelWidth + (kernelWidth - 1 - u)];
+                }
+            }
+            fft.transform2d(kernelRe, kernelIm, n, n, false);
+        }
+
+        void processTile(int tile) {
+            int x0 = (tile % tilesX) * tileWidth;
+            int y0 = (tile / tilesX) * tileHeight;
+            int outWidth = Math.min(tileWidth, width - x0);
+            int outHeight = Math.min(tileHeight, height - y0);
+            int bw = outWidth + kernelWidth - 1;
+            int bh = outHeight + kernelHeight - 1;
+
+            BlockScratch s = scratches.poll();
+            if (s == null) {
+                s = new BlockScratch(n);
+            }
+            ConvolutionEngine.loadWithHalo(reader, width, height, edgeMode, x0 - left, y0 - top, bw, bh, s.pixels);
+
+            // Pack alpha + i * red and green + i * blue, zero-padded to n x n
+            double[] ar = s.alphaRed;
+            double[] ari = s.alphaRedIm;
+            double[] gb = s.greenBlue;
+            double[] gbi = s.greenBlueIm;
+            Arrays.fill(ar, 0.0);
+            Arrays.fill(ari, 0.0);
+            Arrays.fill(gb, 0.0);
+            Arrays.fill(gbi, 0.0);
+            for (int y = 0; y < bh; y++) {
+                int in = y * bw;
+                int out = y * n;
+                for (int x = 0; x < bw; x++) {
+                    int p = s.pixels[in + x];
+                    ar[out + x] = p >>> 24;
+                    ari[out + x] = (p >> 16) & 0xff;
+                    gb[out + x] = (p >> 8) & 0xff;
+                    gbi[out + x] = p & 0xff;
+                }
+            }
+
+            fft.transform2d(ar, ari, bh, n, false);
+            fft.transform2d(gb, gbi, bh, n, false);
+            multiply(ar, ari);
+            multiply(gb, gbi);
+            fft.inverse2d(ar, ari, outHeight);
+            fft.inverse2d(gb, gbi, outHeight);
+
+            double scale = 1.0 / ((double) n * n);
+            for (int y = 0; y < outHeight; y++) {
+                int in = y * n;
+                int out = (y0 + y) * width + x0;
+                for (int x = 0; x < outWidth; x++) {
+                    int argb = channel(ar[in + x], scale) << 24 | channel(ari[in + x], scale) << 16
+                            | channel(gb[in + x], scale) << 8 | channel(gbi[in + x], scale);
+                    dst[out + x] = postOp != null ? postOp.apply(argb) : argb;
+                }
+            }
+            scratches.offer(s);
+        }
+
+        private void multiply(double[] re, double[] im) {
+            for (int i = 0; i < re.length; i++) {
+                double r = re[i] * kernelRe[i] - im[i] * kernelIm[i];
+                double m = re[i] * kernelIm[i] + im[i] * kernelRe[i];
+                re[i] = r;
+                im[i] = m;
+            }
+        }
+
+        private static int channel(double value, double scale) {
+            return ConvolutionEngine.clampChannel((float) (value * scale + ROUND_OFF));
+        }
+    }
+
+    /**
+     * An iterative radix-2 FFT of a fixed size with precomputed twiddle factors.
+     */
+    private static final class Fft {
+        private final int n;
+        private final int[] reversed;
+        private final double[] cos;
+        private final double[] sin;
+
+        Fft(int n) {
+            this.n = n;
+            this.reversed = new int[n];
+            int bits = log2(n);
+            for (int i = 0; i < n; i++) {
+                reversed[i] = Integer.reverse(i) >>> (32 - bits);
+            }
+            this.cos = new double[n / 2];
+            this.sin = new double[n / 2];
+            for (int i = 0; i < n / 2; i++) {
+                cos[i] = Math.cos(2 * Math.PI * i / n);
+                sin[i] = Math.sin(2 * Math.PI * i / n);
+            }
+        }
+
+        /**
+         * Transforms an n x n block in place: the first rows are transformed along x (the remaining
+         * rows are known to be zero), then every column along y.
+         *
+         * @param re      The real parts.
+         * @param im      The imaginary parts.
+         * @param rows    The number of leading rows that may be non-zero.
+         * @param columns The number of columns to transform along y.
+         * @param inverse Whether to apply the inverse (unscaled) transform.
+         */
+        void transform2d(double[] re, double[] im, int rows, int columns, boolean inverse) {
+            for (int y = 0; y < rows; y++) {
+                transform(re, im, y * n, 1, inverse);
+            }
+            for (int x = 0; x < columns; x++) {
+                transform(re, im, x, n, inverse);
+            }
+        }
+
+        /**
+         * Applies the unscaled inverse transform, computing only the first rows of the result.
+         *
+         * @param re   The real parts.
+         * @param im   The imaginary parts.
+         * @param rows The number of leading rows needed.
+         */
+        void inverse2d(double[] re, double[] im, int rows) {
+            for (int x = 0; x < n; x++) {
+                transform(re, im, x, n, true);
+            }
+            for (int y = 0; y < rows; y++) {
+                transform(re, im, y * n, 1, true);
+            }
+        }
+
+        /**
+         * Transforms n values starting at an offset with a stride, in place.
+         *
+         * @param re      The real parts.
+         * @param im      The imaginary parts.
+         * @param offset  The index of the first value.
+         * @param stride  The distance between consecutive values.
+         * @param inverse Whether to apply the inverse (unscaled) transform.
+         */
+        private void transform(double[] re, double[] im, int offset, int stride, boolean inverse) {
+            for (int i = 0; i < n; i++) {
+                int j = reversed[i];
+                if (i < j) {
+                    int a = offset + i * stride;
+                    int b = offset + j * stride;
+                    double t = re[a];
+                    re[a] = re[b];
+                    re[b] = t;
+                    t = im[a];
+                    im[a] = im[b];
+                    im[b] = t;
+                }
+            }
+            double sign = inverse ? 1 : -1;
+            for (int size = 2; size <= n; size <<= 1) {
+                int half = size >> 1;
+                int step = n / size;
+                for (int start = 0; start < n; start += size) {
+                    for (int k = 0; k < half; k++) {
+                        double wr = cos[k * step];
+                        double wi = sign * sin[k * step];
+                        int a = offset + (start + k) * stride;
+                        int b = a + half * stride;
+                        double tr = re[b] * wr - im[b] * wi;
+                        double ti = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - tr;
+                        im[b] = im[a] - ti;
+                        re[a] += tr;
+                        im[a] += ti;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a range of tiles into work-stealing subtasks.
+     */
+    private static final class TileAction extends RecursiveAction {
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        TileAction(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                job.processTile(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileAction(job, from, mid), new TileAction(job, mid, to));
+        }
+    }
+
+    /**
+     * Buffers for one block, used by one tile at a time.
+     */
+    private static final class BlockScratch {
+        private final int[] pixels;
+        private final double[] alphaRed;
+        private final double[] alphaRedIm;
+        private final double[] greenBlue;
+        private final double[] greenBlueIm;
+
+        BlockScratch(int n) {
+            this.pixels = new int[n * n];
+            this.alphaRed = new double[n * n];
+            this.alphaRedIm = new double[n * n];
+            this.greenBlue = new double[n * n];
+            this.greenBlueIm = new double[n * n];
+        }
+    }
+}
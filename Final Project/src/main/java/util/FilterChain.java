@@ -0,0 +1,341 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * FilterChain applies a sequence of filters to an image in as few passes as possible.
+ * Consecutive per-pixel operations (grayscale, sepia) are fused into a single loop over the pixels,
+ * and an intermediate buffer is only allocated where a neighborhood operation (convolution) needs
+ * to read pixels that the previous step has already written. Per-pixel operations that follow a
+ * convolution or blur are fused into the write of its output.
+ * Per-pixel passes read the source rasters directly and run in parallel row bands
+ * (see PointProcessor).
+ * Instances are not thread-safe while being built, but a built chain may be applied concurrently.
+ */
+public final class FilterChain {
+
+    /**
+     * A per-pixel operation mapping one ARGB pixel to another.
+     */
+    @FunctionalInterface
+    interface PixelOp {
+        int apply(int argb);
+
+        /**
+         * Applies the operation to a range of pixels in place. Operations backed by PixelKernels
+         * override this to use the bulk (possibly SIMD) loop.
+         *
+         * @param pixels The pixels.
+         * @param from   The first index.
+         * @param to     The index after the last.
+         */
+        default void applyAll(int[] pixels, int from, int to) {
+            for (int i = from; i < to; i++) {
+                pixels[i] = apply(pixels[i]);
+            }
+        }
+
+        /**
+         * Returns an operation applying this operation and then the next one.
+         *
+         * @param next The operation applied second.
+         * @return The fused operation.
+         */
+        default PixelOp andThen(PixelOp next) {
+            PixelOp first = this;
+            return new PixelOp() {
+                @Override
+                public int apply(int argb) {
+                    return next.apply(first.apply(argb));
+                }
+
+                @Override
+                public void applyAll(int[] pixels, int from, int to) {
+                    first.applyAll(pixels, from, to);
+                    next.applyAll(pixels, from, to);
+                }
+            };
+        }
+    }
+
+    // Bulk loops for the point filters
+    private static final PixelKernels KERNELS = PixelKernels.get();
+
+    // Grayscale and sepia, applied per pixel or through the bulk kernels
+    private static final PixelOp GRAYSCALE = new PixelOp() {
+        @Override
+        public int apply(int argb) {
+            return ImageFilter.grayscalePixel(argb);
+        }
+
+        @Override
+        public void applyAll(int[] pixels, int from, int to) {
+            KERNELS.grayscale(pixels, from, to);
+        }
+    };
+    private static final PixelOp SEPIA = new PixelOp() {
+        @Override
+        public int apply(int argb) {
+            return ImageFilter.getNewPixel(argb);
+        }
+
+        @Override
+        public void applyAll(int[] pixels, int from, int to) {
+            KERNELS.sepia(pixels, from, to);
+        }
+    };
+
+    // Steps in the order they were added: a PixelOp, a square convolution kernel (float[]) or a BoxBlurStep
+    private final List<Object> steps = new ArrayList<>();
+
+    // How convolutions read pixels beyond the image edges
+    private EdgeMode edgeMode = EdgeMode.CLAMP;
+
+    /**
+     * Appends a grayscale conversion.
+     *
+     * @return This chain.
+     */
+    public FilterChain grayscale() {
+        steps.add(GRAYSCALE);
+        return this;
+    }
+
+    /**
+     * Appends a sepia tone.
+     *
+     * @return This chain.
+     */
+    public FilterChain sepia() {
+        steps.add(SEPIA);
+        return this;
+    }
+
+    /**
+     * Appends the 3x3 box blur.
+     *
+     * @return This chain.
+     */
+    public FilterChain blur() {
+        return convolve(ImageFilter.BLUR_KERNEL);
+    }
+
+    /**
+     * Appends a box blur whose cost per pixel does not depend on the radius.
+     *
+     * @param radius The window radius in pixels. Must not be negative.
+     * @return This chain.
+     * @throws IllegalArgumentException if the radius is negative.
+     */
+    public FilterChain boxBlur(int radius) {
+        steps.add(new BoxBlurStep(new int[]{BoxBlur.validateRadius(radius)}));
+        return this;
+    }
+
+    /**
+     * Appends an approximate Gaussian blur made of three box passes.
+     *
+     * @param sigma The standard deviation in pixels. Must be positive.
+     * @return This chain.
+     * @throws IllegalArgumentException if sigma is not a positive number.
+     */
+    public FilterChain gaussianBlur(double sigma) {
+        steps.add(new BoxBlurStep(BoxBlur.gaussianRadii(sigma)));
+        return this;
+    }
+
+    /**
+     * Appends a convolution with a square kernel.
+     *
+     * @param kernel A 1D array representing the convolution kernel. Length must be a perfect square.
+     * @return This chain.
+     * @throws IllegalArgumentException if the kernel is null, empty, or not square.
+     */
+    public FilterChain convolve(float[] kernel) {
+        if (kernel == null || kernel.length == 0) {
+            throw new IllegalArgumentException("Kernel cannot be null or empty.");
+        }
+        int size = (int) Math.sqrt(kernel.length);
+        if (size * size != kernel.length) {
+            throw new IllegalArgumentException("Kernel length must be a perfect square.");
+        }
+        steps.add(kernel.clone());
+        return this;
+    }
+
+    /**
+     * Sets how convolutions in this chain read pixels beyond the image edges. Defaults to CLAMP.
+     *
+     * @param mode The edge mode. Must not be null.
+     * @return This chain.
+     * @throws IllegalArgumentException if the mode is null.
+     */
+    public FilterChain edgeMode(EdgeMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Edge mode cannot be null.");
+        }
+        this.edgeMode = mode;
+        return this;
+    }
+
+    /**
+     * Indicates whether the chain contains no filters.
+     *
+     * @return true if no filter was added.
+     */
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * Returns how convolutions in this chain read pixels beyond the image edges.
+     *
+     * @return The edge mode.
+     */
+    EdgeMode getEdgeMode() {
+        return edgeMode;
+    }
+
+    /**
+     * Returns the number of rows (or columns) around an output pixel that the chain reads: the sum of
+     * the reach of every convolution and blur. Processing a region of an image with this many extra
+     * rows on each side yields exactly the pixels the whole image would.
+     *
+     * @return The halo in pixels.
+     */
+    int halo() {
+        int halo = 0;
+        for (Object step : steps) {
+            if (step instanceof BoxBlurStep) {
+                for (int radius : ((BoxBlurStep) step).radii) {
+                    halo += radius;
+                }
+            } else if (step instanceof float[]) {
+                int size = (int) Math.sqrt(((float[]) step).length);
+                // The larger side of the kernel around its center (see ConvolutionEngine)
+                halo += size - 1 - (size - 1) / 2;
+            }
+        }
+        return halo;
+    }
+
+    /**
+     * Applies the chain to an image. The source image is not modified.
+     *
+     * @param img Source BufferedImage. Must not be null.
+     * @return A new TYPE_INT_ARGB image holding the filtered result.
+     * @throws IllegalArgumentException if the input image is null.
+     */
+    public BufferedImage apply(BufferedImage img) {
+        if (img == null) {
+            throw new IllegalArgumentException("Input image cannot be null.");
+        }
+
+        List<Stage> stages = compile();
+        BufferedImage current = img;
+        int index = 0;
+
+        // A leading point stage is fused with the conversion of the source to ARGB
+        if (stages.isEmpty() || stages.get(0).isPointOnly()) {
+            PixelOp op = stages.isEmpty() ? null : stages.get(0).pointOp;
+            current = materialize(img, op);
+            index = 1;
+        }
+
+        // Each convolution or blur reads the previous buffer directly and writes a new one
+        for (; index < stages.size(); index++) {
+            Stage stage = stages.get(index);
+            BufferedImage output = new BufferedImage(current.getWidth(), current.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            int[] out = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+            if (stage.kernel != null) {
+                ConvolutionEngine.convolve(current, stage.kernel, stage.kernelSize, stage.kernelSize, edgeMode,
+                        stage.pointOp, out, ForkJoinPool.commonPool());
+            } else {
+                BoxBlur.blur(current, stage.blurRadii, edgeMode, stage.pointOp, out);
+            }
+            current = output;
+        }
+        return current;
+    }
+
+    /**
+     * Groups the steps into stages: consecutive pixel operations are fused into one operation, which
+     * is attached to the preceding convolution or blur or, at the start of the chain, forms a stage of
+     * its own.
+     *
+     * @return The compiled stages.
+     */
+    private List<Stage> compile() {
+        List<Stage> stages = new ArrayList<>();
+        Stage open = null;
+        for (Object step : steps) {
+            if (step instanceof PixelOp) {
+                PixelOp op = (PixelOp) step;
+                if (open == null) {
+                    open = new Stage(null, 0, null);
+                    stages.add(open);
+                }
+                open.pointOp = open.pointOp == null ? op : open.pointOp.andThen(op);
+            } else if (step instanceof BoxBlurStep) {
+                open = new Stage(null, 0, ((BoxBlurStep) step).radii);
+                stages.add(open);
+            } else {
+                float[] kernel = (float[]) step;
+                open = new Stage(kernel, (int) Math.sqrt(kernel.length), null);
+                stages.add(open);
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * Copies an image into a new ARGB buffer, applying the pixel operation on the way.
+     *
+     * @param img The source image.
+     * @param op  The pixel operation, or null to copy unchanged.
+     * @return The new ARGB image.
+     */
+    private static BufferedImage materialize(BufferedImage img, PixelOp op) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] out = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+        PointProcessor.apply(img, out, op);
+        return output;
+    }
+
+    /**
+     * A box or Gaussian blur step, given by the radius of each box pass.
+     */
+    private static final class BoxBlurStep {
+        private final int[] radii;
+
+        BoxBlurStep(int[] radii) {
+            this.radii = radii;
+        }
+    }
+
+    /**
+     * A compiled stage: an optional convolution or blur followed by an optional fused pixel operation.
+     */
+    private static final class Stage {
+        private final float[] kernel;
+        private final int kernelSize;
+        private final int[] blurRadii;
+        private PixelOp pointOp;
+
+        Stage(float[] kernel, int kernelSize, int[] blurRadii) {
+            this.kernel = kernel;
+            this.kernelSize = kernelSize;
+            this.blurRadii = blurRadii;
+        }
+
+        boolean isPointOnly() {
+            return kernel == null && blurRadii == null;
+        }
+    }
+}
@@ -4,16 +4,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.Set;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ImageConverter handles image format conversion using ImageIO.
  * It supports converting images to various formats such as PNG, JPEG, BMP, and GIF.
+ * Converting to several formats at once decodes the source a single time and encodes the
+ * formats concurrently from the shared image.
  */
 public class ImageConverter implements ImageProcessor {
 
@@ -29,6 +40,9 @@ public class ImageConverter implements ImageProcessor {
         SUPPORTED_FORMATS.add("gif");
     }
 
+    // Formats written without an alpha channel, from the image flattened onto the background color
+    private static final Set<String> OPAQUE_FORMATS = Set.of("jpeg", "jpg", "bmp");
+
     // Constants for default color when removing alpha channel
     private static final Color DEFAULT_BACKGROUND_COLOR = Color.WHITE;
 
@@ -45,28 +59,198 @@ public class ImageConverter implements ImageProcessor {
     public void process(File inputFile, File outputFile, String format) throws IOException {
         validateInputs(inputFile, outputFile, format);
 
+        // Images too large to decode whole are copied strip by strip where the format allows it
+        if (StreamingImageProcessor.shouldStream(inputFile, format)) {
+            new StreamingImageProcessor(new FilterChain()).process(inputFile, outputFile, format.toLowerCase());
+            logger.info("Successfully converted {} to {} format.", inputFile.getName(), format.toUpperCase());
+            return;
+        }
+
         // Read the input image
+        BufferedImage bufferedImage = read(inputFile);
+
+        writeAdjusted(bufferedImage, outputFile, format, inputFile.getName());
+
+        logger.info("Successfully converted {} to {} format.", inputFile.getName(), format.toUpperCase());
+    }
+
+    /**
+     * Converts an image file to several formats, decoding it once. The formats are encoded
+     * concurrently from the decoded image; formats without transparency share a single copy of the
+     * image flattened onto the background color. Every format is attempted even if some fail.
+     *
+     * @param inputFile   Source image file. Must not be null and must exist.
+     * @param outputFiles The destination file of each target format. Must not be null or empty,
+     *                    and every format must be supported.
+     * @throws IOException              If the source cannot be read or any format fails to be written.
+     *                                  When several formats fail, the individual failures are suppressed
+     *                                  exceptions of the one thrown.
+     * @throws IllegalArgumentException If input parameters are invalid.
+     */
+    public void convert(File inputFile, Map<String, File> outputFiles) throws IOException {
+        if (outputFiles == null || outputFiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one target format must be specified.");
+        }
+        for (Map.Entry<String, File> output : outputFiles.entrySet()) {
+            validateInputs(inputFile, output.getValue(), output.getKey());
+        }
+
+        // Images too large to decode whole are copied strip by strip where the format allows it
+        Map<String, File> decoded = new LinkedHashMap<>();
+        for (Map.Entry<String, File> output : outputFiles.entrySet()) {
+            if (StreamingImageProcessor.shouldStream(inputFile, output.getKey())) {
+                process(inputFile, output.getValue(), output.getKey());
+            } else {
+                decoded.put(output.getKey(), output.getValue());
+            }
+        }
+        if (decoded.isEmpty()) {
+            return;
+        }
+
+        BufferedImage image = read(inputFile);
+        BufferedImage flattened = null;
+        for (String format : decoded.keySet()) {
+            if (needsFlattening(image, format)) {
+                flattened = adjustImageForFormat(image, format, inputFile.getName());
+                break;
+            }
+        }
+
+        // Encode every format but the first on the common pool and the first on this thread
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> encodings = new ArrayList<>();
+        String first = null;
+        for (String format : decoded.keySet()) {
+            if (first == null) {
+                first = format;
+                continue;
+            }
+            BufferedImage source = OPAQUE_FORMATS.contains(format.toLowerCase()) && flattened != null ? flattened : image;
+            encodings.add(CompletableFuture.runAsync(
+                    () -> encodeTo(source, decoded.get(format), format, failures)));
+        }
+        BufferedImage source = OPAQUE_FORMATS.contains(first.toLowerCase()) && flattened != null ? flattened : image;
+        encodeTo(source, decoded.get(first), first, failures);
+        CompletableFuture.allOf(encodings.toArray(new CompletableFuture[0])).join();
+
+        if (failures.size() == 1 && outputFiles.size() == 1) {
+            Exception failure = failures.values().iterator().next();
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+        if (!failures.isEmpty()) {
+            IOException failure = new IOException("Failed to convert " + inputFile.getName() + " to "
+                    + String.join(", ", failures.keySet()).toUpperCase());
+            failures.values().forEach(failure::addSuppressed);
+            throw failure;
+        }
+        logger.info("Successfully converted {} to {} formats.", inputFile.getName(), decoded.size());
+    }
+
+    /**
+     * Writes one format of a multi-format conversion, recording instead of throwing any failure.
+     *
+     * @param image      The image to write, already adjusted for the format.
+     * @param outputFile Destination image file.
+     * @param format     Target format.
+     * @param failures   Receives the failure of the format, if any.
+     */
+    private void encodeTo(BufferedImage image, File outputFile, String format, Map<String, Exception> failures) {
+        try {
+            writeAdjusted(image, outputFile, format, outputFile.getName());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to write {} as {}.", outputFile.getName(), format.toUpperCase(), e);
+            failures.put(format, e);
+        }
+    }
+
+    /**
+     * Reads an image file.
+     *
+     * @param inputFile Source image file.
+     * @return The decoded image.
+     * @throws IOException If the file cannot be read or decoded.
+     */
+    private BufferedImage read(File inputFile) throws IOException {
         BufferedImage bufferedImage = ImageIO.read(inputFile);
         if (bufferedImage == null) {
             String errorMsg = "Unsupported or corrupted image format: " + inputFile.getName();
             logger.error(errorMsg);
             throw new IOException(errorMsg);
         }
-
         logger.debug("Successfully read image: {}", inputFile.getName());
+        return bufferedImage;
+    }
+
+    /**
+     * Writes an image that is already in memory, such as a filtered image, in the specified format,
+     * applying the same format-specific adjustments as a conversion.
+     *
+     * @param image      The image to write. Must not be null.
+     * @param outputFile Destination image file. Must not be null and parent directory must exist.
+     * @param format     Target format (e.g., "png", "jpeg"). Must be supported.
+     * @throws IOException              If an error occurs during writing.
+     * @throws IllegalArgumentException If input parameters are invalid.
+     */
+    public void write(BufferedImage image, File outputFile, String format) throws IOException {
+        if (image == null) {
+            throw new IllegalArgumentException("Image cannot be null.");
+        }
+        validateOutput(outputFile, format);
+        writeAdjusted(image, outputFile, format, outputFile.getName());
+    }
 
+    /**
+     * Encodes an image in the specified format into memory, applying the same format-specific
+     * adjustments as a conversion.
+     *
+     * @param image  The image to encode. Must not be null.
+     * @param format Target format (e.g., "png", "jpeg"). Must be supported.
+     * @return The encoded image file contents.
+     * @throws IOException              If no writer accepts the image.
+     * @throws IllegalArgumentException If the image is null or the format is not supported.
+     */
+    public byte[] encode(BufferedImage image, String format) throws IOException {
+        if (image == null) {
+            throw new IllegalArgumentException("Image cannot be null.");
+        }
+        validateFormat(format);
+        BufferedImage adjusted = adjustImageForFormat(image, format, format.toUpperCase() + " output");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // An in-memory stream keeps ImageIO from spooling the encoding through a temporary file
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+            if (!ImageIO.write(adjusted, format.toLowerCase(), stream)) {
+                String errorMsg = "Failed to write image in format: " + format.toUpperCase();
+                logger.error(errorMsg);
+                throw new IOException(errorMsg);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Adjusts an image for the target format and writes it.
+     *
+     * @param image      The image to write.
+     * @param outputFile Destination image file.
+     * @param format     Target format.
+     * @param name       The name of the image (for logging purposes).
+     * @throws IOException If no writer accepts the image.
+     */
+    private void writeAdjusted(BufferedImage image, File outputFile, String format, String name) throws IOException {
         // Handle format-specific adjustments
-        bufferedImage = adjustImageForFormat(bufferedImage, format, inputFile.getName());
+        BufferedImage adjusted = adjustImageForFormat(image, format, name);
 
         // Attempt to write the image in the target format
-        boolean writeSuccess = ImageIO.write(bufferedImage, format.toLowerCase(), outputFile);
+        boolean writeSuccess = ImageIO.write(adjusted, format.toLowerCase(), outputFile);
         if (!writeSuccess) {
             String errorMsg = "Failed to write image in format: " + format.toUpperCase();
             logger.error(errorMsg);
             throw new IOException(errorMsg);
         }
-
-        logger.info("Successfully converted {} to {} format.", inputFile.getName(), format.toUpperCase());
     }
 
     /**
@@ -88,6 +272,20 @@ public class ImageConverter implements ImageProcessor {
             throw new IllegalArgumentException("Input path is not a file: " + inputFile.getAbsolutePath());
         }
 
+        validateOutput(outputFile, format);
+
+        logger.debug("Validated input parameters: inputFile={}, outputFile={}, format={}",
+                inputFile.getName(), outputFile.getName(), format);
+    }
+
+    /**
+     * Validates the output file and target format, creating the output directory if needed.
+     *
+     * @param outputFile Destination image file.
+     * @param format     Target format.
+     * @throws IllegalArgumentException If any parameter is invalid.
+     */
+    private void validateOutput(File outputFile, String format) {
         if (outputFile == null) {
             throw new IllegalArgumentException("Output file cannot be null.");
         }
@@ -99,6 +297,16 @@ public class ImageConverter implements ImageProcessor {
             }
         }
 
+        validateFormat(format);
+    }
+
+    /**
+     * Validates that a target format is specified and supported.
+     *
+     * @param format Target format.
+     * @throws IllegalArgumentException If the format is missing or not supported.
+     */
+    private void validateFormat(String format) {
         if (format == null || format.trim().isEmpty()) {
             throw new IllegalArgumentException("Target format must be specified.");
         }
@@ -106,14 +314,22 @@ public class ImageConverter implements ImageProcessor {
         if (!SUPPORTED_FORMATS.contains(formatLower)) {
             throw new IllegalArgumentException("Unsupported target format: " + format);
         }
+    }
 
-        logger.debug("Validated input parameters: inputFile={}, outputFile={}, format={}",
-                inputFile.getName(), outputFile.getName(), format);
+    /**
+     * Indicates whether an image must be flattened before being written in a format.
+     *
+     * @param image  The image.
+     * @param format The target format.
+     * @return true if the format is opaque and the image has an alpha channel.
+     */
+    private boolean needsFlattening(BufferedImage image, String format) {
+        return OPAQUE_FORMATS.contains(format.toLowerCase()) && image.getColorModel().hasAlpha();
     }
 
     /**
      * Adjusts the image based on the target format requirements.
-     * For example, JPEG does not support transparency, so the alpha channel is removed.
+     * For example, JPEG and BMP do not support transparency, so the alpha channel is removed.
      *
      * @param image     The original BufferedImage.
      * @param format    The target format.
@@ -121,29 +337,25 @@ public class ImageConverter implements ImageProcessor {
      * @return The adjusted BufferedImage.
      */
     private BufferedImage adjustImageForFormat(BufferedImage image, String format, String fileName) {
-        String formatLower = format.toLowerCase();
+        if (needsFlattening(image, format)) {
+            logger.info("Removing alpha channel from image: {}", fileName);
+            BufferedImage rgbImage = new BufferedImage(
+                    image.getWidth(),
+                    image.getHeight(),
+                    BufferedImage.TYPE_INT_RGB);
 
-        if (formatLower.equals("jpg") || formatLower.equals("jpeg")) {
-            if (image.getColorModel().hasAlpha()) {
-                logger.info("Removing alpha channel from image: {}", fileName);
-                BufferedImage rgbImage = new BufferedImage(
-                        image.getWidth(),
-                        image.getHeight(),
-                        BufferedImage.TYPE_INT_RGB);
-
-                // Draw the original image onto the new RGB image with a white background
-                Graphics2D g2d = rgbImage.createGraphics();
-                try {
-                    g2d.setComposite(AlphaComposite.Src);
-                    g2d.setColor(DEFAULT_BACKGROUND_COLOR);
-                    g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
-                    g2d.drawImage(image, 0, 0, null);
-                } finally {
-                    g2d.dispose();
-                }
-
-                return rgbImage;
+            // Draw the original image onto the new RGB image with a white background
+            Graphics2D g2d = rgbImage.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.Src);
+                g2d.setColor(DEFAULT_BACKGROUND_COLOR);
+                g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+                g2d.drawImage(image, 0, 0, null);
+            } finally {
+                g2d.dispose();
             }
+
+            return rgbImage;
         }
         return image;
     }
@@ -1,15 +1,12 @@
 package util;
 
 import java.awt.*;
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorConvertOp;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
 
 /**
  * ImageFilter provides utility methods to apply various filters to a BufferedImage.
- * Supported filters include Grayscale, Sepia, and Blur.
+ * Supported filters include Grayscale, Sepia, Blur (3x3, box of any radius, and Gaussian), and
+ * custom convolutions.
  * This class is non-instantiable and provides static methods for image processing.
  */
 public final class ImageFilter {
@@ -22,10 +19,33 @@ public final class ImageFilter {
     // Constants for color conversion
     private static final Color DEFAULT_BACKGROUND_COLOR = Color.WHITE;
 
-    // Sepia tone coefficients
-    private static final double SEPIA_RED_COEFF = 0.393;
-    private static final double SEPIA_GREEN_COEFF = 0.769;
-    private static final double SEPIA_BLUE_COEFF = 0.189;
+    // Point filters use 16.16 fixed-point coefficients to avoid floating-point math per pixel.
+    // Shared with VectorPixelKernels, which must reproduce the scalar results exactly.
+    static final int FIXED_POINT_SHIFT = 16;
+    static final int FIXED_POINT_HALF = 1 << (FIXED_POINT_SHIFT - 1);
+
+    // Sepia tone coefficients (0.393, 0.769, 0.189 / 0.349, 0.686, 0.168 / 0.272, 0.534, 0.131)
+    static final int SEPIA_RED_R = fixed(0.393);
+    static final int SEPIA_RED_G = fixed(0.769);
+    static final int SEPIA_RED_B = fixed(0.189);
+    static final int SEPIA_GREEN_R = fixed(0.349);
+    static final int SEPIA_GREEN_G = fixed(0.686);
+    static final int SEPIA_GREEN_B = fixed(0.168);
+    static final int SEPIA_BLUE_R = fixed(0.272);
+    static final int SEPIA_BLUE_G = fixed(0.534);
+    static final int SEPIA_BLUE_B = fixed(0.131);
+
+    // Luma coefficients (ITU-R BT.601) used for grayscale conversion
+    static final int LUMA_R = fixed(0.299);
+    static final int LUMA_G = fixed(0.587);
+    static final int LUMA_B = fixed(0.114);
+
+    // The 3x3 box kernel used by the blur filter
+    static final float[] BLUR_KERNEL = {
+            1f / 9f, 1f / 9f, 1f / 9f,
+            1f / 9f, 1f / 9f, 1f / 9f,
+            1f / 9f, 1f / 9f, 1f / 9f,
+    };
 
     /**
      * Applies a grayscale filter to the provided BufferedImage.
@@ -39,22 +59,26 @@ public final class ImageFilter {
             throw new IllegalArgumentException("Input image cannot be null.");
         }
 
-        // Create a grayscale image using ColorConvertOp for better performance
-        BufferedImage grayscale = new BufferedImage(
-                img.getWidth(),
-                img.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
+        // Use the same per-pixel luma conversion as fused filter chains so both paths agree
+        return new FilterChain().grayscale().apply(img);
+    }
 
-        // Define a grayscale color space
-        ColorConvertOp op = new ColorConvertOp(
-                img.getColorModel().getColorSpace(),
-                ColorSpace.getInstance(ColorSpace.CS_GRAY),
-                null);
+    /**
+     * Converts a single ARGB pixel to gray using luma weights, preserving alpha.
+     *
+     * @param p The ARGB pixel.
+     * @return The gray ARGB pixel.
+     */
+    static int grayscalePixel(int p) {
+        int alpha = (p >> 24) & 0xff;
+        int red = (p >> 16) & 0xff;
+        int green = (p >> 8) & 0xff;
+        int blue = p & 0xff;
 
-        // Perform the grayscale conversion
-        op.filter(img, grayscale);
+        int gray = (LUMA_R * red + LUMA_G * green + LUMA_B * blue + FIXED_POINT_HALF) >> FIXED_POINT_SHIFT;
+        gray = Math.min(255, gray);
 
-        return grayscale;
+        return alpha << 24 | (gray << 16) | (gray << 8) | gray;
     }
 
     /**
@@ -69,36 +93,26 @@ public final class ImageFilter {
             throw new IllegalArgumentException("Input image cannot be null.");
         }
 
-        // Create a new image with the same dimensions and type
-        BufferedImage sepia = new BufferedImage(
-                img.getWidth(),
-                img.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-
-        // Iterate over each pixel to apply the sepia transformation
-        for (int y = 0; y < img.getHeight(); y++) {
-            for (int x = 0; x < img.getWidth(); x++) {
-                int p = img.getRGB(x, y);
-
-                // Extract color components
-                int newPixel = getNewPixel(p);
-                sepia.setRGB(x, y, newPixel);
-            }
-        }
-
-        return sepia;
+        // Apply the sepia transformation directly on the raster, in parallel row bands
+        return new FilterChain().sepia().apply(img);
     }
 
-    private static int getNewPixel(int p) {
+    /**
+     * Applies the sepia transformation to a single ARGB pixel, preserving alpha.
+     *
+     * @param p The ARGB pixel.
+     * @return The sepia-toned ARGB pixel.
+     */
+    static int getNewPixel(int p) {
         int alpha = (p >> 24) & 0xff;
         int red = (p >> 16) & 0xff;
         int green = (p >> 8) & 0xff;
         int blue = p & 0xff;
 
         // Apply sepia formula
-        int tr = (int) (SEPIA_RED_COEFF * red + SEPIA_GREEN_COEFF * green + SEPIA_BLUE_COEFF * blue);
-        int tg = (int) (0.349 * red + 0.686 * green + 0.168 * blue);
-        int tb = (int) (0.272 * red + 0.534 * green + 0.131 * blue);
+        int tr = (SEPIA_RED_R * red + SEPIA_RED_G * green + SEPIA_RED_B * blue) >> FIXED_POINT_SHIFT;
+        int tg = (SEPIA_GREEN_R * red + SEPIA_GREEN_G * green + SEPIA_GREEN_B * blue) >> FIXED_POINT_SHIFT;
+        int tb = (SEPIA_BLUE_R * red + SEPIA_BLUE_G * green + SEPIA_BLUE_B * blue) >> FIXED_POINT_SHIFT;
 
         // Clamp values to 255
         tr = Math.min(255, tr);
@@ -109,42 +123,102 @@ public final class ImageFilter {
         return alpha << 24 | (tr << 16) | (tg << 8) | tb;
     }
 
+    /**
+     * Converts a coefficient to 16.16 fixed point.
+     *
+     * @param coefficient The coefficient.
+     * @return The rounded fixed-point value.
+     */
+    private static int fixed(double coefficient) {
+        return (int) Math.round(coefficient * (1 << FIXED_POINT_SHIFT));
+    }
+
     /**
      * Applies a blur filter to the provided BufferedImage using a convolution kernel.
+     * Pixels beyond the image edges are read by clamping to the nearest edge pixel.
      *
      * @param img Source BufferedImage. Must not be null.
      * @return A new BufferedImage after applying the blur filter.
      * @throws IllegalArgumentException if the input image is null.
      */
     public static BufferedImage applyBlur(BufferedImage img) {
+        return applyBlur(img, EdgeMode.CLAMP);
+    }
+
+    /**
+     * Applies a blur filter to the provided BufferedImage using a convolution kernel.
+     *
+     * @param img      Source BufferedImage. Must not be null.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new BufferedImage after applying the blur filter.
+     * @throws IllegalArgumentException if the input image or edge mode is null.
+     */
+    public static BufferedImage applyBlur(BufferedImage img, EdgeMode edgeMode) {
         if (img == null) {
             throw new IllegalArgumentException("Input image cannot be null.");
         }
 
-        // Define a simple 3x3 blur kernel
-        float[] matrix = {
-                1f / 9f, 1f / 9f, 1f / 9f,
-                1f / 9f, 1f / 9f, 1f / 9f,
-                1f / 9f, 1f / 9f, 1f / 9f,
-        };
+        // Convolve with a simple 3x3 blur kernel on the tile-parallel engine
+        return ConvolutionEngine.convolve(img, BLUR_KERNEL, 3, 3, edgeMode);
+    }
 
-        // Create a BufferedImage to hold the blurred image
-        BufferedImage blurred = new BufferedImage(
-                img.getWidth(),
-                img.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
+    /**
+     * Applies a box blur of the given radius. The cost per pixel does not depend on the radius.
+     * Pixels beyond the image edges are read by clamping to the nearest edge pixel.
+     *
+     * @param img    Source BufferedImage. Must not be null.
+     * @param radius The window radius in pixels. Must not be negative.
+     * @return A new BufferedImage after applying the blur.
+     * @throws IllegalArgumentException if the input image is null or the radius is negative.
+     */
+    public static BufferedImage applyBoxBlur(BufferedImage img, int radius) {
+        return applyBoxBlur(img, radius, EdgeMode.CLAMP);
+    }
 
-        // Create a ConvolveOp with the blur kernel
-        ConvolveOp op = new ConvolveOp(new Kernel(3, 3, matrix), ConvolveOp.EDGE_NO_OP, null);
+    /**
+     * Applies a box blur of the given radius. The cost per pixel does not depend on the radius.
+     *
+     * @param img      Source BufferedImage. Must not be null.
+     * @param radius   The window radius in pixels. Must not be negative.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new BufferedImage after applying the blur.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static BufferedImage applyBoxBlur(BufferedImage img, int radius, EdgeMode edgeMode) {
+        return BoxBlur.box(img, radius, edgeMode);
+    }
 
-        // Apply the convolution filter
-        op.filter(img, blurred);
+    /**
+     * Applies an approximate Gaussian blur of the given standard deviation. The cost per pixel does
+     * not depend on sigma.
+     * Pixels beyond the image edges are read by clamping to the nearest edge pixel.
+     *
+     * @param img   Source BufferedImage. Must not be null.
+     * @param sigma The standard deviation in pixels. Must be positive.
+     * @return A new BufferedImage after applying the blur.
+     * @throws IllegalArgumentException if the input image is null or sigma is not positive.
+     */
+    public static BufferedImage applyGaussianBlur(BufferedImage img, double sigma) {
+        return applyGaussianBlur(img, sigma, EdgeMode.CLAMP);
+    }
 
-        return blurred;
+    /**
+     * Applies an approximate Gaussian blur of the given standard deviation. The cost per pixel does
+     * not depend on sigma.
+     *
+     * @param img      Source BufferedImage. Must not be null.
+     * @param sigma    The standard deviation in pixels. Must be positive.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new BufferedImage after applying the blur.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    public static BufferedImage applyGaussianBlur(BufferedImage img, double sigma, EdgeMode edgeMode) {
+        return BoxBlur.gaussian(img, sigma, edgeMode);
     }
 
     /**
      * Applies a custom convolution filter to the provided BufferedImage.
+     * Pixels beyond the image edges are read by clamping to the nearest edge pixel.
      *
      * @param img    Source BufferedImage. Must not be null.
      * @param kernel A 1D array representing the convolution kernel. Length must be a perfect square.
@@ -152,6 +226,19 @@ public final class ImageFilter {
      * @throws IllegalArgumentException if the input image or kernel is null, or if the kernel size is invalid.
      */
     public static BufferedImage applyCustomFilter(BufferedImage img, float[] kernel) {
+        return applyCustomFilter(img, kernel, EdgeMode.CLAMP);
+    }
+
+    /**
+     * Applies a custom convolution filter to the provided BufferedImage.
+     *
+     * @param img      Source BufferedImage. Must not be null.
+     * @param kernel   A 1D array representing the convolution kernel. Length must be a perfect square.
+     * @param edgeMode How pixels beyond the image edges are read. Must not be null.
+     * @return A new BufferedImage after applying the convolution filter.
+     * @throws IllegalArgumentException if the input image or kernel is null, or if the kernel size is invalid.
+     */
+    public static BufferedImage applyCustomFilter(BufferedImage img, float[] kernel, EdgeMode edgeMode) {
         if (img == null) {
             throw new IllegalArgumentException("Input image cannot be null.");
         }
@@ -165,16 +252,6 @@ public final class ImageFilter {
             throw new IllegalArgumentException("Kernel length must be a perfect square.");
         }
 
-        // Create a new image to hold the filtered result
-        BufferedImage filtered = new BufferedImage(
-                img.getWidth(),
-                img.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-
-        // Create and apply the convolution operation
-        ConvolveOp op = new ConvolveOp(new Kernel(size, size, kernel), ConvolveOp.EDGE_NO_OP, null);
-        op.filter(img, filtered);
-
-        return filtered;
+        return ConvolutionEngine.convolve(img, kernel, size, size, edgeMode);
     }
 }
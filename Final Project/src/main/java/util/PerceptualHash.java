@@ -0,0 +1,135 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * PerceptualHash computes 64-bit perceptual hashes (pHash) of images. Unlike a content hash, a
+ * perceptual hash changes little when an image is resized, re-encoded or slightly adjusted, so the
+ * Hamming distance between two hashes measures how alike the images look: copies of the same shot
+ * typically differ in fewer than ten bits, while unrelated images differ in about half of them.
+ * The image is reduced to a 32x32 luminance grid, transformed with a discrete cosine transform,
+ * and each of the 8x8 lowest-frequency coefficients contributes one bit: whether it lies above the
+ * median of the coefficients other than the DC term. Only the low frequencies are needed, so the
+ * hash is equally stable when computed from a thumbnail instead of the full-resolution image.
+ */
+public final class PerceptualHash {
+
+    // Side of the luminance grid the transform runs on
+    private static final int GRID_SIZE = 32;
+
+    // Side of the block of low-frequency coefficients that form the hash
+    private static final int HASH_SIZE = 8;
+
+    // COSINES[u][x] = cos((2x + 1) * u * pi / (2 * GRID_SIZE)), the DCT-II basis for the kept frequencies
+    private static final double[][] COSINES = new double[HASH_SIZE][GRID_SIZE];
+
+    static {
+        for (int u = 0; u < HASH_SIZE; u++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                COSINES[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * GRID_SIZE));
+            }
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private PerceptualHash() {
+        throw new UnsupportedOperationException("PerceptualHash is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Computes the perceptual hash of an image.
+     *
+     * @param image The image, typically a thumbnail.
+     * @return The 64-bit hash.
+     * @throws IllegalArgumentException if the image is null.
+     */
+    public static long compute(BufferedImage image) {
+        if (image == null) {
+            throw new IllegalArgumentException("Image cannot be null.");
+        }
+
+        double[][] luminance = luminanceGrid(image);
+
+        // The 2D transform is separable: transform the rows, then the columns of the kept frequencies
+        double[][] rows = new double[HASH_SIZE][GRID_SIZE];
+        for (int u = 0; u < HASH_SIZE; u++) {
+            for (int y = 0; y < GRID_SIZE; y++) {
+                double sum = 0;
+                for (int x = 0; x < GRID_SIZE; x++) {
+                    sum += COSINES[u][x] * luminance[y][x];
+                }
+                rows[u][y] = sum;
+            }
+        }
+        double[] coefficients = new double[HASH_SIZE * HASH_SIZE];
+        for (int v = 0; v < HASH_SIZE; v++) {
+            for (int u = 0; u < HASH_SIZE; u++) {
+                double sum = 0;
+                for (int y = 0; y < GRID_SIZE; y++) {
+                    sum += COSINES[v][y] * rows[u][y];
+                }
+                coefficients[v * HASH_SIZE + u] = sum;
+            }
+        }
+
+        // The DC term only reflects overall brightness and would skew the median
+        double[] ac = new double[coefficients.length - 1];
+        System.arraycopy(coefficients, 1, ac, 0, ac.length);
+        Arrays.sort(ac);
+        double median = (ac[ac.length / 2 - 1] + ac[ac.length / 2]) / 2;
+
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the number of bits in which two hashes differ.
+     *
+     * @param first  The first hash.
+     * @param second The second hash.
+     * @return The Hamming distance, between 0 and 64.
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * Reduces an image to a GRID_SIZE x GRID_SIZE grid of luminance values by averaging the pixels
+     * that fall into each cell. Images smaller than the grid are sampled instead.
+     *
+     * @param image The image.
+     * @return The luminance grid, indexed by row then column.
+     */
+    private static double[][] luminanceGrid(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        double[][] grid = new double[GRID_SIZE][GRID_SIZE];
+        for (int gy = 0; gy < GRID_SIZE; gy++) {
+            int y0 = gy * height / GRID_SIZE;
+            int y1 = Math.max(y0 + 1, (gy + 1) * height / GRID_SIZE);
+            for (int gx = 0; gx < GRID_SIZE; gx++) {
+                int x0 = gx * width / GRID_SIZE;
+                int x1 = Math.max(x0 + 1, (gx + 1) * width / GRID_SIZE);
+                double sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        int rgb = pixels[y * width + x];
+                        sum += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                    }
+                }
+                grid[gy][gx] = sum / ((y1 - y0) * (x1 - x0));
+            }
+        }
+        return grid;
+    }
+}
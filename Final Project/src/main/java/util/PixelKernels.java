@@ -0,0 +1,107 @@
+package util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PixelKernels holds the innermost loops of the point filters and the convolution engine, operating
+ * on ranges of arrays so that they can be implemented with SIMD instructions.
+ * Channel planes are passed as arrays of four float arrays ordered alpha, red, green, blue.
+ * Two implementations exist: ScalarPixelKernels, and VectorPixelKernels built on the incubating
+ * jdk.incubator.vector module. The vector implementation is loaded reflectively when that module
+ * is present in the boot layer (run with --add-modules jdk.incubator.vector); otherwise, or when
+ * the system property imageapp.vector.enabled is set to false, the scalar implementation is used.
+ * Both implementations produce identical results.
+ */
+interface PixelKernels {
+
+    /**
+     * Converts a range of ARGB pixels to gray in place (see ImageFilter.grayscalePixel).
+     *
+     * @param pixels The pixels.
+     * @param from   The first index.
+     * @param to     The index after the last.
+     */
+    void grayscale(int[] pixels, int from, int to);
+
+    /**
+     * Applies the sepia tone to a range of ARGB pixels in place (see ImageFilter.getNewPixel).
+     *
+     * @param pixels The pixels.
+     * @param from   The first index.
+     * @param to     The index after the last.
+     */
+    void sepia(int[] pixels, int from, int to);
+
+    /**
+     * Adds weight * src[c][srcOffset + i] to acc[c][accOffset + i] for every channel c and i in [0, length).
+     *
+     * @param acc       The accumulator planes.
+     * @param accOffset The index of the first accumulator value.
+     * @param src       The source planes.
+     * @param srcOffset The index of the first source value.
+     * @param weight    The weight.
+     * @param length    The number of values per channel.
+     */
+    void multiplyAdd(float[][] acc, int accOffset, float[][] src, int srcOffset, float weight, int length);
+
+    /**
+     * Splits ARGB pixels into one float plane per channel.
+     *
+     * @param pixels The pixels.
+     * @param planes The channel planes.
+     * @param size   The number of pixels.
+     */
+    void unpack(int[] pixels, float[][] planes, int size);
+
+    /**
+     * Packs channel planes into ARGB pixels, truncating and clamping each channel to [0, 255]
+     * (see ConvolutionEngine.clampChannel).
+     *
+     * @param planes The channel planes.
+     * @param dst    The destination pixels.
+     * @param offset The destination index of the first pixel.
+     * @param length The number of pixels.
+     */
+    void pack(float[][] planes, int[] dst, int offset, int length);
+
+    /**
+     * Returns the implementation selected for this JVM.
+     *
+     * @return The shared kernels.
+     */
+    static PixelKernels get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Selects the vector implementation when available, falling back to the scalar one.
+     *
+     * @return The kernels to use.
+     */
+    private static PixelKernels load() {
+        Logger logger = LoggerFactory.getLogger(PixelKernels.class);
+        boolean enabled = Boolean.parseBoolean(System.getProperty("imageapp.vector.enabled", "true"));
+        if (enabled && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                PixelKernels kernels = (PixelKernels) Class.forName("util.VectorPixelKernels")
+                        .getDeclaredConstructor().newInstance();
+                logger.info("Using Vector API pixel kernels: {}", kernels);
+                return kernels;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("Vector API pixel kernels unavailable, using scalar kernels.", e);
+            }
+        }
+        return new ScalarPixelKernels();
+    }
+
+    /**
+     * Lazily initialized holder of the selected implementation.
+     */
+    final class Holder {
+        private static final PixelKernels INSTANCE = load();
+
+        private Holder() {
+        }
+    }
+}
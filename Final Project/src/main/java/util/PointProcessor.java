@@ -0,0 +1,175 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PointProcessor applies per-pixel operations directly on the backing arrays of images, bypassing
+ * the per-pixel ColorModel conversion and bounds checks of getRGB/setRGB.
+ * Images are split into bands of rows that are processed in parallel on the common ForkJoinPool.
+ * Packed-int (ARGB, RGB) and interleaved-byte (BGR, ABGR) layouts are read directly; other
+ * layouts fall back to reading one scanline at a time through getRGB.
+ * This class is non-instantiable and provides static methods.
+ */
+final class PointProcessor {
+
+    // Minimum number of pixels per band; smaller images are processed on the calling thread
+    private static final int MIN_PIXELS_PER_BAND = 1 << 16;
+
+    // Private constructor to prevent instantiation
+    private PointProcessor() {
+        throw new UnsupportedOperationException("PointProcessor is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Reads every pixel of the source as ARGB, applies the operation, and stores the result in the
+     * destination array in row-major order.
+     *
+     * @param src The source image.
+     * @param dst The destination array of width * height ARGB pixels.
+     * @param op  The pixel operation, or null to copy unchanged.
+     */
+    static void apply(BufferedImage src, int[] dst, FilterChain.PixelOp op) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        RegionReader reader = readerFor(src);
+        runInBands(width, height, (y0, y1) -> {
+            reader.read(0, y0, width, y1 - y0, dst, y0 * width, width);
+            if (op != null) {
+                op.applyAll(dst, y0 * width, y1 * width);
+            }
+        });
+    }
+
+    /**
+     * Creates the fastest reader of ARGB pixels for the raster layout of an image.
+     *
+     * @param src The source image.
+     * @return A reader of rectangular regions of the image.
+     */
+    static RegionReader readerFor(BufferedImage src) {
+        Raster raster = src.getRaster();
+        int type = src.getType();
+
+        // Rasters that are children of a larger raster are read through the generic path
+        boolean standalone = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getParent() == null;
+
+        if (standalone && (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int offset = raster.getDataBuffer().getOffset();
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            if (type == BufferedImage.TYPE_INT_ARGB) {
+                return (x, y, w, h, dst, dstOffset, dstStride) -> {
+                    for (int row = 0; row < h; row++) {
+                        System.arraycopy(data, offset + (y + row) * stride + x, dst, dstOffset + row * dstStride, w);
+                    }
+                };
+            }
+            return (x, y, w, h, dst, dstOffset, dstStride) -> {
+                for (int row = 0; row < h; row++) {
+                    int in = offset + (y + row) * stride + x;
+                    int out = dstOffset + row * dstStride;
+                    for (int col = 0; col < w; col++) {
+                        dst[out + col] = data[in + col] | 0xff000000;
+                    }
+                }
+            };
+        }
+
+        if (standalone && (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && raster.getSampleModel() instanceof ComponentSampleModel) {
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+            int offset = raster.getDataBuffer().getOffset();
+            int stride = model.getScanlineStride();
+            int pixelStride = model.getPixelStride();
+            // Band offsets locate the red, green, blue (and alpha) bytes within each pixel
+            int[] bandOffsets = model.getBandOffsets();
+            int r = bandOffsets[0];
+            int g = bandOffsets[1];
+            int b = bandOffsets[2];
+            int a = bandOffsets.length > 3 ? bandOffsets[3] : -1;
+            return (x, y, w, h, dst, dstOffset, dstStride) -> {
+                for (int row = 0; row < h; row++) {
+                    int in = offset + (y + row) * stride + x * pixelStride;
+                    int out = dstOffset + row * dstStride;
+                    for (int col = 0; col < w; col++, in += pixelStride) {
+                        int alpha = a < 0 ? 0xff : data[in + a] & 0xff;
+                        dst[out + col] = alpha << 24 | (data[in + r] & 0xff) << 16
+                                | (data[in + g] & 0xff) << 8 | (data[in + b] & 0xff);
+                    }
+                }
+            };
+        }
+
+        // Generic path: through the image's ColorModel
+        return (x, y, w, h, dst, dstOffset, dstStride) -> src.getRGB(x, y, w, h, dst, dstOffset, dstStride);
+    }
+
+    /**
+     * Runs a row task over the whole image, split into bands on the common ForkJoinPool.
+     *
+     * @param width  The image width.
+     * @param height The image height.
+     * @param task   The task processing a range of rows.
+     */
+    static void runInBands(int width, int height, RowTask task) {
+        int rowsPerBand = Math.max(1, MIN_PIXELS_PER_BAND / Math.max(1, width));
+        if (height <= rowsPerBand || ForkJoinPool.getCommonPoolParallelism() <= 1) {
+            task.run(0, height);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new BandAction(task, 0, height, rowsPerBand));
+    }
+
+    /**
+     * Reads a rectangle of ARGB pixels, lying entirely within the image, into an array.
+     */
+    @FunctionalInterface
+    interface RegionReader {
+        void read(int x, int y, int width, int height, int[] dst, int dstOffset, int dstStride);
+    }
+
+    /**
+     * Processes the rows in [y0, y1).
+     */
+    @FunctionalInterface
+    interface RowTask {
+        void run(int y0, int y1);
+    }
+
+    /**
+     * Recursively splits a range of rows until it is no larger than one band.
+     */
+    private static final class BandAction extends RecursiveAction {
+        private final RowTask task;
+        private final int y0;
+        private final int y1;
+        private final int rowsPerBand;
+
+        BandAction(RowTask task, int y0, int y1, int rowsPerBand) {
+            this.task = task;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.rowsPerBand = rowsPerBand;
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 <= rowsPerBand) {
+                task.run(y0, y1);
+                return;
+            }
+            int mid = (y0 + y1) >>> 1;
+            invokeAll(new BandAction(task, y0, mid, rowsPerBand), new BandAction(task, mid, y1, rowsPerBand));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package util;
+
+/**
+ * ScalarPixelKernels implements the pixel kernels with plain loops, relying on the JIT compiler
+ * for any automatic vectorization. It is the fallback when the Vector API is not available.
+ */
+final class ScalarPixelKernels implements PixelKernels {
+
+    @Override
+    public void grayscale(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            pixels[i] = ImageFilter.grayscalePixel(pixels[i]);
+        }
+    }
+
+    @Override
+    public void sepia(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            pixels[i] = ImageFilter.getNewPixel(pixels[i]);
+        }
+    }
+
+    @Override
+    public void multiplyAdd(float[][] acc, int accOffset, float[][] src, int srcOffset, float weight, int length) {
+        float[] accA = acc[0];
+        float[] accR = acc[1];
+        float[] accG = acc[2];
+        float[] accB = acc[3];
+        float[] a = src[0];
+        float[] r = src[1];
+        float[] g = src[2];
+        float[] b = src[3];
+        for (int i = 0; i < length; i++) {
+            accA[accOffset + i] += weight * a[srcOffset + i];
+            accR[accOffset + i] += weight * r[srcOffset + i];
+            accG[accOffset + i] += weight * g[srcOffset + i];
+            accB[accOffset + i] += weight * b[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void unpack(int[] pixels, float[][] planes, int size) {
+        unpack(pixels, planes, 0, size);
+    }
+
+    @Override
+    public void pack(float[][] planes, int[] dst, int offset, int length) {
+        pack(planes, 0, dst, offset, length);
+    }
+
+    /**
+     * Unpacks the pixels in [from, to) (see PixelKernels.unpack).
+     *
+     * @param pixels The pixels.
+     * @param planes The channel planes.
+     * @param from   The first index.
+     * @param to     The index after the last.
+     */
+    void unpack(int[] pixels, float[][] planes, int from, int to) {
+        float[] alpha = planes[0];
+        float[] red = planes[1];
+        float[] green = planes[2];
+        float[] blue = planes[3];
+        for (int i = from; i < to; i++) {
+            int p = pixels[i];
+            alpha[i] = (p >>> 24);
+            red[i] = (p >> 16) & 0xff;
+            green[i] = (p >> 8) & 0xff;
+            blue[i] = p & 0xff;
+        }
+    }
+
+    /**
+     * Packs the plane values in [from, length) (see PixelKernels.pack).
+     *
+     * @param planes The channel planes.
+     * @param from   The first plane index.
+     * @param dst    The destination pixels.
+     * @param offset The destination index of plane value 0.
+     * @param length The number of plane values.
+     */
+    void pack(float[][] planes, int from, int[] dst, int offset, int length) {
+        float[] alpha = planes[0];
+        float[] red = planes[1];
+        float[] green = planes[2];
+        float[] blue = planes[3];
+        for (int i = from; i < length; i++) {
+            dst[offset + i] = ConvolutionEngine.clampChannel(alpha[i]) << 24
+                    | ConvolutionEngine.clampChannel(red[i]) << 16
+                    | ConvolutionEngine.clampChannel(green[i]) << 8
+                    | ConvolutionEngine.clampChannel(blue[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,441 @@
+package util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * StreamingImageProcessor applies a FilterChain to images too large to hold in memory.
+ * The image is processed in full-width strips of rows. Each strip is decoded on its own with
+ * ImageReadParam.setSourceRegion, together with as many extra rows above and below as the chain
+ * reads around a pixel (see FilterChain.halo), so the filtered strip is identical to the
+ * corresponding rows of the whole filtered image. Strips are produced on demand while the ImageIO
+ * writer pulls rows from a RenderedImage, so only one strip is in memory at a time and the peak
+ * memory grows with the image width and the halo, not with the image height.
+ * Streaming output is limited to PNG and TIFF, whose writers request the image a few rows at a time;
+ * other writers fetch the whole raster at once. Sources in sequential formats such as PNG and JPEG
+ * are decoded from the start for every strip, which bounds memory at the cost of decoding time;
+ * TIFF sources are read strip by strip.
+ * Chains using EdgeMode.WRAP cannot be streamed, as the wrapped rows are not in the strip.
+ */
+public class StreamingImageProcessor implements ImageProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingImageProcessor.class);
+
+    // Formats whose writers pull the image a few rows at a time
+    private static final Set<String> STREAMING_FORMATS = Set.of("png", "tif", "tiff");
+
+    // Upper bound on the pixel buffers of one strip, halo rows included
+    private static final long MAX_STRIP_BYTES = Long.getLong("imageapp.streaming.maxStripBytes", 64L << 20);
+
+    // Decoded size above which shouldStream recommends streaming, by default a quarter of the heap
+    private static final long STREAMING_THRESHOLD_BYTES = Long.getLong("imageapp.streaming.thresholdBytes",
+            Runtime.getRuntime().maxMemory() / 4);
+
+    // Full-width ARGB buffers alive while a strip is filtered: decoded source, intermediate and output
+    private static final int BUFFERS_PER_STRIP = 3;
+
+    // Smallest number of output rows per strip, so that large halos are not re-read for a few rows
+    private static final int MIN_STRIP_ROWS = 16;
+
+    private final FilterChain chain;
+
+    /**
+     * Creates a processor applying a filter chain.
+     *
+     * @param chain The filters to apply. Must not be null; an empty chain converts the image as is.
+     * @throws IllegalArgumentException if the chain is null.
+     */
+    public StreamingImageProcessor(FilterChain chain) {
+        if (chain == null) {
+            throw new IllegalArgumentException("Filter chain cannot be null.");
+        }
+        this.chain = chain;
+    }
+
+    /**
+     * Indicates whether images can be streamed to a format.
+     *
+     * @param format The target format.
+     * @return true if the format is written a few rows at a time.
+     */
+    public static boolean supportsFormat(String format) {
+        return format != null && STREAMING_FORMATS.contains(format.toLowerCase());
+    }
+
+    /**
+     * Indicates whether an image should be streamed rather than decoded whole: the target format must
+     * support streaming and the decoded ARGB image must exceed the streaming threshold (a quarter of
+     * the maximum heap unless the system property imageapp.streaming.thresholdBytes is set).
+     * Only the image header is read.
+     *
+     * @param inputFile The source image file.
+     * @param format    The target format.
+     * @return true if the image should be streamed.
+     * @throws IOException if the header cannot be read.
+     */
+    public static boolean shouldStream(File inputFile, String format) throws IOException {
+        if (!supportsFormat(format)) {
+            return false;
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(inputFile)) {
+            ImageReader reader = openReader(in, inputFile);
+            try {
+                return shouldStream(reader.getWidth(0), reader.getHeight(0), format);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Indicates whether an image of known dimensions should be streamed rather than decoded whole,
+     * by the same rule as shouldStream(File, String), without reading the file.
+     *
+     * @param width  The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param format The target format.
+     * @return true if the image should be streamed.
+     */
+    public static boolean shouldStream(int width, int height, String format) {
+        return supportsFormat(format) && 4L * width * height > STREAMING_THRESHOLD_BYTES;
+    }
+
+    /**
+     * Applies the filter chain to an image file strip by strip and writes the result.
+     *
+     * @param inputFile  Source image file. Must not be null and must exist.
+     * @param outputFile Destination image file. Must not be null. Overwritten if it exists.
+     * @param format     Target format, either PNG or TIFF.
+     * @throws IOException              If an error occurs during reading or writing.
+     * @throws IllegalArgumentException If input parameters are invalid or the chain wraps edges.
+     */
+    @Override
+    public void process(File inputFile, File outputFile, String format) throws IOException {
+        if (inputFile == null || !inputFile.isFile()) {
+            throw new IllegalArgumentException("Input file does not exist: " + inputFile);
+        }
+        if (outputFile == null) {
+            throw new IllegalArgumentException("Output file cannot be null.");
+        }
+        if (!supportsFormat(format)) {
+            throw new IllegalArgumentException("Streaming is not supported for format: " + format);
+        }
+        int halo = chain.halo();
+        if (halo > 0 && chain.getEdgeMode() == EdgeMode.WRAP) {
+            throw new IllegalArgumentException("Filter chains using EdgeMode.WRAP cannot be streamed.");
+        }
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(inputFile)) {
+            ImageReader reader = openReader(in, inputFile);
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int stripRows = stripRows(width, height, halo);
+                ImageTypeSpecifier type = reader.getImageTypes(0).next();
+                StripImage image = new StripImage(reader, width, height, stripRows, halo,
+                        type.getColorModel().hasAlpha());
+                logger.info("Streaming {} ({}x{}) in strips of {} rows with a halo of {} rows.",
+                        inputFile.getName(), width, height, stripRows, halo);
+                write(image, outputFile, format.toLowerCase());
+            } finally {
+                reader.dispose();
+            }
+        }
+        logger.info("Successfully streamed {} to {}.", inputFile.getName(), outputFile.getName());
+    }
+
+    /**
+     * Computes the number of output rows per strip so that a strip with its halo rows stays within
+     * the strip budget (system property imageapp.streaming.maxStripBytes, 64 MB by default).
+     * When the halo alone exceeds the budget, strips of MIN_STRIP_ROWS rows are used regardless.
+     *
+     * @param width  The image width.
+     * @param height The image height.
+     * @param halo   The halo of the filter chain.
+     * @return The number of rows per strip.
+     */
+    static int stripRows(int width, int height, int halo) {
+        long budgetRows = MAX_STRIP_BYTES / (BUFFERS_PER_STRIP * 4L * width);
+        long rows = Math.max(MIN_STRIP_ROWS, budgetRows - 2L * halo);
+        return (int) Math.min(height, rows);
+    }
+
+    /**
+     * Opens a reader for the first image of a stream.
+     *
+     * @param in   The image input stream, or null if the file could not be opened.
+     * @param file The file being read, for error messages.
+     * @return A reader whose input is set.
+     * @throws IOException if no reader handles the stream.
+     */
+    private static ImageReader openReader(ImageInputStream in, File file) throws IOException {
+        Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+        if (readers == null || !readers.hasNext()) {
+            String errorMsg = "Unsupported or corrupted image format: " + file.getName();
+            logger.error(errorMsg);
+            throw new IOException(errorMsg);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, false, true);
+        return reader;
+    }
+
+    /**
+     * Writes an image with the first writer of a format. TIFF output is Deflate-compressed so that
+     * large images stay well below the 4 GB limit of the classic TIFF layout where possible.
+     *
+     * @param image      The image to write.
+     * @param outputFile The destination file.
+     * @param format     The lower-case target format.
+     * @throws IOException if writing fails.
+     */
+    private static void write(RenderedImage image, File outputFile, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No writer available for format: " + format.toUpperCase());
+        }
+        ImageWriter writer = writers.next();
+        // Opening an existing file does not truncate it, so remove it first as ImageIO.write does
+        Files.deleteIfExists(outputFile.toPath());
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(outputFile)) {
+            if (out == null) {
+                throw new IOException("Cannot create output file: " + outputFile.getAbsolutePath());
+            }
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!format.equals("png") && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionType("Deflate");
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IllegalStateException e) {
+            // Read failures surface from inside the writer, wrapped by StripImage.getTile
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * A read-only image whose tiles are full-width strips, each decoded and filtered when first
+     * requested. Only the most recently computed strip is retained.
+     */
+    private final class StripImage implements RenderedImage {
+        private final ImageReader reader;
+        private final int width;
+        private final int height;
+        private final int stripRows;
+        private final int halo;
+        private final ColorModel colorModel;
+        private final SampleModel sampleModel;
+
+        // The strip computed last and its index
+        private Raster strip;
+        private int stripIndex = -1;
+
+        StripImage(ImageReader reader, int width, int height, int stripRows, int halo, boolean alpha) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.stripRows = stripRows;
+            this.halo = halo;
+            // The filtered ARGB pixels are exposed as RGB when the source has no alpha, ignoring the alpha byte
+            this.colorModel = alpha ? ColorModel.getRGBdefault()
+                    : new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+            this.sampleModel = colorModel.createCompatibleSampleModel(width, stripRows);
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            if (tileX != 0 || tileY < 0 || tileY >= getNumYTiles()) {
+                throw new IllegalArgumentException("Tile index out of range: " + tileX + ", " + tileY);
+            }
+            if (tileY != stripIndex) {
+                try {
+                    strip = computeStrip(tileY);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read rows of strip " + tileY + ".", e);
+                }
+                stripIndex = tileY;
+            }
+            return strip;
+        }
+
+        /**
+         * Decodes the rows of a strip and its halo, filters them and keeps the strip rows.
+         *
+         * @param index The strip index.
+         * @return A raster positioned at the first row of the strip.
+         * @throws IOException if the rows cannot be decoded.
+         */
+        private Raster computeStrip(int index) throws IOException {
+            int y0 = index * stripRows;
+            int y1 = Math.min(height, y0 + stripRows);
+            int readFrom = Math.max(0, y0 - halo);
+            int readTo = Math.min(height, y1 + halo);
+
+            // Drop the previous strip before decoding the next one to keep a single strip alive
+            strip = null;
+            stripIndex = -1;
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, readFrom, width, readTo - readFrom));
+            BufferedImage filtered = chain.apply(reader.read(0, param));
+            logger.debug("Filtered rows {} to {} (read {} to {}).", y0, y1, readFrom, readTo);
+
+            // Share the filtered pixels, skipping the halo rows above the strip
+            int[] pixels = ((DataBufferInt) filtered.getRaster().getDataBuffer()).getData();
+            int rows = y1 - y0;
+            DataBufferInt buffer = new DataBufferInt(pixels, rows * width, (y0 - readFrom) * width);
+            SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel)
+                    sampleModel.createCompatibleSampleModel(width, rows);
+            return Raster.createRaster(model, buffer, new Point(0, y0));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            WritableRaster raster = Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(rect.width, rect.height), new Point(rect.x, rect.y));
+            return copyData(raster);
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                return (WritableRaster) getData();
+            }
+            Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+            if (bounds.isEmpty()) {
+                return raster;
+            }
+            int first = bounds.y / stripRows;
+            int last = (bounds.y + bounds.height - 1) / stripRows;
+            for (int index = first; index <= last; index++) {
+                Raster tile = getTile(0, index);
+                Rectangle part = bounds.intersection(tile.getBounds());
+                raster.setRect(tile.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+            }
+            return raster;
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (height + stripRows - 1) / stripRows;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return stripRows;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
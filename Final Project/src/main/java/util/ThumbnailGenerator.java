@@ -0,0 +1,373 @@
+package util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+/**
+ * ThumbnailGenerator creates small preview images without materializing the full-resolution raster.
+ * It first looks for a thumbnail embedded by the camera (JFIF or EXIF); when none is available or it
+ * is too small, the image is decoded with source subsampling so that only a fraction of the pixels
+ * is ever allocated.
+ * This class is non-instantiable and provides static methods.
+ */
+public final class ThumbnailGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailGenerator.class);
+
+    // JPEG markers used when scanning for the EXIF segment
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+
+    // TIFF tags of IFD1 that locate the embedded JPEG thumbnail
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+    private static final int TIFF_TYPE_SHORT = 3;
+
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    // Private constructor to prevent instantiation
+    private ThumbnailGenerator() {
+        throw new UnsupportedOperationException("ThumbnailGenerator is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * Creates a thumbnail that fits within the given bounds while preserving the aspect ratio.
+     *
+     * @param file      The image file. Must not be null.
+     * @param maxWidth  The maximum thumbnail width in pixels.
+     * @param maxHeight The maximum thumbnail height in pixels.
+     * @return The thumbnail image.
+     * @throws IOException              If the image cannot be read or has an unsupported format.
+     * @throws IllegalArgumentException If the file is null or the bounds are not positive.
+     */
+    public static BufferedImage createThumbnail(File file, int maxWidth, int maxHeight) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Image file cannot be null.");
+        }
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Thumbnail dimensions must be positive.");
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("Unable to open image file: " + file.getName());
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format or corrupted file: " + file.getName());
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+
+                BufferedImage source = readEmbeddedThumbnail(reader, file, maxWidth, maxHeight);
+                if (source == null) {
+                    source = readSubsampled(reader, maxWidth, maxHeight);
+                }
+                return scaleToFit(source, maxWidth, maxHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads a thumbnail stored inside the file, if one exists, has the aspect ratio of the image and is
+     * large enough for the target size. Cameras often store letterboxed previews (for example 160x120
+     * for a 3:2 photo), which would show black bars and skew the perceptual hash computed from the
+     * thumbnail, so those are decoded from the image instead.
+     * The JFIF thumbnail is exposed by the image reader; the EXIF thumbnail is located by parsing the
+     * APP1 segment of JPEG files directly.
+     *
+     * @param reader    The reader positioned on the file.
+     * @param file      The image file.
+     * @param maxWidth  The target width.
+     * @param maxHeight The target height.
+     * @return The embedded thumbnail, or null if none is usable.
+     */
+    private static BufferedImage readEmbeddedThumbnail(ImageReader reader, File file, int maxWidth, int maxHeight) {
+        int width;
+        int height;
+        try {
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to read image dimensions from {}", file.getName(), e);
+            return null;
+        }
+
+        try {
+            if (reader.readerSupportsThumbnails() && reader.hasThumbnails(0)) {
+                BufferedImage thumbnail = reader.readThumbnail(0, 0);
+                if (isUsable(thumbnail, width, height, maxWidth, maxHeight)) {
+                    logger.debug("Using embedded JFIF thumbnail for {}", file.getName());
+                    return thumbnail;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to read embedded thumbnail from {}", file.getName(), e);
+        }
+
+        if (!"jpeg".equalsIgnoreCase(safeFormatName(reader))) {
+            return null;
+        }
+        try {
+            byte[] exifThumbnail = extractExifThumbnail(file);
+            if (exifThumbnail != null) {
+                BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(exifThumbnail));
+                if (isUsable(thumbnail, width, height, maxWidth, maxHeight)) {
+                    logger.debug("Using embedded EXIF thumbnail for {}", file.getName());
+                    return thumbnail;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to read EXIF thumbnail from {}", file.getName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the image with source subsampling so that the decoded raster is at most a small
+     * multiple of the target size. Readers that can scale during decoding (for example, JPEG
+     * readers implementing DCT scaling) are asked for the render size directly.
+     *
+     * @param reader    The reader positioned on the file.
+     * @param maxWidth  The target width.
+     * @param maxHeight The target height.
+     * @return The reduced image.
+     * @throws IOException If the image cannot be decoded.
+     */
+    private static BufferedImage readSubsampled(ImageReader reader, int maxWidth, int maxHeight) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (param.canSetSourceRenderSize()) {
+            double scale = Math.min(1.0, Math.max((double) maxWidth / width, (double) maxHeight / height));
+            param.setSourceRenderSize(new Dimension(
+                    Math.max(1, (int) Math.ceil(width * scale)),
+                    Math.max(1, (int) Math.ceil(height * scale))));
+        } else {
+            // Keep every n-th pixel while staying at or above the target size on the constraining side
+            int step = Math.max(1, Math.min(width / maxWidth, height / maxHeight));
+            param.setSourceSubsampling(step, step, 0, 0);
+        }
+        return reader.read(0, param);
+    }
+
+    /**
+     * Scales an image down to fit within the given bounds, preserving the aspect ratio.
+     * Images already within the bounds are returned unchanged.
+     *
+     * @param image     The image to scale.
+     * @param maxWidth  The maximum width.
+     * @param maxHeight The maximum height.
+     * @return The scaled image.
+     */
+    private static BufferedImage scaleToFit(BufferedImage image, int maxWidth, int maxHeight) {
+        double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+        if (scale >= 1.0) {
+            return image;
+        }
+
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g2d.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Checks whether an embedded thumbnail has the aspect ratio of the image, within a pixel of
+     * rounding, and covers the size the image is scaled to on both sides without upscaling.
+     *
+     * @param thumbnail The embedded thumbnail, possibly null.
+     * @param width     The width of the image.
+     * @param height    The height of the image.
+     * @param maxWidth  The target width.
+     * @param maxHeight The target height.
+     * @return true if the thumbnail can be used.
+     */
+    private static boolean isUsable(BufferedImage thumbnail, int width, int height, int maxWidth, int maxHeight) {
+        if (thumbnail == null || width <= 0 || height <= 0) {
+            return false;
+        }
+        int thumbnailWidth = thumbnail.getWidth();
+        int thumbnailHeight = thumbnail.getHeight();
+        if (Math.abs(thumbnailHeight - (double) thumbnailWidth * height / width) > 1
+                || Math.abs(thumbnailWidth - (double) thumbnailHeight * width / height) > 1) {
+            return false;
+        }
+
+        double scale = Math.min(1.0, Math.min((double) maxWidth / width, (double) maxHeight / height));
+        long targetWidth = Math.max(1, Math.round(width * scale));
+        long targetHeight = Math.max(1, Math.round(height * scale));
+        return thumbnailWidth >= targetWidth && thumbnailHeight >= targetHeight;
+    }
+
+    /**
+     * Retrieves the format name of a reader, or null if it cannot be determined.
+     *
+     * @param reader The image reader.
+     * @return The lowercase format name.
+     */
+    private static String safeFormatName(ImageReader reader) {
+        try {
+            return reader.getFormatName().toLowerCase();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extracts the JPEG thumbnail stored in IFD1 of the EXIF segment of a JPEG file.
+     * Only the markers preceding the image data are scanned, so the cost is bounded by the
+     * size of the metadata rather than the size of the image.
+     *
+     * @param file The JPEG file.
+     * @return The compressed thumbnail bytes, or null if the file has no EXIF thumbnail.
+     * @throws IOException If the file cannot be read.
+     */
+    static byte[] extractExifThumbnail(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readUnsignedByte() != 0xFF || in.readUnsignedByte() != MARKER_SOI) {
+                return null;
+            }
+            while (true) {
+                int prefix = in.readUnsignedByte();
+                if (prefix != 0xFF) {
+                    return null;
+                }
+                int marker = in.readUnsignedByte();
+                while (marker == 0xFF) {
+                    marker = in.readUnsignedByte(); // Skip fill bytes
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return null;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return null;
+                }
+                if (marker == MARKER_APP1 && length > EXIF_HEADER.length) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    if (startsWith(segment, EXIF_HEADER)) {
+                        return findThumbnailInTiff(ByteBuffer.wrap(segment, EXIF_HEADER.length,
+                                length - EXIF_HEADER.length).slice());
+                    }
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Locates the thumbnail referenced by IFD1 of a TIFF structure.
+     *
+     * @param tiff The TIFF structure, starting at its header.
+     * @return The thumbnail bytes, or null if absent or malformed.
+     */
+    private static byte[] findThumbnailInTiff(ByteBuffer tiff) {
+        try {
+            short byteOrder = tiff.getShort(0);
+            if (byteOrder == 0x4949) {
+                tiff.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (byteOrder == 0x4D4D) {
+                tiff.order(ByteOrder.BIG_ENDIAN);
+            } else {
+                return null;
+            }
+
+            int ifd0 = tiff.getInt(4);
+            int ifd0Entries = tiff.getShort(ifd0) & 0xFFFF;
+            int ifd1 = tiff.getInt(ifd0 + 2 + ifd0Entries * 12);
+            if (ifd1 <= 0) {
+                return null;
+            }
+
+            int entries = tiff.getShort(ifd1) & 0xFFFF;
+            int offset = -1;
+            int length = -1;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd1 + 2 + i * 12;
+                int tag = tiff.getShort(entry) & 0xFFFF;
+                if (tag == TAG_THUMBNAIL_OFFSET) {
+                    offset = readIntegerValue(tiff, entry);
+                } else if (tag == TAG_THUMBNAIL_LENGTH) {
+                    length = readIntegerValue(tiff, entry);
+                }
+            }
+            if (offset <= 0 || length <= 0 || offset + length > tiff.limit()) {
+                return null;
+            }
+
+            byte[] thumbnail = new byte[length];
+            tiff.get(offset, thumbnail);
+            return thumbnail;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the value of a single SHORT or LONG IFD entry.
+     *
+     * @param tiff  The TIFF structure.
+     * @param entry The position of the 12-byte IFD entry.
+     * @return The entry value.
+     */
+    private static int readIntegerValue(ByteBuffer tiff, int entry) {
+        int type = tiff.getShort(entry + 2) & 0xFFFF;
+        return type == TIFF_TYPE_SHORT ? tiff.getShort(entry + 8) & 0xFFFF : tiff.getInt(entry + 8);
+    }
+
+    /**
+     * Checks whether a byte array starts with the given prefix.
+     *
+     * @param data   The data.
+     * @param prefix The expected prefix.
+     * @return true if data starts with prefix.
+     */
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
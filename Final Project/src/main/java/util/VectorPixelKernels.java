@@ -0,0 +1,158 @@
+package util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorPixelKernels implements the pixel kernels with the jdk.incubator.vector API, processing as
+ * many pixels per instruction as the preferred vector shape of the CPU allows (8 on AVX2, 16 on
+ * AVX-512). The arithmetic mirrors ScalarPixelKernels operation for operation, so both produce
+ * identical results; remaining elements that do not fill a vector are handled with scalar code.
+ * This class is only loaded reflectively by PixelKernels when the module is present.
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    // Masks the alpha byte of an ARGB pixel
+    private static final int ALPHA_MASK = 0xff000000;
+
+    private final ScalarPixelKernels tail = new ScalarPixelKernels();
+
+    VectorPixelKernels() {
+        if (INTS.length() != FLOATS.length()) {
+            throw new IllegalStateException("Unsupported vector shapes: " + INTS + ", " + FLOATS);
+        }
+    }
+
+    @Override
+    public void grayscale(int[] pixels, int from, int to) {
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector p = IntVector.fromArray(INTS, pixels, i);
+            IntVector gray = red(p).mul(ImageFilter.LUMA_R)
+                    .add(green(p).mul(ImageFilter.LUMA_G))
+                    .add(blue(p).mul(ImageFilter.LUMA_B))
+                    .add(ImageFilter.FIXED_POINT_HALF)
+                    .lanewise(VectorOperators.ASHR, ImageFilter.FIXED_POINT_SHIFT)
+                    .min(255);
+            p.and(ALPHA_MASK).or(gray.mul(0x010101)).intoArray(pixels, i);
+        }
+        tail.grayscale(pixels, i, to);
+    }
+
+    @Override
+    public void sepia(int[] pixels, int from, int to) {
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector p = IntVector.fromArray(INTS, pixels, i);
+            IntVector r = red(p);
+            IntVector g = green(p);
+            IntVector b = blue(p);
+            IntVector tr = tone(r, g, b, ImageFilter.SEPIA_RED_R, ImageFilter.SEPIA_RED_G, ImageFilter.SEPIA_RED_B);
+            IntVector tg = tone(r, g, b, ImageFilter.SEPIA_GREEN_R, ImageFilter.SEPIA_GREEN_G, ImageFilter.SEPIA_GREEN_B);
+            IntVector tb = tone(r, g, b, ImageFilter.SEPIA_BLUE_R, ImageFilter.SEPIA_BLUE_G, ImageFilter.SEPIA_BLUE_B);
+            p.and(ALPHA_MASK)
+                    .or(tr.lanewise(VectorOperators.LSHL, 16))
+                    .or(tg.lanewise(VectorOperators.LSHL, 8))
+                    .or(tb)
+                    .intoArray(pixels, i);
+        }
+        tail.sepia(pixels, i, to);
+    }
+
+    @Override
+    public void multiplyAdd(float[][] acc, int accOffset, float[][] src, int srcOffset, float weight, int length) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            for (int c = 0; c < 4; c++) {
+                // Multiply and add separately (no fused multiply-add) to round exactly like the scalar loop
+                FloatVector.fromArray(FLOATS, acc[c], accOffset + i)
+                        .add(FloatVector.fromArray(FLOATS, src[c], srcOffset + i).mul(weight))
+                        .intoArray(acc[c], accOffset + i);
+            }
+        }
+        for (int c = 0; c < 4; c++) {
+            float[] a = acc[c];
+            float[] s = src[c];
+            for (int j = i; j < length; j++) {
+                a[accOffset + j] += weight * s[srcOffset + j];
+            }
+        }
+    }
+
+    @Override
+    public void unpack(int[] pixels, float[][] planes, int size) {
+        float[] alpha = planes[0];
+        float[] red = planes[1];
+        float[] green = planes[2];
+        float[] blue = planes[3];
+        int i = 0;
+        for (int bound = INTS.loopBound(size); i < bound; i += INTS.length()) {
+            IntVector p = IntVector.fromArray(INTS, pixels, i);
+            toFloats(p.lanewise(VectorOperators.LSHR, 24)).intoArray(alpha, i);
+            toFloats(red(p)).intoArray(red, i);
+            toFloats(green(p)).intoArray(green, i);
+            toFloats(blue(p)).intoArray(blue, i);
+        }
+        tail.unpack(pixels, planes, i, size);
+    }
+
+    @Override
+    public void pack(float[][] planes, int[] dst, int offset, int length) {
+        float[] alpha = planes[0];
+        float[] red = planes[1];
+        float[] green = planes[2];
+        float[] blue = planes[3];
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            channel(alpha, i).lanewise(VectorOperators.LSHL, 24)
+                    .or(channel(red, i).lanewise(VectorOperators.LSHL, 16))
+                    .or(channel(green, i).lanewise(VectorOperators.LSHL, 8))
+                    .or(channel(blue, i))
+                    .intoArray(dst, offset + i);
+        }
+        tail.pack(planes, i, dst, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return "vector " + INTS.vectorBitSize() + "-bit";
+    }
+
+    private static IntVector red(IntVector p) {
+        return p.lanewise(VectorOperators.LSHR, 16).and(0xff);
+    }
+
+    private static IntVector green(IntVector p) {
+        return p.lanewise(VectorOperators.LSHR, 8).and(0xff);
+    }
+
+    private static IntVector blue(IntVector p) {
+        return p.and(0xff);
+    }
+
+    /**
+     * Computes one sepia output channel: (cr * r + cg * g + cb * b) >> 16, clamped to 255.
+     */
+    private static IntVector tone(IntVector r, IntVector g, IntVector b, int cr, int cg, int cb) {
+        return r.mul(cr).add(g.mul(cg)).add(b.mul(cb))
+                .lanewise(VectorOperators.ASHR, ImageFilter.FIXED_POINT_SHIFT)
+                .min(255);
+    }
+
+    private static FloatVector toFloats(IntVector v) {
+        return (FloatVector) v.convert(VectorOperators.I2F, 0);
+    }
+
+    /**
+     * Loads a channel plane and converts it to integers, truncating and clamping to [0, 255].
+     */
+    private static IntVector channel(float[] plane, int index) {
+        IntVector v = (IntVector) FloatVector.fromArray(FLOATS, plane, index).convert(VectorOperators.F2I, 0);
+        return v.max(0).min(255);
+    }
+}
@@ -0,0 +1,222 @@
+package util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * XxHash64 computes the 64-bit xxHash of a byte stream. xxHash is not cryptographic, but it
+ * distributes well and runs at memory speed, which makes it suitable for recognizing identical
+ * files without comparing them byte for byte.
+ * Input is consumed in 32-byte stripes read as little-endian longs; bytes that do not yet fill a
+ * stripe are buffered until the next update or until the value is requested.
+ * Instances are not thread-safe.
+ */
+public final class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_BYTES = 32;
+
+    // Size of the buffer files are read through
+    private static final int FILE_BUFFER_BYTES = 256 * 1024;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private final byte[] pending = new byte[STRIPE_BYTES];
+    private int pendingLength;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    /**
+     * Constructs a hasher with seed 0.
+     */
+    public XxHash64() {
+        this(0L);
+    }
+
+    /**
+     * Constructs a hasher with the given seed.
+     *
+     * @param seed The seed.
+     */
+    public XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Hashes the whole content of a file with seed 0.
+     *
+     * @param file The file to hash.
+     * @return The 64-bit hash.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long hash(Path file) throws IOException {
+        XxHash64 hasher = new XxHash64();
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                if (!buffer.hasRemaining()) {
+                    hasher.update(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+            }
+        }
+        hasher.update(buffer.array(), 0, buffer.position());
+        return hasher.getValue();
+    }
+
+    /**
+     * Hashes a byte array with seed 0.
+     *
+     * @param data The bytes to hash.
+     * @return The 64-bit hash.
+     */
+    public static long hash(byte[] data) {
+        XxHash64 hasher = new XxHash64();
+        hasher.update(data, 0, data.length);
+        return hasher.getValue();
+    }
+
+    /**
+     * Discards all input, returning the hasher to its initial state.
+     */
+    public void reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        pendingLength = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Adds a range of bytes to the input.
+     *
+     * @param data   The bytes.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @throws IndexOutOfBoundsException if the range is outside the array.
+     */
+    public void update(byte[] data, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, data.length);
+        totalLength += length;
+        int end = offset + length;
+
+        // Complete a stripe left over from the previous update
+        if (pendingLength > 0) {
+            int fill = Math.min(STRIPE_BYTES - pendingLength, length);
+            System.arraycopy(data, offset, pending, pendingLength, fill);
+            pendingLength += fill;
+            offset += fill;
+            if (pendingLength < STRIPE_BYTES) {
+                return;
+            }
+            consumeStripe(pending, 0);
+            pendingLength = 0;
+        }
+
+        for (; offset + STRIPE_BYTES <= end; offset += STRIPE_BYTES) {
+            consumeStripe(data, offset);
+        }
+
+        pendingLength = end - offset;
+        System.arraycopy(data, offset, pending, 0, pendingLength);
+    }
+
+    /**
+     * Computes the hash of the input added so far. The hasher is not modified, so further updates
+     * may follow.
+     *
+     * @return The 64-bit hash.
+     */
+    public long getValue() {
+        long hash;
+        if (totalLength >= STRIPE_BYTES) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += totalLength;
+
+        int offset = 0;
+        for (; offset + Long.BYTES <= pendingLength; offset += Long.BYTES) {
+            hash ^= round(0, (long) LONG_LE.get(pending, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (offset + Integer.BYTES <= pendingLength) {
+            hash ^= ((int) INT_LE.get(pending, offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += Integer.BYTES;
+        }
+        for (; offset < pendingLength; offset++) {
+            hash ^= (pending[offset] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Mixes one 32-byte stripe into the four accumulators.
+     *
+     * @param data   The bytes.
+     * @param offset The index of the first byte of the stripe.
+     */
+    private void consumeStripe(byte[] data, int offset) {
+        v1 = round(v1, (long) LONG_LE.get(data, offset));
+        v2 = round(v2, (long) LONG_LE.get(data, offset + 8));
+        v3 = round(v3, (long) LONG_LE.get(data, offset + 16));
+        v4 = round(v4, (long) LONG_LE.get(data, offset + 24));
+    }
+
+    /**
+     * Mixes one 8-byte lane into an accumulator.
+     *
+     * @param accumulator The accumulator.
+     * @param input       The lane.
+     * @return The new accumulator.
+     */
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    /**
+     * Folds an accumulator into the hash of an input of at least one stripe.
+     *
+     * @param hash        The hash so far.
+     * @param accumulator The accumulator.
+     * @return The new hash.
+     */
+    private static long mergeRound(long hash, long accumulator) {
+        hash ^= round(0, accumulator);
+        return hash * PRIME1 + PRIME4;
+    }
+}
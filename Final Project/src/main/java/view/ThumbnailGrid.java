@@ -0,0 +1,422 @@
+package view;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import model.ImageModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * ThumbnailGrid displays image thumbnails in rows of fixed-size tiles, creating scene-graph nodes
+ * only for the rows in view. Rows are cells of a VirtualFlow, which recycles them as they scroll out
+ * of view, so the number of live nodes depends on the window size rather than on the number of
+ * images, and layout and scrolling cost stays the same for a thousand images or a million.
+ * The grid holds no per-image state: selection, duplicate badges, tooltips and thumbnails are read
+ * through providers each time a tile is bound, and refresh must be called when they change.
+ * A ViewportListener is told which images are visible and which lie within PREFETCH_ROWS rows of
+ * the viewport, so that thumbnails can be loaded ahead of scrolling; ThumbnailLoader does so.
+ * This class must only be used on the JavaFX Application Thread.
+ */
+public class ThumbnailGrid extends Region {
+
+    // Thumbnail dimensions, matching the thumbnails generated by ImageModel
+    private static final double THUMBNAIL_SIZE = ImageModel.THUMBNAIL_WIDTH;
+    // Padding inside each tile and the gap between tiles
+    private static final double TILE_PADDING = 5;
+    private static final double GAP = 10;
+    private static final double TILE_SIZE = THUMBNAIL_SIZE + 2 * TILE_PADDING;
+    // Width reserved for the vertical scroll bar when computing the number of columns
+    private static final double SCROLL_BAR_ALLOWANCE = 16;
+
+    // Number of rows above and below the viewport whose thumbnails are prefetched
+    public static final int PREFETCH_ROWS = 3;
+
+    private static final String DEFAULT_TILE_STYLE = "-fx-padding: 5;";
+    private static final String SELECTED_TILE_STYLE = "-fx-padding: 5; -fx-border-color: blue; -fx-border-width: 2;";
+    private static final String BADGE_STYLE = "-fx-background-color: orange; -fx-text-fill: white; -fx-padding: 0 3 0 3;";
+
+    /**
+     * Receives the images in and around the viewport whenever that range changes.
+     */
+    @FunctionalInterface
+    public interface ViewportListener {
+        /**
+         * Called after a layout pass that changed the images in or around the viewport, whether by
+         * scrolling, resizing or adding and removing images.
+         *
+         * @param visible  The images in the visible rows, in display order.
+         * @param prefetch The images within PREFETCH_ROWS rows of the viewport, nearest rows first.
+         */
+        void onViewportChanged(List<ImageModel> visible, List<ImageModel> prefetch);
+    }
+
+    private final ObservableList<ImageModel> items = FXCollections.observableArrayList();
+    private final Flow flow = new Flow();
+    private final List<Row> rows = new ArrayList<>();
+    private int columns = 1;
+
+    private Function<ImageModel, Image> thumbnailProvider = imageModel -> null;
+    private Predicate<ImageModel> selectionPredicate = imageModel -> false;
+    private Function<ImageModel, String> badgeProvider = imageModel -> null;
+    private Function<ImageModel, String> tooltipProvider = imageModel -> imageModel.getFile().getName();
+    private Consumer<ImageModel> onImageClicked = imageModel -> { };
+    private ViewportListener viewportListener;
+
+    // The images last reported to the viewport listener, or null to report at the next layout pass
+    private List<ImageModel> reportedVisible;
+    private List<ImageModel> reportedPrefetch;
+
+    /**
+     * Constructs an empty grid.
+     */
+    public ThumbnailGrid() {
+        getStyleClass().add("thumbnail-grid");
+        flow.setCellFactory(virtualFlow -> {
+            Row row = new Row();
+            rows.add(row);
+            return row;
+        });
+        flow.setFixedCellSize(TILE_SIZE + GAP);
+        getChildren().add(flow);
+
+        items.addListener((ListChangeListener<ImageModel>) change -> {
+            updateCellCount();
+            refresh();
+            // Images added to or removed from rows already in view change what is visible
+            invalidateViewport();
+        });
+    }
+
+    /**
+     * Retrieves the images displayed by the grid, in display order.
+     *
+     * @return The modifiable list of images.
+     */
+    public ObservableList<ImageModel> getItems() {
+        return items;
+    }
+
+    /**
+     * Sets the function supplying the thumbnail of an image. It may return null while a thumbnail is
+     * not yet available, in which case refresh must be called for the image once it is.
+     *
+     * @param thumbnailProvider The thumbnail provider.
+     */
+    public void setThumbnailProvider(Function<ImageModel, Image> thumbnailProvider) {
+        this.thumbnailProvider = thumbnailProvider;
+        refresh();
+    }
+
+    /**
+     * Sets the predicate deciding whether an image is shown as selected.
+     *
+     * @param selectionPredicate The selection predicate.
+     */
+    public void setSelectionPredicate(Predicate<ImageModel> selectionPredicate) {
+        this.selectionPredicate = selectionPredicate;
+        refresh();
+    }
+
+    /**
+     * Sets the function supplying the badge text of an image, or null for no badge.
+     *
+     * @param badgeProvider The badge provider.
+     */
+    public void setBadgeProvider(Function<ImageModel, String> badgeProvider) {
+        this.badgeProvider = badgeProvider;
+        refresh();
+    }
+
+    /**
+     * Sets the function supplying the tooltip text of an image.
+     *
+     * @param tooltipProvider The tooltip provider.
+     */
+    public void setTooltipProvider(Function<ImageModel, String> tooltipProvider) {
+        this.tooltipProvider = tooltipProvider;
+        refresh();
+    }
+
+    /**
+     * Sets the handler invoked when a tile is clicked.
+     *
+     * @param onImageClicked The click handler.
+     */
+    public void setOnImageClicked(Consumer<ImageModel> onImageClicked) {
+        this.onImageClicked = onImageClicked;
+    }
+
+    /**
+     * Sets the listener told about the images in and around the viewport.
+     *
+     * @param viewportListener The listener, or null to remove it.
+     */
+    public void setViewportListener(ViewportListener viewportListener) {
+        this.viewportListener = viewportListener;
+        invalidateViewport();
+    }
+
+    /**
+     * Rebinds every tile in view, picking up changes reported by the providers.
+     */
+    public void refresh() {
+        for (Row row : rows) {
+            row.bind();
+        }
+    }
+
+    /**
+     * Rebinds the tile of one image if it is in view.
+     *
+     * @param imageModel The image whose thumbnail, selection, badge or tooltip changed.
+     */
+    public void refresh(ImageModel imageModel) {
+        for (Row row : rows) {
+            row.rebindTileOf(imageModel);
+        }
+    }
+
+    /**
+     * Scrolls the grid so that an image is visible.
+     *
+     * @param imageModel The image.
+     */
+    public void scrollTo(ImageModel imageModel) {
+        int index = items.indexOf(imageModel);
+        if (index >= 0) {
+            flow.scrollTo(index / columns);
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        Insets insets = getInsets();
+        double width = getWidth() - insets.getLeft() - insets.getRight();
+        double height = getHeight() - insets.getTop() - insets.getBottom();
+
+        int fitting = (int) ((width - SCROLL_BAR_ALLOWANCE + GAP) / (TILE_SIZE + GAP));
+        int newColumns = Math.max(1, fitting);
+        if (newColumns != columns) {
+            // Keep the first visible image in view when the rows are reflowed
+            IndexedCell<?> first = flow.getFirstVisibleCell();
+            int firstItem = first != null ? first.getIndex() * columns : 0;
+            columns = newColumns;
+            updateCellCount();
+            refresh();
+            flow.scrollToTop(firstItem / columns);
+            invalidateViewport();
+        }
+
+        flow.resizeRelocate(insets.getLeft(), insets.getTop(), width, height);
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        Insets insets = getInsets();
+        return insets.getLeft() + insets.getRight() + 4 * (TILE_SIZE + GAP) + SCROLL_BAR_ALLOWANCE;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        Insets insets = getInsets();
+        return insets.getTop() + insets.getBottom() + 4 * (TILE_SIZE + GAP);
+    }
+
+    /**
+     * Sets the number of rows of the flow from the number of images and columns.
+     */
+    private void updateCellCount() {
+        flow.setCellCount((items.size() + columns - 1) / columns);
+    }
+
+    /**
+     * Makes the next layout pass report the viewport even if the same images are in view, and
+     * requests that pass.
+     */
+    private void invalidateViewport() {
+        reportedVisible = null;
+        reportedPrefetch = null;
+        flow.requestLayout();
+    }
+
+    /**
+     * Reports the images in and around the viewport if they changed since the last report. The
+     * images are compared rather than the row indices, since images arriving in, or reflowing into,
+     * rows already in view change what is visible without moving the viewport.
+     * Called after every layout pass of the flow, which includes every scroll.
+     */
+    private void reportViewport() {
+        if (viewportListener == null) {
+            return;
+        }
+        IndexedCell<?> first = flow.getFirstVisibleCell();
+        IndexedCell<?> last = flow.getLastVisibleCell();
+        List<ImageModel> visible = new ArrayList<>();
+        List<ImageModel> prefetch = new ArrayList<>();
+        if (first != null && last != null && first.getIndex() >= 0 && last.getIndex() >= 0) {
+            int firstRow = first.getIndex();
+            int lastRow = last.getIndex();
+            visible.addAll(itemsOfRow(firstRow, lastRow));
+            for (int distance = 1; distance <= PREFETCH_ROWS; distance++) {
+                prefetch.addAll(itemsOfRow(lastRow + distance, lastRow + distance));
+                prefetch.addAll(itemsOfRow(firstRow - distance, firstRow - distance));
+            }
+        }
+        if (visible.equals(reportedVisible) && prefetch.equals(reportedPrefetch)) {
+            return;
+        }
+        reportedVisible = visible;
+        reportedPrefetch = prefetch;
+        viewportListener.onViewportChanged(visible, prefetch);
+    }
+
+    /**
+     * Retrieves the images of a range of rows, clipped to the images that exist.
+     *
+     * @param firstRow The first row.
+     * @param lastRow  The last row, inclusive.
+     * @return A view of the images in the rows.
+     */
+    private List<ImageModel> itemsOfRow(int firstRow, int lastRow) {
+        int from = Math.max(0, firstRow * columns);
+        int to = Math.min(items.size(), (lastRow + 1) * columns);
+        return from < to ? items.subList(from, to) : List.of();
+    }
+
+    /**
+     * The flow of rows, reporting the viewport after each of its layout passes.
+     */
+    private final class Flow extends VirtualFlow<Row> {
+        @Override
+        protected void layoutChildren() {
+            super.layoutChildren();
+            reportViewport();
+        }
+    }
+
+    /**
+     * One row of the grid. Rows are recycled by the flow: updateIndex rebinds the row's tiles to the
+     * images of its new row index.
+     */
+    private final class Row extends IndexedCell<Void> {
+        private final HBox tiles = new HBox(GAP);
+
+        Row() {
+            getStyleClass().setAll("thumbnail-row");
+            tiles.setPadding(new Insets(0, 0, GAP, 0));
+            setGraphic(tiles);
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        }
+
+        @Override
+        public void updateIndex(int index) {
+            super.updateIndex(index);
+            bind();
+        }
+
+        /**
+         * Binds each tile to the image at its position in this row, hiding tiles past the last image.
+         */
+        void bind() {
+            while (tiles.getChildren().size() < columns) {
+                tiles.getChildren().add(new Tile());
+            }
+            if (tiles.getChildren().size() > columns) {
+                tiles.getChildren().remove(columns, tiles.getChildren().size());
+            }
+
+            int index = getIndex();
+            for (int column = 0; column < columns; column++) {
+                int item = index < 0 ? -1 : index * columns + column;
+                Tile tile = (Tile) tiles.getChildren().get(column);
+                tile.bind(item >= 0 && item < items.size() ? items.get(item) : null);
+            }
+        }
+
+        /**
+         * Rebinds the tile showing an image, if this row shows it.
+         *
+         * @param imageModel The image.
+         */
+        void rebindTileOf(ImageModel imageModel) {
+            for (int i = 0; i < tiles.getChildren().size(); i++) {
+                Tile tile = (Tile) tiles.getChildren().get(i);
+                if (imageModel.equals(tile.imageModel)) {
+                    tile.bind(imageModel);
+                }
+            }
+        }
+    }
+
+    /**
+     * One recyclable thumbnail tile: the thumbnail, an optional badge and a tooltip.
+     */
+    private final class Tile extends StackPane {
+        private final ImageView imageView = new ImageView();
+        private final Label badge = new Label();
+        private final Tooltip tooltip = new Tooltip();
+        private ImageModel imageModel;
+
+        Tile() {
+            imageView.setFitWidth(THUMBNAIL_SIZE);
+            imageView.setFitHeight(THUMBNAIL_SIZE);
+            imageView.setPreserveRatio(true);
+            imageView.setSmooth(true);
+
+            badge.setStyle(BADGE_STYLE);
+            StackPane.setAlignment(badge, Pos.TOP_RIGHT);
+
+            setMinSize(TILE_SIZE, TILE_SIZE);
+            setPrefSize(TILE_SIZE, TILE_SIZE);
+            setMaxSize(TILE_SIZE, TILE_SIZE);
+            setStyle(DEFAULT_TILE_STYLE);
+            getChildren().addAll(imageView, badge);
+            Tooltip.install(this, tooltip);
+
+            addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
+                if (imageModel != null) {
+                    onImageClicked.accept(imageModel);
+                }
+            });
+        }
+
+        /**
+         * Shows an image in this tile.
+         *
+         * @param imageModel The image, or null to leave the tile empty.
+         */
+        void bind(ImageModel imageModel) {
+            this.imageModel = imageModel;
+            setVisible(imageModel != null);
+            if (imageModel == null) {
+                imageView.setImage(null);
+                return;
+            }
+
+            imageView.setImage(thumbnailProvider.apply(imageModel));
+            setStyle(selectionPredicate.test(imageModel) ? SELECTED_TILE_STYLE : DEFAULT_TILE_STYLE);
+            String badgeText = badgeProvider.apply(imageModel);
+            badge.setText(badgeText);
+            badge.setVisible(badgeText != null);
+            tooltip.setText(tooltipProvider.apply(imageModel));
+        }
+    }
+}
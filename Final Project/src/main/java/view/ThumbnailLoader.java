@@ -0,0 +1,268 @@
+package view;
+
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import model.ImageModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * ThumbnailLoader loads thumbnails for a ThumbnailGrid in the order the user needs them. It is
+ * driven by the grid's viewport: every change ranks the visible images first, in display order,
+ * followed by the prefetch rows nearest first, and requests for images that left the viewport and
+ * its prefetch margin are cancelled before they start. The queue therefore never holds more than
+ * one screenful plus the prefetch rows, so the time until the viewport is fully populated depends on
+ * the size of the window, not of the library.
+ * A fixed number of worker threads decode thumbnails, bounding the CPU and I/O spent on them.
+ * Loaded thumbnails are kept in a least-recently-used cache of CACHE_CAPACITY images.
+ * Except for the worker threads, this class must only be used on the JavaFX Application Thread.
+ */
+public final class ThumbnailLoader implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailLoader.class);
+
+    // Thumbnails decode from small files or from the thumbnail store, so a few workers saturate the disk
+    public static final int DEFAULT_CONCURRENCY = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // Number of thumbnails kept in memory, several screens' worth at 100x100 pixels (about 40 KB each)
+    private static final int CACHE_CAPACITY = 1024;
+
+    // Time within which the visible thumbnails should all be loaded after the viewport changes
+    private static final long VIEWPORT_BUDGET_MILLIS = 250;
+
+    // Request states
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private final PriorityBlockingQueue<Request> queue =
+            new PriorityBlockingQueue<>(64, Comparator.comparingInt((Request request) -> request.rank)
+                    .thenComparingLong(request -> request.sequence));
+    private final Map<ImageModel, Request> requests = new HashMap<>();
+    private final Map<ImageModel, Image> cache = new LinkedHashMap<>(CACHE_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ImageModel, Image> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+    // Images whose thumbnail could not be decoded, which are not requested again
+    private final Set<ImageModel> failed = new HashSet<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private Consumer<ImageModel> onLoaded = imageModel -> { };
+    private long sequence;
+    private volatile boolean closed;
+
+    // The visible images still loading since the last viewport change, and when that change happened
+    private final Set<ImageModel> visibleOutstanding = new HashSet<>();
+    private long viewportChangedNanos;
+
+    /**
+     * Constructs a ThumbnailLoader with DEFAULT_CONCURRENCY workers.
+     */
+    public ThumbnailLoader() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructs a ThumbnailLoader.
+     *
+     * @param concurrency The maximum number of thumbnails decoded at the same time. Must be positive.
+     * @throws IllegalArgumentException if concurrency is not positive.
+     */
+    public ThumbnailLoader(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive.");
+        }
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(this::work, "thumbnail-loader-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Sets the handler invoked when a thumbnail has been loaded and getCached returns it.
+     *
+     * @param onLoaded The handler, typically ThumbnailGrid::refresh.
+     */
+    public void setOnLoaded(Consumer<ImageModel> onLoaded) {
+        this.onLoaded = onLoaded;
+    }
+
+    /**
+     * Retrieves a loaded thumbnail without loading it.
+     *
+     * @param imageModel The image.
+     * @return The thumbnail, or null if it is not loaded.
+     */
+    public Image getCached(ImageModel imageModel) {
+        return cache.get(imageModel);
+    }
+
+    /**
+     * Reprioritizes loading for a new viewport. Matches ThumbnailGrid.ViewportListener.
+     *
+     * @param visible  The images in view, in display order.
+     * @param prefetch The images around the view, nearest first.
+     */
+    public void onViewportChanged(List<ImageModel> visible, List<ImageModel> prefetch) {
+        Set<ImageModel> wanted = new LinkedHashSet<>(visible);
+        wanted.addAll(prefetch);
+
+        // Drop the requests nobody will see before they start
+        int cancelled = 0;
+        for (Request request : new ArrayList<>(requests.values())) {
+            if (!wanted.contains(request.imageModel) && request.cancel()) {
+                requests.remove(request.imageModel);
+                queue.remove(request);
+                cancelled++;
+            }
+        }
+
+        visibleOutstanding.clear();
+        viewportChangedNanos = System.nanoTime();
+        int rank = 0;
+        for (ImageModel imageModel : wanted) {
+            int currentRank = rank++;
+            if (cache.containsKey(imageModel) || failed.contains(imageModel)) {
+                continue;
+            }
+            if (currentRank < visible.size()) {
+                visibleOutstanding.add(imageModel);
+            }
+
+            Request existing = requests.get(imageModel);
+            if (existing != null) {
+                if (existing.rank == currentRank || !existing.cancel()) {
+                    // Already queued at this rank, or already being decoded
+                    continue;
+                }
+                queue.remove(existing);
+            }
+            Request request = new Request(imageModel, currentRank, sequence++);
+            requests.put(imageModel, request);
+            queue.add(request);
+        }
+        logger.debug("Viewport changed: {} visible, {} queued, {} cancelled.", visible.size(), queue.size(), cancelled);
+    }
+
+    /**
+     * Stops the workers. Requests not yet started are abandoned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Runs on each worker thread: decodes the highest-priority request that has not been cancelled
+     * and hands the result to the JavaFX Application Thread.
+     */
+    private void work() {
+        while (!closed) {
+            Request request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!request.start()) {
+                continue;
+            }
+            Image image = load(request.imageModel);
+            Platform.runLater(() -> deliver(request, image));
+        }
+    }
+
+    /**
+     * Decodes the thumbnail of an image, falling back to JavaFX decoding if the thumbnail cannot be
+     * read from the store or generated.
+     *
+     * @param imageModel The image.
+     * @return The thumbnail, or null if the image cannot be decoded at all.
+     */
+    private static Image load(ImageModel imageModel) {
+        try {
+            return SwingFXUtils.toFXImage(imageModel.loadThumbnail(), null);
+        } catch (Exception e) {
+            logger.warn("Falling back to JavaFX thumbnail decoding for {}", imageModel.getFile().getName(), e);
+            // Generate thumbnail using JavaFX 's Image class with aspect ratio preserved and smoothing enabled
+            Image image = new Image(imageModel.getFile().toURI().toString(),
+                    ImageModel.THUMBNAIL_WIDTH, ImageModel.THUMBNAIL_HEIGHT, true, true, false);
+            return image.isError() ? null : image;
+        }
+    }
+
+    /**
+     * Caches a loaded thumbnail and notifies the grid. Runs on the JavaFX Application Thread.
+     * Thumbnails that scrolled out of view while decoding are still cached, since the user may
+     * scroll back.
+     *
+     * @param request The completed request.
+     * @param image   The thumbnail, or null if it could not be decoded.
+     */
+    private void deliver(Request request, Image image) {
+        requests.remove(request.imageModel, request);
+        if (image == null) {
+            failed.add(request.imageModel);
+            visibleOutstanding.remove(request.imageModel);
+            return;
+        }
+        cache.put(request.imageModel, image);
+        onLoaded.accept(request.imageModel);
+
+        if (visibleOutstanding.remove(request.imageModel) && visibleOutstanding.isEmpty()) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - viewportChangedNanos);
+            if (elapsedMillis > VIEWPORT_BUDGET_MILLIS) {
+                logger.warn("Viewport populated in {} ms, over the {} ms budget.", elapsedMillis, VIEWPORT_BUDGET_MILLIS);
+            } else {
+                logger.debug("Viewport populated in {} ms.", elapsedMillis);
+            }
+        }
+    }
+
+    /**
+     * A request to load one thumbnail at a given rank. A request is claimed by exactly one of start
+     * (by a worker) and cancel (by the JavaFX Application Thread).
+     */
+    private static final class Request {
+        private final ImageModel imageModel;
+        private final int rank;
+        private final long sequence;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        Request(ImageModel imageModel, int rank, long sequence) {
+            this.imageModel = imageModel;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        boolean start() {
+            return state.compareAndSet(PENDING, RUNNING);
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+    }
+}
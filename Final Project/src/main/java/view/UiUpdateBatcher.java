@@ -0,0 +1,180 @@
+package view;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * UiUpdateBatcher coalesces UI updates posted by background threads and applies them at most once
+ * per JavaFX pulse. Posting one Platform.runLater per item floods the event queue during large
+ * batches and makes the scene graph change, and lay itself out, once per item; here items are only
+ * queued, and an AnimationTimer drains every channel at the start of the next pulse, so a batch of
+ * any size costs at most one update, and one layout pass, per frame.
+ * A Batch channel delivers every posted item, in order, as one list per flush; a Latest channel
+ * delivers only the most recent value, for progress ticks where intermediate values are moot.
+ * Channels are flushed in the order they were created. The timer only runs while updates are pending.
+ * Channels may be posted to from any thread; sinks, and flush, run on the JavaFX Application Thread.
+ */
+public final class UiUpdateBatcher {
+
+    // Drains one channel each, returning whether it delivered anything
+    private final List<BooleanSupplier> drains = new CopyOnWriteArrayList<>();
+    // Whether a flush has been requested since the last one started
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (!flush()) {
+                // Nothing arrived during the last frame: sleep until the next post
+                stop();
+            }
+        }
+    };
+
+    /**
+     * Creates a channel delivering every posted item, in posting order, as one list per flush.
+     *
+     * @param sink Receives the items posted since the last flush. Never called with an empty list.
+     * @param <T>  The type of the items.
+     * @return The channel.
+     * @throws IllegalArgumentException if sink is null.
+     */
+    public <T> Batch<T> batch(Consumer<List<T>> sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null.");
+        }
+        Batch<T> batch = new Batch<>(sink);
+        drains.add(batch::drain);
+        return batch;
+    }
+
+    /**
+     * Creates a channel delivering only the most recent value posted since the last flush.
+     *
+     * @param sink Receives the latest value.
+     * @param <T>  The type of the values.
+     * @return The channel.
+     * @throws IllegalArgumentException if sink is null.
+     */
+    public <T> Latest<T> latest(Consumer<T> sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null.");
+        }
+        Latest<T> latest = new Latest<>(sink);
+        drains.add(latest::drain);
+        return latest;
+    }
+
+    /**
+     * Applies every pending update now, without waiting for the next pulse. Call it before acting on
+     * state the pending updates would change, such as when a batch completes.
+     * Must be called on the JavaFX Application Thread.
+     *
+     * @return true if any update was pending.
+     */
+    public boolean flush() {
+        // Clear the flag before draining, so that a post racing with the drain schedules another flush
+        scheduled.set(false);
+        boolean flushed = false;
+        for (BooleanSupplier drain : drains) {
+            flushed |= drain.getAsBoolean();
+        }
+        return flushed;
+    }
+
+    /**
+     * Requests a flush at the next pulse, starting the timer if it is not already running.
+     */
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    /**
+     * A channel whose items are all delivered, in order, once per flush.
+     *
+     * @param <T> The type of the items.
+     */
+    public final class Batch<T> {
+        private final Queue<T> pending = new ConcurrentLinkedQueue<>();
+        private final Consumer<List<T>> sink;
+
+        private Batch(Consumer<List<T>> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Queues an item for the next flush. May be called from any thread.
+         *
+         * @param item The item. Must not be null.
+         * @throws IllegalArgumentException if item is null.
+         */
+        public void add(T item) {
+            if (item == null) {
+                throw new IllegalArgumentException("Item cannot be null.");
+            }
+            pending.add(item);
+            schedule();
+        }
+
+        private boolean drain() {
+            List<T> items = new ArrayList<>();
+            T item;
+            while ((item = pending.poll()) != null) {
+                items.add(item);
+            }
+            if (items.isEmpty()) {
+                return false;
+            }
+            sink.accept(items);
+            return true;
+        }
+    }
+
+    /**
+     * A channel of which only the most recent value is delivered at each flush.
+     *
+     * @param <T> The type of the values.
+     */
+    public final class Latest<T> {
+        private final AtomicReference<T> value = new AtomicReference<>();
+        private final Consumer<T> sink;
+
+        private Latest(Consumer<T> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Replaces the value to deliver at the next flush. May be called from any thread.
+         *
+         * @param newValue The value. Must not be null.
+         * @throws IllegalArgumentException if newValue is null.
+         */
+        public void set(T newValue) {
+            if (newValue == null) {
+                throw new IllegalArgumentException("Value cannot be null.");
+            }
+            value.set(newValue);
+            schedule();
+        }
+
+        private boolean drain() {
+            T latest = value.getAndSet(null);
+            if (latest == null) {
+                return false;
+            }
+            sink.accept(latest);
+            return true;
+        }
+    }
+}